@@ -20,15 +20,21 @@ db.createUser({
 db.createCollection('users');
 db.createCollection('videos');
 db.createCollection('video_metadata');
+db.createCollection('processing_jobs');
 
 // Create indexes for better performance
-db.users.createIndex({ "username": 1 }, { unique: true });
-db.users.createIndex({ "email": 1 }, { unique: true });
-db.videos.createIndex({ "uploadedBy": 1 });
-db.videos.createIndex({ "isPublic": 1 });
-db.videos.createIndex({ "status": 1 });
-db.videos.createIndex({ "createdAt": -1 });
+// Field names as mapped by @Field in the entities; the application also ensures
+// these indexes at startup (MongoIndexManager)
+db.users.createIndex({ "username": 1 }, { unique: true, name: "username" });
+db.users.createIndex({ "email": 1 }, { unique: true, name: "email" });
+db.videos.createIndex({ "is_public": 1, "created_at": -1, "_id": -1 }, { name: "is_public_created_at" });
+db.videos.createIndex({ "is_public": 1, "view_count": -1 }, { name: "is_public_view_count" });
+db.videos.createIndex({ "uploaded_by": 1, "created_at": -1, "_id": -1 }, { name: "uploaded_by_created_at" });
+db.videos.createIndex({ "uploaded_by": 1, "status": 1 }, { name: "uploaded_by_status" });
+db.videos.createIndex({ "status": 1 }, { name: "status" });
 db.video_metadata.createIndex({ "videoId": 1 }, { unique: true });
+db.processing_jobs.createIndex({ "video_id": 1, "stage": 1 }, { unique: true, name: "video_id_stage" });
+db.processing_jobs.createIndex({ "stage": 1, "visible_at": 1 }, { name: "stage_visible_at" });
 
 // Create admin user
 db.users.insertOne({
@@ -0,0 +1,102 @@
+package com.mike.streming.encryption;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cifrado de un segmento con distintos modos AES, proveedores, tamaños de segmento y tipos de buffer.
+ * Sirve para elegir modo y tamaño de segmento; el cifrador se reutiliza como en EncryptionService.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherModeBenchmark {
+
+    @Param({"AES/CBC/PKCS5Padding", "AES/CTR/NoPadding", "AES/GCM/NoPadding"})
+    public String transformation;
+
+    @Param({"SunJCE", "BC"})
+    public String provider;
+
+    @Param({"65536", "262144", "1048576", "4194304", "8388608"})
+    public int segmentSize;
+
+    @Param({"heap", "direct"})
+    public String buffers;
+
+    private Cipher cipher;
+    private SecretKeySpec key;
+    private ByteBuffer input;
+    private ByteBuffer output;
+    private byte[] iv;
+    private long counter;
+
+    @Setup
+    public void setUp() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        byte[] keyBytes = new byte[32];
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, "AES");
+        cipher = Cipher.getInstance(transformation, provider);
+        iv = new byte[isGcm() ? 12 : 16];
+
+        byte[] plaintext = new byte[segmentSize];
+        random.nextBytes(plaintext);
+        boolean direct = "direct".equals(buffers);
+        input = direct ? ByteBuffer.allocateDirect(segmentSize) : ByteBuffer.allocate(segmentSize);
+        input.put(plaintext).flip();
+        int outputSize = segmentSize + 32;
+        output = direct ? ByteBuffer.allocateDirect(outputSize) : ByteBuffer.allocate(outputSize);
+    }
+
+    @Benchmark
+    public int encryptSegment(ThroughputCounters counters) throws Exception {
+        // GCM no permite repetir nonce con la misma clave: se usa un contador como en el formato segmentado
+        long nonce = ++counter;
+        for (int i = 0; i < 8; i++) {
+            iv[iv.length - 1 - i] = (byte) (nonce >>> (8 * i));
+        }
+        cipher.init(Cipher.ENCRYPT_MODE, key, parameters());
+
+        input.rewind();
+        output.clear();
+        int written = cipher.doFinal(input, output);
+        counters.add(segmentSize);
+        return written;
+    }
+
+    private AlgorithmParameterSpec parameters() {
+        return isGcm() ? new GCMParameterSpec(128, iv) : new IvParameterSpec(iv);
+    }
+
+    private boolean isGcm() {
+        return transformation.contains("GCM");
+    }
+}
@@ -0,0 +1,28 @@
+package com.mike.streming.encryption;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Contador auxiliar de JMH: al sumar los MB procesados en cada operación, JMH lo reporta como MB/s
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ThroughputCounters {
+
+    private static final double MEGABYTE = 1024 * 1024;
+
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        megabytes = 0;
+    }
+
+    void add(long bytes) {
+        megabytes += bytes / MEGABYTE;
+    }
+}
@@ -0,0 +1,118 @@
+package com.mike.streming.encryption;
+
+import com.mike.streming.config.EncryptionConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino caliente de EncryptionService y VideoEncryptionService: cifrado legacy por chunks,
+ * sellado segmentado (secuencial y paralelo) y descifrado de rangos aleatorios como en un seek.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VideoEncryptionBenchmark {
+
+    private static final int VIDEO_SIZE = 64 * 1024 * 1024;
+    private static final int RANGE_SIZE = 256 * 1024;
+
+    @Param({"65536", "1048576", "8388608"})
+    public int segmentSize;
+
+    @Param({"1", "0"}) // 0 = tantos hilos como núcleos
+    public int parallelism;
+
+    private EncryptionService encryptionService;
+    private VideoEncryptionService videoEncryptionService;
+    private String key;
+    private byte[] video;
+    private byte[] sealedVideo;
+    private Map<String, Object> metadata;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        EncryptionConfig config = new EncryptionConfig();
+        config.setMasterKey("BenchmarkMasterKey");
+        config.setSegmentSize(segmentSize);
+        config.setParallelism(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        config.setMaxSegmentsInFlight(null);
+
+        encryptionService = new EncryptionService(config);
+        encryptionService.init();
+        videoEncryptionService = new VideoEncryptionService(encryptionService, config);
+        key = encryptionService.generateEncryptionKey();
+
+        video = new byte[VIDEO_SIZE];
+        new Random(42).nextBytes(video);
+
+        EncryptedVideoStream sealed = videoEncryptionService.sealingStream(new ByteArrayInputStream(video), key, video.length);
+        sealedVideo = sealed.inputStream().readAllBytes();
+        metadata = sealed.toMetadata();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        videoEncryptionService.shutdown();
+    }
+
+    /**
+     * Formato legacy: un chunk de 1MB con AES-CBC a través de EncryptionService
+     */
+    @Benchmark
+    public int encryptLegacyChunk(ThroughputCounters counters) {
+        int length = 1024 * 1024;
+        int written = encryptionService.encrypt(video, 0, length, key).getData().length;
+        counters.add(length);
+        return written;
+    }
+
+    /**
+     * Sellar el video completo con el formato segmentado AES-GCM
+     */
+    @Benchmark
+    public long sealVideo(ThroughputCounters counters) throws IOException {
+        EncryptedVideoStream sealed = videoEncryptionService.sealingStream(new ByteArrayInputStream(video), key, video.length);
+        try (InputStream in = sealed.inputStream()) {
+            long written = in.transferTo(OutputStream.nullOutputStream());
+            counters.add(video.length);
+            return written;
+        }
+    }
+
+    /**
+     * Descifrar un rango aleatorio de 256KB, como una Range request tras un seek
+     */
+    @Benchmark
+    public long decryptRandomRange(ThroughputCounters counters) throws IOException {
+        long start = ThreadLocalRandom.current().nextLong(VIDEO_SIZE - RANGE_SIZE);
+        try (InputStream in = videoEncryptionService.openDecryptedRange(metadata, key, start, start + RANGE_SIZE - 1,
+                (from, to) -> new ByteArrayInputStream(sealedVideo, (int) from, (int) (to - from + 1)))) {
+            long read = in.transferTo(OutputStream.nullOutputStream());
+            counters.add(RANGE_SIZE);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.ChunkCacheConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caché acotada en bytes de chunks de GridFS.
+ * Usa una ventana LRU pequeña y un segmento principal LRU protegido por admisión TinyLFU:
+ * un chunk que sale de la ventana solo entra al segmento principal si es más frecuente
+ * que la víctima que desplazaría. La ventana guarda los arrays leídos de MongoDB en el heap;
+ * la memoria directa (off-heap) solo se reserva para los chunks admitidos en el segmento
+ * principal, de modo que los rechazados no dejan memoria directa pendiente del GC.
+ */
+@Slf4j
+@Component
+public class ChunkCache implements MeterBinder {
+
+    /** Tamaño de chunk por defecto de GridFS, usado para dimensionar el sketch */
+    private static final int DEFAULT_CHUNK_SIZE = 255 * 1024;
+
+    private final boolean enabled;
+    private final long windowMaxBytes;
+    private final long mainMaxBytes;
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<ChunkKey, byte[]> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<ChunkKey, ByteBuffer> main = new LinkedHashMap<>(256, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long windowBytes;
+    private long mainBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public ChunkCache(ChunkCacheConfig config) {
+        long maxBytes = config.getMaxSize().toBytes();
+        this.enabled = config.isEnabled() && maxBytes > 0;
+        this.windowMaxBytes = Math.max(1, maxBytes * config.getWindowPercent() / 100);
+        this.mainMaxBytes = Math.max(0, maxBytes - windowMaxBytes);
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE / 8, Math.max(1, maxBytes / DEFAULT_CHUNK_SIZE)));
+
+        log.info("GridFS chunk cache {} with budget {} bytes", enabled ? "enabled" : "disabled", maxBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Obtener un chunk de la caché. Devuelve una vista de solo lectura o null si no está
+     */
+    public ByteBuffer get(String fileId, int chunkIndex) {
+        if (!enabled) {
+            return null;
+        }
+        ChunkKey key = new ChunkKey(fileId, chunkIndex);
+        ByteBuffer buffer;
+
+        lock.lock();
+        try {
+            sketch.increment(key.hash());
+            byte[] recent = window.get(key);
+            buffer = recent != null ? ByteBuffer.wrap(recent) : main.get(key);
+        } finally {
+            lock.unlock();
+        }
+
+        if (buffer == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Verificar si un chunk está en caché sin contar el acceso
+     */
+    public boolean contains(String fileId, int chunkIndex) {
+        if (!enabled) {
+            return false;
+        }
+        ChunkKey key = new ChunkKey(fileId, chunkIndex);
+        lock.lock();
+        try {
+            return window.containsKey(key) || main.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Guardar un chunk leído de MongoDB. El array no debe modificarse después.
+     */
+    public void put(String fileId, int chunkIndex, byte[] data) {
+        if (!enabled || data.length == 0 || data.length > windowMaxBytes + mainMaxBytes) {
+            return;
+        }
+        ChunkKey key = new ChunkKey(fileId, chunkIndex);
+
+        lock.lock();
+        try {
+            if (window.containsKey(key) || main.containsKey(key)) {
+                return;
+            }
+            if (data.length > windowMaxBytes) {
+                admitToMain(key, data);
+                return;
+            }
+
+            window.put(key, data);
+            windowBytes += data.length;
+
+            Iterator<Map.Entry<ChunkKey, byte[]>> it = window.entrySet().iterator();
+            while (windowBytes > windowMaxBytes && it.hasNext()) {
+                Map.Entry<ChunkKey, byte[]> eldest = it.next();
+                it.remove();
+                windowBytes -= eldest.getValue().length;
+                admitToMain(eldest.getKey(), eldest.getValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Eliminar todos los chunks de un archivo
+     */
+    public void invalidateFile(String fileId) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            windowBytes -= removeFile(window, fileId, data -> data.length);
+            mainBytes -= removeFile(main, fileId, ByteBuffer::capacity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getSizeBytes() {
+        lock.lock();
+        try {
+            return windowBytes + mainBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("streaming.chunk.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("GridFS chunk cache hits")
+                .register(registry);
+        FunctionCounter.builder("streaming.chunk.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("GridFS chunk cache misses")
+                .register(registry);
+        FunctionCounter.builder("streaming.chunk.cache.evictions", evictions, LongAdder::sum)
+                .description("Chunks evicted from the main segment")
+                .register(registry);
+        FunctionCounter.builder("streaming.chunk.cache.rejections", rejections, LongAdder::sum)
+                .description("Chunks rejected by TinyLFU admission")
+                .register(registry);
+        Gauge.builder("streaming.chunk.cache.size", this, ChunkCache::getSizeBytes)
+                .baseUnit("bytes")
+                .description("Bytes held by the chunk cache (window on heap, main segment off-heap)")
+                .register(registry);
+    }
+
+    /**
+     * Intentar admitir un candidato en el segmento principal (debe llamarse con el lock tomado).
+     * La memoria directa se reserva solo si el candidato es admitido.
+     */
+    private void admitToMain(ChunkKey candidate, byte[] data) {
+        long size = data.length;
+        if (size > mainMaxBytes) {
+            rejections.increment();
+            return;
+        }
+
+        if (mainBytes + size > mainMaxBytes) {
+            int candidateFrequency = sketch.frequency(candidate.hash());
+            List<Map.Entry<ChunkKey, ByteBuffer>> victims = new ArrayList<>();
+            long freed = 0;
+
+            for (Map.Entry<ChunkKey, ByteBuffer> entry : main.entrySet()) {
+                if (mainBytes - freed + size <= mainMaxBytes) {
+                    break;
+                }
+                if (sketch.frequency(entry.getKey().hash()) >= candidateFrequency) {
+                    rejections.increment();
+                    return;
+                }
+                victims.add(entry);
+                freed += entry.getValue().capacity();
+            }
+
+            for (Map.Entry<ChunkKey, ByteBuffer> victim : victims) {
+                main.remove(victim.getKey());
+                evictions.increment();
+            }
+            mainBytes -= freed;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        main.put(candidate, buffer);
+        mainBytes += size;
+    }
+
+    private <V> long removeFile(LinkedHashMap<ChunkKey, V> segment, String fileId, ToLongFunction<V> sizeOf) {
+        long removed = 0;
+        Iterator<Map.Entry<ChunkKey, V>> it = segment.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ChunkKey, V> entry = it.next();
+            if (entry.getKey().fileId().equals(fileId)) {
+                removed += sizeOf.applyAsLong(entry.getValue());
+                it.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Clave (archivo, índice de chunk)
+     */
+    private record ChunkKey(String fileId, int chunkIndex) {
+
+        long hash() {
+            long h = fileId.hashCode() * 0x9E3779B97F4A7C15L + chunkIndex;
+            return h ^ (h >>> 29);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.KeyCacheConfig;
+import com.mike.streming.encryption.VideoEncryptionService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché acotada con TTL de las claves de datos de los videos cifrados, ya desenvueltas con la
+ * clave maestra. Así el trabajo criptográfico de desenvolver la clave se hace una vez por sesión
+ * de reproducción y no en cada Range request. El material de clave se desenvuelve directamente
+ * a un array (sin Strings intermedios) y se sobrescribe con ceros al expulsar cada entrada.
+ */
+@Slf4j
+@Component
+public class DataKeyCache implements MeterBinder {
+
+    private static final String KEY_ALGORITHM = "AES";
+
+    private final VideoEncryptionService videoEncryptionService;
+    private final KeyCacheConfig config;
+    private final long ttlNanos;
+    private final Map<String, CachedKey> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DataKeyCache(VideoEncryptionService videoEncryptionService, KeyCacheConfig config) {
+        this.videoEncryptionService = videoEncryptionService;
+        this.config = config;
+        this.ttlNanos = config.getTtl().toNanos();
+    }
+
+    /**
+     * Obtener la clave de datos del video, desenvolviéndola solo si no está en caché.
+     * Si la clave envuelta cambió (rotación) la entrada anterior se descarta.
+     *
+     * @param masterKeyId versión de la clave maestra que envuelve wrappedKey
+     */
+    public SecretKey get(String videoId, String wrappedKey, String masterKeyId) {
+        if (config.isEnabled()) {
+            CachedKey cached = entries.get(videoId);
+            if (cached != null && cached.wrappedKey().equals(wrappedKey)
+                    && cached.expiresAt() - System.nanoTime() > 0) {
+                SecretKey key = cached.toSecretKey();
+                if (key != null) {
+                    hits.increment();
+                    return key;
+                }
+            }
+        }
+
+        misses.increment();
+        byte[] material = videoEncryptionService.decryptVideoKeyMaterial(wrappedKey, masterKeyId);
+        SecretKey key = new SecretKeySpec(material, KEY_ALGORITHM);
+
+        if (!config.isEnabled()) {
+            Arrays.fill(material, (byte) 0);
+            return key;
+        }
+        if (entries.size() >= config.getMaxEntries()) {
+            evict();
+        }
+        CachedKey previous = entries.put(videoId, new CachedKey(wrappedKey, material, System.nanoTime() + ttlNanos));
+        if (previous != null) {
+            previous.destroy();
+        }
+        return key;
+    }
+
+    /**
+     * Expulsar la clave de un video (borrado o rotación de claves)
+     */
+    public void invalidate(String videoId) {
+        CachedKey removed = entries.remove(videoId);
+        if (removed != null) {
+            removed.destroy();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Expulsar todas las claves (rotación de la clave maestra)
+     */
+    public void invalidateAll() {
+        entries.keySet().forEach(this::invalidate);
+    }
+
+    /**
+     * Eliminar periódicamente las claves expiradas para no retener material de clave sin uso
+     */
+    @Scheduled(fixedDelayString = "${streaming.key-cache.cleanup-interval-ms:60000}")
+    public void expire() {
+        long now = System.nanoTime();
+        entries.forEach((videoId, entry) -> {
+            if (entry.expiresAt() - now <= 0 && entries.remove(videoId, entry)) {
+                entry.destroy();
+                evictions.increment();
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("streaming.key.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("streaming.key.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("streaming.key.cache.evictions", evictions, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("streaming.key.cache.entries", entries, Map::size)
+                .register(registry);
+    }
+
+    /**
+     * Liberar espacio: primero las entradas expiradas y luego las que sobren
+     */
+    private void evict() {
+        expire();
+
+        int target = config.getMaxEntries() * 9 / 10;
+        Iterator<Map.Entry<String, CachedKey>> it = entries.entrySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            CachedKey entry = it.next().getValue();
+            it.remove();
+            entry.destroy();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Entrada de la caché: el material de clave solo se copia mientras no haya sido destruido
+     */
+    private static final class CachedKey {
+
+        private final String wrappedKey;
+        private final byte[] material;
+        private final long expiresAt;
+        private boolean destroyed;
+
+        CachedKey(String wrappedKey, byte[] material, long expiresAt) {
+            this.wrappedKey = wrappedKey;
+            this.material = material;
+            this.expiresAt = expiresAt;
+        }
+
+        String wrappedKey() {
+            return wrappedKey;
+        }
+
+        long expiresAt() {
+            return expiresAt;
+        }
+
+        synchronized SecretKey toSecretKey() {
+            return destroyed ? null : new SecretKeySpec(material, KEY_ALGORITHM);
+        }
+
+        synchronized void destroy() {
+            Arrays.fill(material, (byte) 0);
+            destroyed = true;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.mike.streming.cache;
+
+/**
+ * Count-min sketch con contadores saturados en 15 (un byte por contador) y envejecimiento
+ * periódico (TinyLFU)
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries * 4) - 1) << 1;
+        this.table = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    /**
+     * Registrar un acceso a la clave
+     */
+    void increment(long hash) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[i][index] < MAX_COUNT) {
+                table[i][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Frecuencia estimada de la clave
+     */
+    int frequency(long hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Dividir todos los contadores a la mitad para que la popularidad antigua decaiga
+     */
+    private void reset() {
+        for (byte[] row : table) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = (byte) (row[j] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(long hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,481 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.DiskCacheConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché en disco local (SSD) de videos frecuentes. Cuenta los espectadores distintos por archivo
+ * de GridFS (una vez por sesión de reproducción, no por cada petición Range), copia en segundo
+ * plano los que superan el umbral de promoción y desaloja los menos frecuentes para respetar
+ * la cuota de disco.
+ *
+ * Un archivo desalojado no se borra mientras tenga referencias abiertas ni antes de que pase
+ * un margen desde la última: el sendfile de Tomcat abre el archivo por nombre después de que
+ * el servlet termina, así que ese margen cubre la apertura diferida.
+ */
+@Slf4j
+@Component
+public class LocalVideoCache implements MeterBinder {
+
+    private static final String EXTENSION = ".video";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final char GENERATION_SEPARATOR = '~'; // Cada copia tiene nombre propio: una nueva no pisa a una desalojada
+    private static final int MAX_TRACKED_FILES = 10_000;
+    private static final int MAX_TRACKED_SESSIONS = 100_000;
+
+    private final DiskCacheConfig config;
+    private final Path directory;
+    private final long maxBytes;
+    private final Map<String, AtomicInteger> accessCounts = new ConcurrentHashMap<>();
+    private final Map<String, CachedFile> files = new ConcurrentHashMap<>();
+    private final Set<CachedFile> retired = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> viewerSessions = new ConcurrentHashMap<>();
+    private final Set<String> pendingCopies = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> invalidations = new ConcurrentHashMap<>(); // Generación de la última invalidación por archivo
+    private final AtomicLong generations = new AtomicLong(System.currentTimeMillis()); // Reloj de copias e invalidaciones
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final Object evictionLock = new Object();
+    private final ThreadPoolExecutor copyExecutor;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile boolean enabled;
+
+    public LocalVideoCache(DiskCacheConfig config) {
+        this.config = config;
+        this.directory = Paths.get(config.getDirectory());
+        this.maxBytes = config.getMaxSize().toBytes();
+        this.enabled = config.isEnabled() && maxBytes > 0;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.copyExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getMaxPendingCopies())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "disk-cache-copy-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Local disk video cache disabled");
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    if (name.endsWith(TEMP_EXTENSION)) {
+                        Files.deleteIfExists(path);
+                    } else if (name.endsWith(EXTENSION)) {
+                        String key = name.substring(0, name.length() - EXTENSION.length());
+                        long generation = 0;
+                        int separator = key.indexOf(GENERATION_SEPARATOR);
+                        if (separator >= 0) {
+                            generation = parseGeneration(key.substring(separator + 1));
+                            key = key.substring(0, separator);
+                        }
+                        generations.accumulateAndGet(generation, Math::max);
+
+                        // Si quedaron dos copias del mismo archivo se conserva la de mayor generación
+                        CachedFile current = files.get(key);
+                        if (current != null && current.generation() > generation) {
+                            Files.deleteIfExists(path);
+                            continue;
+                        }
+                        long size = Files.size(path);
+                        files.put(key, new CachedFile(path, size, generation));
+                        usedBytes.addAndGet(size);
+                        if (current != null) {
+                            Files.deleteIfExists(current.path());
+                            usedBytes.addAndGet(-current.size());
+                        }
+                    }
+                }
+            }
+            log.info("Local disk video cache at {} with {} files ({} bytes of {})",
+                    directory, files.size(), usedBytes.get(), maxBytes);
+        } catch (IOException e) {
+            log.warn("Disabling local disk video cache, directory {} is not usable: {}", directory, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        copyExecutor.shutdownNow();
+    }
+
+    /**
+     * Registrar un acceso del espectador al archivo y devolver su copia local si existe.
+     * Solo la primera petición de cada sesión de reproducción cuenta para la promoción;
+     * si el archivo supera el umbral se programa su copia a disco. La copia devuelta está
+     * reservada hasta cerrarla.
+     */
+    public Optional<LocalCopy> access(String fileId, String viewerKey, GridFsResource resource) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = sanitize(fileId);
+        int count = isNewSession(key, viewerKey) ? increment(key) : countOf(key);
+
+        CachedFile cached = files.get(key);
+        if (cached != null && cached.acquire()) {
+            hits.increment();
+            return Optional.of(new LocalCopy(cached));
+        }
+
+        misses.increment();
+        if (count >= config.getPromotionThreshold()) {
+            schedulePromotion(key, resource);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Eliminar la copia local de un archivo. Se anota la generación de la invalidación para que
+     * una copia que estuviera en curso no se indexe al terminar.
+     */
+    public void invalidate(String fileId) {
+        if (!enabled) {
+            return;
+        }
+        String key = sanitize(fileId);
+        accessCounts.remove(key);
+        synchronized (evictionLock) {
+            invalidations.put(key, generations.incrementAndGet());
+            CachedFile removed = files.remove(key);
+            if (removed != null) {
+                retire(removed);
+            }
+        }
+    }
+
+    /**
+     * Borrar los archivos desalojados que ya no están en uso y olvidar las sesiones vencidas
+     */
+    @Scheduled(fixedDelayString = "${streaming.disk-cache.purge-interval-ms:10000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        long grace = config.getRetiredFileGrace().toMillis();
+        for (CachedFile file : retired) {
+            if (file.deleteIfUnused(now - grace)) {
+                retired.remove(file);
+            }
+        }
+
+        long sessionCutoff = now - config.getSessionWindow().toMillis();
+        viewerSessions.values().removeIf(lastSeen -> lastSeen < sessionCutoff);
+
+        // Sin copia en curso la invalidación ya no afecta a nadie: las copias futuras empiezan después
+        invalidations.keySet().removeIf(key -> !pendingCopies.contains(key));
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public int getPendingCopies() {
+        return pendingCopies.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("streaming.disk.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("streaming.disk.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("streaming.disk.cache.promotions", promotions, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("streaming.disk.cache.evictions", evictions, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("streaming.disk.cache.size", this, LocalVideoCache::getUsedBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("streaming.disk.cache.pending", this, LocalVideoCache::getPendingCopies)
+                .register(registry);
+    }
+
+    /**
+     * true si es la primera petición del espectador en la ventana de sesión
+     */
+    private boolean isNewSession(String key, String viewerKey) {
+        long now = System.currentTimeMillis();
+        Long lastSeen = viewerSessions.put(key + '|' + viewerKey, now);
+        if (viewerSessions.size() > MAX_TRACKED_SESSIONS) {
+            // Sin memoria de sesiones se cuenta de más, nunca de menos
+            viewerSessions.clear();
+        }
+        return lastSeen == null || now - lastSeen > config.getSessionWindow().toMillis();
+    }
+
+    private int increment(String key) {
+        int count = accessCounts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        if (accessCounts.size() > MAX_TRACKED_FILES) {
+            decay();
+        }
+        return count;
+    }
+
+    /**
+     * Dividir los contadores a la mitad para que la popularidad antigua decaiga
+     */
+    private synchronized void decay() {
+        if (accessCounts.size() <= MAX_TRACKED_FILES) {
+            return;
+        }
+        accessCounts.entrySet().removeIf(entry -> {
+            AtomicInteger counter = entry.getValue();
+            return counter.updateAndGet(value -> value >>> 1) == 0 && !files.containsKey(entry.getKey());
+        });
+    }
+
+    private void schedulePromotion(String key, GridFsResource resource) {
+        if (!pendingCopies.add(key)) {
+            return;
+        }
+        long generation = generations.incrementAndGet();
+        try {
+            copyExecutor.execute(() -> {
+                try {
+                    promote(key, resource, generation);
+                } finally {
+                    pendingCopies.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingCopies.remove(key);
+            log.debug("Disk cache copy queue full, skipping promotion of {}", key);
+        }
+    }
+
+    /**
+     * Copiar el archivo de GridFS al disco local. Si el archivo se invalidó después de programar
+     * la copia, la copia está obsoleta y se descarta en lugar de indexarla.
+     */
+    private void promote(String key, GridFsResource resource, long generation) {
+        long size;
+        try {
+            size = resource.contentLength();
+        } catch (IOException e) {
+            log.warn("Cannot read size of GridFS file {}: {}", key, e.getMessage());
+            return;
+        }
+        if (!reserve(key, size)) {
+            return;
+        }
+
+        Path temp = directory.resolve(key + TEMP_EXTENSION);
+        Path target = directory.resolve(key + GENERATION_SEPARATOR + generation + EXTENSION);
+        try (InputStream inputStream = resource.getInputStream()) {
+            Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (evictionLock) {
+                if (invalidations.getOrDefault(key, 0L) > generation) {
+                    usedBytes.addAndGet(-size);
+                    Files.deleteIfExists(target);
+                    log.debug("GridFS file {} was invalidated while being copied, discarding copy", key);
+                    return;
+                }
+                CachedFile previous = files.put(key, new CachedFile(target, size, generation));
+                if (previous != null) {
+                    retire(previous);
+                }
+            }
+            promotions.increment();
+            log.info("Promoted GridFS file {} to local disk cache ({} bytes)", key, size);
+        } catch (IOException e) {
+            log.warn("Failed to copy GridFS file {} to local disk cache: {}", key, e.getMessage());
+            usedBytes.addAndGet(-size);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // El archivo temporal se limpia al arrancar
+            }
+        }
+    }
+
+    /**
+     * Reservar espacio desalojando archivos menos frecuentes que el candidato
+     */
+    private boolean reserve(String key, long size) {
+        if (size > maxBytes) {
+            return false;
+        }
+        int candidateCount = countOf(key);
+
+        synchronized (evictionLock) {
+            while (usedBytes.get() + size > maxBytes) {
+                Map.Entry<String, CachedFile> victim = null;
+                int victimCount = Integer.MAX_VALUE;
+                for (Map.Entry<String, CachedFile> entry : files.entrySet()) {
+                    int count = countOf(entry.getKey());
+                    if (count < victimCount) {
+                        victim = entry;
+                        victimCount = count;
+                    }
+                }
+                if (victim == null || victimCount >= candidateCount) {
+                    return false;
+                }
+                files.remove(victim.getKey());
+                retire(victim.getValue());
+                evictions.increment();
+            }
+            usedBytes.addAndGet(size);
+            return true;
+        }
+    }
+
+    /**
+     * Sacar un archivo del índice y dejar su borrado a {@link #purge}. La cuota cuenta solo los
+     * archivos indexados: los desalojados ocupan disco hasta que se borran.
+     */
+    private void retire(CachedFile file) {
+        file.retire();
+        retired.add(file);
+        usedBytes.addAndGet(-file.size());
+    }
+
+    private static long parseGeneration(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private int countOf(String key) {
+        AtomicInteger counter = accessCounts.get(key);
+        return counter != null ? counter.get() : 0;
+    }
+
+    private String sanitize(String fileId) {
+        return fileId.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    /**
+     * Copia local reservada: el archivo no se borra hasta cerrarla (y pasado el margen)
+     */
+    public static final class LocalCopy implements AutoCloseable {
+
+        private final CachedFile file;
+        private boolean closed;
+
+        private LocalCopy(CachedFile file) {
+            this.file = file;
+        }
+
+        public Path path() {
+            return file.path();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                file.release();
+            }
+        }
+    }
+
+    /**
+     * Archivo copiado en disco, con el número de envíos en curso
+     */
+    private static final class CachedFile {
+
+        private final Path path;
+        private final long size;
+        private final long generation;
+        private int references;
+        private long lastUsed;
+        private boolean deleted;
+
+        CachedFile(Path path, long size, long generation) {
+            this.path = path;
+            this.size = size;
+            this.generation = generation;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        long size() {
+            return size;
+        }
+
+        long generation() {
+            return generation;
+        }
+
+        synchronized boolean acquire() {
+            if (deleted) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        synchronized void release() {
+            references--;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        synchronized void retire() {
+            lastUsed = Math.max(lastUsed, System.currentTimeMillis());
+        }
+
+        /**
+         * Borrar el archivo si nadie lo usa desde antes de usedBefore; true si ya no existe
+         */
+        synchronized boolean deleteIfUnused(long usedBefore) {
+            if (references > 0 || lastUsed > usedBefore) {
+                return false;
+            }
+            deleted = true;
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete cached video {}: {}", path, e.getMessage());
+            }
+            return true;
+        }
+    }
+}
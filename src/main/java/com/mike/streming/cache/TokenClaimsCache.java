@@ -0,0 +1,129 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.TokenCacheConfig;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché acotada de claims de JWT cuya firma ya se verificó. La clave es el hash SHA-256 del token
+ * (el token no se guarda) y cada entrada expira con el TTL configurado o con el exp del token, lo
+ * que ocurra primero. Evita repetir la verificación HMAC en cada Range request de un reproductor.
+ */
+@Component
+public class TokenClaimsCache implements MeterBinder {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final TokenCacheConfig config;
+    private final long ttlMillis;
+    private final Map<String, CachedClaims> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TokenClaimsCache(TokenCacheConfig config) {
+        this.config = config;
+        this.ttlMillis = config.getTtl().toMillis();
+    }
+
+    /**
+     * Claims verificados del token, o null si no está en caché o ya expiró
+     */
+    public Claims get(String token) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        CachedClaims cached = entries.get(hash(token));
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            hits.increment();
+            return cached.claims();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Guardar los claims de un token recién verificado
+     */
+    public void put(String token, Claims claims) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            expiresAt = Math.min(expiresAt, expiration.getTime());
+        }
+        if (entries.size() >= config.getMaxEntries()) {
+            evict();
+        }
+        entries.put(hash(token), new CachedClaims(claims, expiresAt));
+    }
+
+    /**
+     * Eliminar entradas expiradas
+     */
+    @Scheduled(fixedDelayString = "${jwt.claims-cache.cleanup-interval-ms:60000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("security.token.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("security.token.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("security.token.cache.entries", entries, Map::size)
+                .register(registry);
+    }
+
+    private String hash(String token) {
+        byte[] digest = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    /**
+     * Liberar espacio: primero las entradas expiradas y luego las que sobren
+     */
+    private void evict() {
+        expire();
+
+        int target = config.getMaxEntries() * 9 / 10;
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Claims verificados con su instante de expiración (epoch millis)
+     */
+    private record CachedClaims(Claims claims, long expiresAt) {
+    }
+}
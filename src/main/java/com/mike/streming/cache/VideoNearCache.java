@@ -0,0 +1,189 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.VideoCacheConfig;
+import com.mike.streming.exception.ResourceNotFoundException;
+import com.mike.streming.model.StreamableVideo;
+import com.mike.streming.model.Video;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Near-cache acotada con TTL de los campos de Video que usa el camino de streaming.
+ * Evita una consulta a MongoDB en cada Range request. Opcionalmente publica las
+ * invalidaciones en la colección cache_invalidations para que otros nodos las apliquen.
+ */
+@Slf4j
+@Component
+public class VideoNearCache implements MeterBinder {
+
+    private static final String INVALIDATIONS_COLLECTION = "cache_invalidations";
+    private static final long POLL_OVERLAP_MS = 5_000;
+    private static final int POLL_BATCH_SIZE = 1_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final VideoCacheConfig config;
+    private final long ttlNanos;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, CachedVideo> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile long lastPollMillis = System.currentTimeMillis();
+
+    public VideoNearCache(MongoTemplate mongoTemplate, VideoCacheConfig config) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = config;
+        this.ttlNanos = config.getTtl().toNanos();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (config.isEnabled() && config.isClusterInvalidation()) {
+            try {
+                mongoTemplate.indexOps(INVALIDATIONS_COLLECTION).ensureIndex(
+                        new Index().on("createdAt", Sort.Direction.ASC).expire(config.getInvalidationRetention()));
+                log.info("Video near-cache cluster invalidation enabled (node {})", nodeId);
+            } catch (Exception e) {
+                log.warn("Could not create index on {}: {}", INVALIDATIONS_COLLECTION, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Obtener la proyección de streaming del video, desde la caché o desde MongoDB
+     */
+    public StreamableVideo get(String videoId) {
+        if (config.isEnabled()) {
+            CachedVideo cached = entries.get(videoId);
+            if (cached != null && cached.expiresAt() - System.nanoTime() > 0) {
+                hits.increment();
+                return cached.video();
+            }
+        }
+
+        misses.increment();
+        StreamableVideo video = load(videoId);
+
+        if (config.isEnabled()) {
+            if (entries.size() >= config.getMaxEntries()) {
+                evict();
+            }
+            entries.put(videoId, new CachedVideo(video, System.nanoTime() + ttlNanos));
+        }
+        return video;
+    }
+
+    /**
+     * Invalidar un video en este nodo y, si está habilitado, en el resto del cluster
+     */
+    public void invalidate(String videoId) {
+        entries.remove(videoId);
+
+        if (config.isEnabled() && config.isClusterInvalidation()) {
+            try {
+                mongoTemplate.insert(new Document("videoId", videoId)
+                        .append("node", nodeId)
+                        .append("createdAt", new Date()), INVALIDATIONS_COLLECTION);
+            } catch (Exception e) {
+                log.warn("Could not publish cache invalidation for video {}: {}", videoId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Aplicar las invalidaciones publicadas por otros nodos
+     */
+    @Scheduled(fixedDelayString = "${streaming.video-cache.invalidation-poll-ms:1000}")
+    public void pollInvalidations() {
+        if (!config.isEnabled() || !config.isClusterInvalidation()) {
+            return;
+        }
+        long pollStart = System.currentTimeMillis();
+
+        // Se relee una ventana solapada porque los ObjectId de distintos nodos no son estrictamente monótonos
+        // La colección también lleva las revocaciones de tokens de TokenDenylist
+        Query query = Query.query(Criteria.where("_id")
+                        .gte(ObjectId.getSmallestWithDate(new Date(lastPollMillis - POLL_OVERLAP_MS)))
+                        .and("videoId").exists(true))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(POLL_BATCH_SIZE);
+
+        try {
+            List<Document> invalidations = mongoTemplate.find(query, Document.class, INVALIDATIONS_COLLECTION);
+            for (Document invalidation : invalidations) {
+                if (!nodeId.equals(invalidation.getString("node"))) {
+                    entries.remove(invalidation.getString("videoId"));
+                }
+            }
+            lastPollMillis = pollStart;
+        } catch (Exception e) {
+            log.warn("Could not poll cache invalidations: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("streaming.video.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("streaming.video.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("streaming.video.cache.entries", entries, Map::size)
+                .register(registry);
+    }
+
+    private StreamableVideo load(String videoId) {
+        Query query = Query.query(Criteria.where("_id").is(videoId));
+        query.fields().include(StreamableVideo.FIELDS);
+
+        Video video = mongoTemplate.findOne(query, Video.class);
+        if (video == null) {
+            throw new ResourceNotFoundException("Video not found with id: " + videoId);
+        }
+        return StreamableVideo.from(video);
+    }
+
+    /**
+     * Liberar espacio: primero las entradas expiradas y luego las que sobren
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+
+        int target = config.getMaxEntries() * 9 / 10;
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Entrada de la caché con su instante de expiración
+     */
+    private record CachedVideo(StreamableVideo video, long expiresAt) {
+    }
+}
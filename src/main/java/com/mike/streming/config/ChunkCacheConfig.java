@@ -0,0 +1,25 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuración de la caché off-heap de chunks de GridFS
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "streaming.chunk-cache")
+public class ChunkCacheConfig {
+
+    private boolean enabled;
+    private DataSize maxSize;
+    private int windowPercent;
+
+    public ChunkCacheConfig() {
+        this.enabled = true;
+        this.maxSize = DataSize.ofMegabytes(256);
+        this.windowPercent = 1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la caché en disco local de videos frecuentes
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "streaming.disk-cache")
+public class DiskCacheConfig {
+
+    private boolean enabled;
+    private String directory;
+    private DataSize maxSize;
+    private int promotionThreshold;
+    private int maxPendingCopies;
+    private Duration sessionWindow;     // Un espectador cuenta una vez por archivo dentro de esta ventana
+    private Duration retiredFileGrace;  // Margen antes de borrar un archivo desalojado que ya no se usa
+
+    public DiskCacheConfig() {
+        this.enabled = true;
+        this.directory = System.getProperty("java.io.tmpdir") + "/streming-video-cache";
+        this.maxSize = DataSize.ofGigabytes(10);
+        this.promotionThreshold = 3;
+        this.maxPendingCopies = 4;
+        this.sessionWindow = Duration.ofMinutes(30);
+        this.retiredFileGrace = Duration.ofSeconds(30);
+    }
+}
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Configuración de encriptación
  */
@@ -12,14 +15,27 @@ import org.springframework.context.annotation.Configuration;
 @ConfigurationProperties(prefix = "encryption")
 public class EncryptionConfig {
     
+    /** Versión asumida para las claves envueltas antes de existir el versionado */
+    public static final String DEFAULT_MASTER_KEY_ID = "v1";
+    
     private String algorithm;
     private Integer keySize;
     private String masterKey;
+    private String masterKeyId; // Versión de la clave maestra activa
+    private Map<String, String> previousMasterKeys; // Claves maestras anteriores por versión, para desenvolver
     private String transformation;
+    private Integer segmentSize; // Tamaño en claro de cada segmento AES-GCM de los videos
+    private Integer parallelism; // Hilos para cifrar segmentos en paralelo
+    private Integer maxSegmentsInFlight; // Segmentos en memoria por subida mientras se cifran
     
     public EncryptionConfig() {
         this.algorithm = "AES";
         this.keySize = 256;
         this.transformation = "AES/CBC/PKCS5Padding";
+        this.masterKeyId = DEFAULT_MASTER_KEY_ID;
+        this.previousMasterKeys = new HashMap<>();
+        this.segmentSize = 1024 * 1024;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.maxSegmentsInFlight = 2 * this.parallelism;
     }
 }
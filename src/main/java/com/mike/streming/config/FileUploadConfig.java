@@ -1,17 +1,28 @@
 package com.mike.streming.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.MultipartConfigFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
 
 import jakarta.servlet.MultipartConfigElement;
+import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * Configuración para manejo de archivos grandes
  */
 @Configuration
 public class FileUploadConfig {
+    
+    /**
+     * Endpoint de subida que lee el cuerpo multipart en streaming; el contenedor no debe
+     * procesarlo antes (lo copiaría entero a disco en la ubicación temporal)
+     */
+    public static final String STREAMING_UPLOAD_PATH = "/videos/upload-stream";
 
     @Bean
     public MultipartConfigElement multipartConfigElement() {
@@ -31,4 +42,21 @@ public class FileUploadConfig {
         
         return factory.createMultipartConfig();
     }
+    
+    /**
+     * Resolver multipart estándar, salvo para el endpoint de subida en streaming, que recibe
+     * el cuerpo sin procesar
+     */
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public MultipartResolver multipartResolver(
+            @Value("${spring.servlet.multipart.resolve-lazily:false}") boolean resolveLazily) {
+        StandardServletMultipartResolver resolver = new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                return !request.getRequestURI().endsWith(STREAMING_UPLOAD_PATH) && super.isMultipart(request);
+            }
+        };
+        resolver.setResolveLazily(resolveLazily);
+        return resolver;
+    }
 }
@@ -0,0 +1,26 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la caché de claves de datos desenvueltas de los videos cifrados
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "streaming.key-cache")
+public class KeyCacheConfig {
+
+    private boolean enabled;
+    private int maxEntries;
+    private Duration ttl;
+
+    public KeyCacheConfig() {
+        this.enabled = true;
+        this.maxEntries = 1_000;
+        this.ttl = Duration.ofMinutes(10);
+    }
+}
@@ -0,0 +1,24 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuración del job de rotación de la clave maestra (re-envoltura de claves de datos)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "encryption.rotation")
+public class KeyRotationConfig {
+
+    private int batchSize;
+    private int maxVideosPerSecond;
+    private boolean resumeOnStartup;
+
+    public KeyRotationConfig() {
+        this.batchSize = 500;
+        this.maxVideosPerSecond = 1_000;
+        this.resumeOnStartup = true;
+    }
+}
@@ -0,0 +1,26 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuración de los rankings en memoria de videos más vistos y en tendencia
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "streaming.leaderboard")
+public class LeaderboardConfig {
+
+    private int size;              // K: videos que se mantienen en cada ranking
+    private int sketchWidth;       // Contadores por fila del count-min sketch
+    private Duration halfLife;     // Cada cuánto se reduce a la mitad la popularidad en tendencia
+
+    public LeaderboardConfig() {
+        this.size = 100;
+        this.sketchWidth = 1 << 16;
+        this.halfLife = Duration.ofHours(6);
+    }
+}
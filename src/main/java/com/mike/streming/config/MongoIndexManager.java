@@ -0,0 +1,236 @@
+package com.mike.streming.config;
+
+import com.mike.streming.model.ProcessingJob;
+import com.mike.streming.model.User;
+import com.mike.streming.model.Video;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gestor de índices de MongoDB declarados en código. Cada índice compuesto corresponde a la forma
+ * de las consultas de los repositorios (igualdades primero y después el campo de orden), usando los
+ * nombres de campo reales de @Field. Al arrancar crea los que falten en segundo plano, compara los
+ * índices existentes con los declarados e informa de las consultas que no quedan cubiertas por ningún índice.
+ */
+@Slf4j
+@Component
+public class MongoIndexManager {
+
+    private static final String ID_INDEX = "_id_";
+
+    /**
+     * Índices declarados: colección, nombre, campos en orden y unicidad
+     */
+    static final List<IndexSpec> INDEXES = List.of(
+            IndexSpec.of(Video.class, "is_public_created_at", false, "is_public", "created_at:-1", "_id:-1"),
+            IndexSpec.of(Video.class, "is_public_view_count", false, "is_public", "view_count:-1"),
+            IndexSpec.of(Video.class, "uploaded_by_created_at", false, "uploaded_by", "created_at:-1", "_id:-1"),
+            IndexSpec.of(Video.class, "uploaded_by_status", false, "uploaded_by", "status"),
+            IndexSpec.of(Video.class, "status", false, "status"),
+            IndexSpec.of(Video.class, "processing_status", false, "processing_status"),
+            IndexSpec.of(Video.class, "tags", false, "tags"),
+            IndexSpec.of(Video.class, "duration", false, "duration"),
+            IndexSpec.of(Video.class, "resolution", false, "resolution"),
+            IndexSpec.of(Video.class, "is_encrypted_encryption_key_id", false, "is_encrypted", "encryption_key_id"),
+            IndexSpec.of(ProcessingJob.class, "video_id_stage", true, "video_id", "stage"),
+            IndexSpec.of(ProcessingJob.class, "stage_visible_at", false, "stage", "visible_at"),
+            IndexSpec.of(ProcessingJob.class, "status_updated_at", false, "status", "updated_at:-1"),
+            IndexSpec.of(User.class, "username", true, "username"),
+            IndexSpec.of(User.class, "email", true, "email")
+    );
+
+    /**
+     * Formas de las consultas de los repositorios: campos de igualdad y campo de orden habitual
+     */
+    static final List<QueryShape> QUERIES = List.of(
+            QueryShape.of(Video.class, "VideoRepository.findByIsPublicTrue", "created_at", "is_public"),
+            QueryShape.of(Video.class, "VideoRepository.findRecentPublicVideos", "created_at", "is_public"),
+            QueryShape.of(Video.class, "VideoRepository.findPublicVideosByTitleContaining", null, "is_public"),
+            QueryShape.of(Video.class, "VideoRepository.findTopVideosByViewCount", "view_count", "is_public"),
+            QueryShape.of(Video.class, "VideoLeaderboard.refreshTop", "view_count", "is_public"),
+            QueryShape.of(Video.class, "VideoRepository.countByIsPublicTrue", null, "is_public"),
+            QueryShape.of(Video.class, "VideoRepository.findByUploadedBy", "created_at", "uploaded_by"),
+            QueryShape.of(Video.class, "VideoService.getPublicVideos (cursor)", "created_at", "is_public"),
+            QueryShape.of(Video.class, "VideoService.getUserVideos (cursor)", "created_at", "uploaded_by"),
+            QueryShape.of(Video.class, "VideoRepository.countByUploadedBy", null, "uploaded_by"),
+            QueryShape.of(Video.class, "VideoRepository.findByUploadedByAndStatus", null, "uploaded_by", "status"),
+            QueryShape.of(Video.class, "VideoRepository.findByStatus", null, "status"),
+            QueryShape.of(Video.class, "VideoRepository.findByProcessingStatus", null, "processing_status"),
+            QueryShape.of(Video.class, "VideoProcessingPipeline.reconcile", null, "processing_status"),
+            QueryShape.of(Video.class, "VideoRepository.findByTagsIn", null, "tags"),
+            QueryShape.of(Video.class, "VideoRepository.findByDurationBetween", null, "duration"),
+            QueryShape.of(Video.class, "VideoRepository.findByResolution", null, "resolution"),
+            QueryShape.of(Video.class, "KeyRotationService.pendingVideos", null, "is_encrypted", "encryption_key_id"),
+            QueryShape.of(ProcessingJob.class, "ProcessingJobQueue.acquire", "visible_at", "stage"),
+            QueryShape.of(ProcessingJob.class, "ProcessingJobQueue.getDeadLetters", "updated_at", "status"),
+            QueryShape.of(User.class, "UserRepository.findByUsername", null, "username"),
+            QueryShape.of(User.class, "UserRepository.findByEmail", null, "email"),
+            QueryShape.of(User.class, "UserRepository.findByUsernameOrEmail ($or)", null, "username"),
+            QueryShape.of(User.class, "UserRepository.findByUsernameOrEmail ($or)", null, "email")
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${mongodb.indexes.enabled:true}")
+    private boolean enabled;
+
+    public MongoIndexManager(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Crear y verificar los índices sin retrasar el arranque de la aplicación
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::ensureIndexes, "mongo-index-manager");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Crear los índices declarados que falten y comparar con los existentes
+     */
+    public void ensureIndexes() {
+        for (IndexSpec spec : INDEXES) {
+            try {
+                // Un índice con las mismas claves y otro nombre (p. ej. de mongo-init.js) ya sirve
+                boolean exists = mongoTemplate.indexOps(spec.collection()).getIndexInfo().stream()
+                        .anyMatch(spec::matches);
+                if (exists) {
+                    continue;
+                }
+                Index index = new Index().named(spec.name()).background();
+                spec.fields().forEach(index::on);
+                if (spec.unique()) {
+                    index.unique();
+                }
+                mongoTemplate.indexOps(spec.collection()).ensureIndex(index);
+            } catch (Exception e) {
+                log.warn("Could not create index {} on {}: {}", spec.name(),
+                        mongoTemplate.getCollectionName(spec.collection()), e.getMessage());
+            }
+        }
+        verifyIndexes();
+    }
+
+    /**
+     * Comparar los índices existentes con los declarados e informar de las consultas sin índice
+     */
+    public List<String> verifyIndexes() {
+        Map<Class<?>, List<IndexInfo>> existing = new LinkedHashMap<>();
+        for (IndexSpec spec : INDEXES) {
+            existing.computeIfAbsent(spec.collection(), c -> mongoTemplate.indexOps(c).getIndexInfo());
+        }
+
+        existing.forEach((collection, indexes) -> {
+            List<IndexSpec> declared = INDEXES.stream()
+                    .filter(spec -> spec.collection().equals(collection))
+                    .toList();
+
+            for (IndexSpec spec : declared) {
+                if (indexes.stream().noneMatch(spec::matches)) {
+                    log.warn("Declared index {} is missing on {}", spec.name(), mongoTemplate.getCollectionName(collection));
+                }
+            }
+            for (IndexInfo index : indexes) {
+                if (!ID_INDEX.equals(index.getName()) && declared.stream().noneMatch(spec -> spec.matches(index))) {
+                    log.info("Index {} on {} is not declared in code", index.getName(),
+                            mongoTemplate.getCollectionName(collection));
+                }
+            }
+        });
+
+        List<String> uncovered = new ArrayList<>();
+        for (QueryShape query : QUERIES) {
+            boolean covered = existing.getOrDefault(query.collection(), List.of()).stream()
+                    .anyMatch(index -> query.isCoveredBy(fieldNames(index)));
+            if (!covered) {
+                uncovered.add(query.name());
+                log.warn("Query {} is not covered by any index on {}", query.name(),
+                        mongoTemplate.getCollectionName(query.collection()));
+            }
+        }
+        if (uncovered.isEmpty()) {
+            log.info("All {} declared query shapes are covered by indexes", QUERIES.size());
+        }
+        return uncovered;
+    }
+
+    private static List<String> fieldNames(IndexInfo index) {
+        return index.getIndexFields().stream().map(IndexField::getKey).toList();
+    }
+
+    /**
+     * Índice declarado. Los campos se indican como "campo" o "campo:-1" para orden descendente.
+     */
+    record IndexSpec(Class<?> collection, String name, boolean unique, Map<String, Sort.Direction> fields) {
+
+        static IndexSpec of(Class<?> collection, String name, boolean unique, String... fields) {
+            Map<String, Sort.Direction> keys = new LinkedHashMap<>();
+            for (String field : fields) {
+                String[] parts = field.split(":");
+                keys.put(parts[0], parts.length > 1 && parts[1].equals("-1")
+                        ? Sort.Direction.DESC : Sort.Direction.ASC);
+            }
+            return new IndexSpec(collection, name, unique, keys);
+        }
+
+        /**
+         * Mismas claves, en el mismo orden y dirección, que un índice existente
+         */
+        boolean matches(IndexInfo index) {
+            List<IndexField> existing = index.getIndexFields();
+            if (existing.size() != fields.size()) {
+                return false;
+            }
+            int i = 0;
+            for (Map.Entry<String, Sort.Direction> field : fields.entrySet()) {
+                IndexField other = existing.get(i++);
+                if (!other.getKey().equals(field.getKey()) || other.getDirection() != field.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Forma de una consulta: campos de igualdad (en cualquier orden) y, opcionalmente, el campo de orden
+     */
+    record QueryShape(Class<?> collection, String name, Set<String> equalityFields, String sortField) {
+
+        static QueryShape of(Class<?> collection, String name, String sortField, String... equalityFields) {
+            return new QueryShape(collection, name, new HashSet<>(List.of(equalityFields)), sortField);
+        }
+
+        /**
+         * Cubierta si el índice empieza por los campos de igualdad y sigue con el campo de orden
+         */
+        boolean isCoveredBy(List<String> indexFields) {
+            int prefix = equalityFields.size();
+            if (indexFields.size() < prefix || !new HashSet<>(indexFields.subList(0, prefix)).equals(equalityFields)) {
+                return false;
+            }
+            return sortField == null || (indexFields.size() > prefix && indexFields.get(prefix).equals(sortField));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuración del pipeline de procesamiento posterior a la subida (cifrado)
+ * y de la cola de trabajos compartida entre nodos
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "streaming.processing")
+public class ProcessingConfig {
+
+    private int encryptionWorkers;  // Trabajos de cifrado simultáneos en este nodo
+    private Duration leaseDuration; // Sin renovación durante este tiempo, otro nodo puede tomar el trabajo
+    private long heartbeatIntervalMs; // Cada cuánto se renuevan los leases, en un hilo propio del pipeline
+    private int maxAttempts;        // Intentos antes de mover el trabajo a dead-letter
+    private Duration initialBackoff;
+    private Duration maxBackoff;
+    private Duration checkpointInterval; // Cada cuánto se guarda el progreso de los trabajos largos
+
+    public ProcessingConfig() {
+        this.encryptionWorkers = 2;
+        this.leaseDuration = Duration.ofMinutes(2);
+        this.heartbeatIntervalMs = 30_000;
+        this.maxAttempts = 5;
+        this.initialBackoff = Duration.ofSeconds(30);
+        this.maxBackoff = Duration.ofMinutes(30);
+        this.checkpointInterval = Duration.ofSeconds(5);
+    }
+}
@@ -0,0 +1,12 @@
+package com.mike.streming.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita las tareas programadas (flush de contadores, limpieza de cachés)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -59,6 +59,7 @@ public class SecurityConfig {
                 
                 // Endpoints de videos públicos (solo lectura)
                 .requestMatchers("/videos/public/**").permitAll()
+                .requestMatchers("/videos/trending", "/videos/top").permitAll()
                 
                 // Endpoint de streaming progresivo (permite token como parámetro)
                 .requestMatchers("/videos/*/progressive-stream").permitAll()
@@ -0,0 +1,25 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuración de las URLs de streaming firmadas con HMAC
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "streaming.signed-url")
+public class StreamUrlConfig {
+
+    private String secret; // Base64; si está vacío se deriva de jwt.secret
+    private Duration ttl;
+    private boolean bindClientIp; // Desactivar si las peticiones llegan a través de un CDN
+
+    public StreamUrlConfig() {
+        this.ttl = Duration.ofHours(2);
+        this.bindClientIp = true;
+    }
+}
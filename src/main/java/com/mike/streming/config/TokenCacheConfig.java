@@ -0,0 +1,26 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la caché de claims de JWT ya verificados
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "jwt.claims-cache")
+public class TokenCacheConfig {
+
+    private boolean enabled;
+    private int maxEntries;
+    private Duration ttl;
+
+    public TokenCacheConfig() {
+        this.enabled = true;
+        this.maxEntries = 10_000;
+        this.ttl = Duration.ofMinutes(5);
+    }
+}
@@ -0,0 +1,30 @@
+package com.mike.streming.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la near-cache de videos para el camino de streaming
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "streaming.video-cache")
+public class VideoCacheConfig {
+
+    private boolean enabled;
+    private int maxEntries;
+    private Duration ttl;
+    private boolean clusterInvalidation;
+    private Duration invalidationRetention;
+
+    public VideoCacheConfig() {
+        this.enabled = true;
+        this.maxEntries = 10_000;
+        this.ttl = Duration.ofSeconds(30);
+        this.clusterInvalidation = false;
+        this.invalidationRetention = Duration.ofHours(1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.mike.streming.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.mike.streming.controller.VideoController;
+import com.mike.streming.dto.VideoFieldSelection;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+/**
+ * Aplica el parámetro fields= a la serialización de las respuestas de VideoController:
+ * solo se escriben las propiedades de VideoResponse solicitadas.
+ */
+@RestControllerAdvice(assignableTypes = VideoController.class)
+public class VideoFieldsResponseAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)) {
+            return;
+        }
+        HttpServletRequest httpRequest = servletRequest.getServletRequest();
+        VideoFieldSelection selection;
+        try {
+            selection = VideoFieldSelection.parse(httpRequest.getParameter(VideoFieldSelection.PARAMETER));
+        } catch (RuntimeException e) {
+            // Ya se rechazó en el servicio; aquí solo se da forma a la respuesta (p. ej. un error)
+            return;
+        }
+        if (selection == null) {
+            return;
+        }
+        bodyContainer.setFilters(new SimpleFilterProvider()
+                .addFilter(VideoFieldSelection.FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(selection.properties()))
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())
+                .setFailOnUnknownId(false));
+    }
+}
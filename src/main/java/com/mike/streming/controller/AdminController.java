@@ -0,0 +1,73 @@
+package com.mike.streming.controller;
+
+import com.mike.streming.model.KeyRotationCheckpoint;
+import com.mike.streming.model.ProcessingJob;
+import com.mike.streming.service.KeyRotationService;
+import com.mike.streming.service.ProcessingJobQueue;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controlador de operaciones administrativas
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+@Tag(name = "Admin", description = "Operaciones administrativas")
+@SecurityRequirement(name = "bearerAuth")
+public class AdminController {
+
+    private final KeyRotationService keyRotationService;
+    private final ProcessingJobQueue processingJobQueue;
+
+    @PostMapping("/key-rotation")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rotar clave maestra",
+            description = "Re-envuelve las claves de datos de los videos cifrados con la clave maestra activa, " +
+                    "sin volver a cifrar los videos. Reanuda la rotación en curso si existe.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Rotación iniciada o en curso"),
+            @ApiResponse(responseCode = "403", description = "Requiere rol ADMIN")
+    })
+    public ResponseEntity<KeyRotationCheckpoint> startKeyRotation() {
+        log.info("Master key rotation requested");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(keyRotationService.start());
+    }
+
+    @GetMapping("/key-rotation")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Estado de la rotación", description = "Progreso de la rotación hacia la clave maestra activa")
+    public ResponseEntity<Map<String, Object>> getKeyRotationStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("checkpoint", keyRotationService.getStatus());
+        status.put("pending", keyRotationService.countPending());
+        return ResponseEntity.ok(status);
+    }
+
+    @GetMapping("/processing-jobs/dead")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Trabajos en dead-letter",
+            description = "Trabajos de procesamiento que agotaron los reintentos, con su último error")
+    public ResponseEntity<List<ProcessingJob>> getDeadProcessingJobs(
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(processingJobQueue.getDeadLetters(Math.min(Math.max(limit, 1), 500)));
+    }
+}
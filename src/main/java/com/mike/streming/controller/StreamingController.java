@@ -1,13 +1,22 @@
 package com.mike.streming.controller;
 
+import com.mike.streming.cache.DataKeyCache;
+import com.mike.streming.cache.LocalVideoCache;
+import com.mike.streming.cache.VideoNearCache;
 import com.mike.streming.encryption.VideoEncryptionService;
 import com.mike.streming.exception.ResourceNotFoundException;
 import com.mike.streming.exception.ValidationException;
+import com.mike.streming.model.StreamableVideo;
 import com.mike.streming.model.Video;
 import com.mike.streming.repository.VideoRepository;
+import com.mike.streming.security.StreamUrlSigner;
+import com.mike.streming.security.TokenDenylist;
+import com.mike.streming.security.UserPrincipal;
 import com.mike.streming.service.GridFsService;
-import com.mike.streming.service.VideoService;
+import com.mike.streming.service.JwtService;
+import com.mike.streming.service.ViewCountService;
 import com.mike.streming.util.SecurityUtils;
+import io.jsonwebtoken.Claims;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -26,9 +35,19 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.crypto.SecretKey;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -42,10 +61,20 @@ import java.util.concurrent.CompletableFuture;
 @SecurityRequirement(name = "bearerAuth")
 public class StreamingController {
     
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    
     private final VideoRepository videoRepository;
+    private final VideoNearCache videoNearCache;
+    private final DataKeyCache dataKeyCache;
     private final GridFsService gridFsService;
     private final VideoEncryptionService videoEncryptionService;
-    private final VideoService videoService;
+    private final ViewCountService viewCountService;
+    private final StreamUrlSigner streamUrlSigner;
+    private final JwtService jwtService;
+    private final TokenDenylist tokenDenylist;
     
     @GetMapping("/{videoId}/stream")
     @Operation(summary = "Stream de video", description = "Stream de video con soporte para HTTP Range Requests")
@@ -63,40 +92,39 @@ public class StreamingController {
         log.info("Stream request for video: {}", videoId);
         
         // Obtener video
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + videoId));
+        StreamableVideo video = videoNearCache.get(videoId);
         
         // Verificar permisos
-        if (!video.isPublic() && !SecurityUtils.canAccessResource(video.getUploadedBy())) {
+        if (!video.isPublic() && !SecurityUtils.canAccessResource(video.uploadedBy())) {
             throw new ValidationException("Access denied to this video");
         }
         
         // Verificar que el video esté listo
-        if (video.getStatus() != Video.VideoStatus.READY) {
+        if (video.status() != Video.VideoStatus.READY) {
             throw new ValidationException("Video is not ready for streaming");
         }
         
         try {
             // Obtener archivo de GridFS
-            GridFsResource resource = gridFsService.getFile(video.getGridfsFileId());
+            GridFsResource resource = gridFsService.getFile(video.gridfsFileId());
             
             // Procesar Range Request
             String rangeHeader = request.getHeader("Range");
             if (rangeHeader != null) {
-                streamWithRange(resource, response, rangeHeader, video);
+                streamWithRange(resource, request, response, rangeHeader, video);
             } else {
-                streamFullVideo(resource, response, video);
+                streamFullVideo(resource, request, response, video);
             }
             
-            // Incrementar contador de vistas
-            videoService.incrementViewCount(videoId);
+            // Contar una vista por sesión de reproducción, no por Range request
+            viewCountService.recordPlayback(videoId, viewerKey(request));
             
         } catch (ResourceNotFoundException e) {
             log.error("File not found for video {}: {}", videoId, e.getMessage());
             
             // Ejecutar diagnóstico para ayudar con el debugging
-            log.info("Ejecutando diagnóstico para video {} con fileId: {}", videoId, video.getGridfsFileId());
-            gridFsService.diagnoseFile(video.getGridfsFileId());
+            log.info("Ejecutando diagnóstico para video {} con fileId: {}", videoId, video.gridfsFileId());
+            gridFsService.diagnoseFile(video.gridfsFileId());
             
             response.setStatus(HttpStatus.NOT_FOUND.value());
             response.setContentType("application/json");
@@ -177,16 +205,28 @@ public class StreamingController {
             throw new ValidationException("Access denied to download this video");
         }
         
+        // Mientras se procesa, el archivo en GridFS puede estar en claro o a medio cifrar
+        if (video.getStatus() != Video.VideoStatus.READY) {
+            throw new ValidationException("Video is not ready for download");
+        }
+        
+        StreamableVideo streamable = StreamableVideo.from(video);
         GridFsResource resource = gridFsService.getFile(video.getGridfsFileId());
+        long fileSize = contentLength(resource, streamable);
         
         // Configurar headers para descarga
         response.setContentType("application/octet-stream");
         response.setHeader("Content-Disposition", 
                 "attachment; filename=\"" + video.getOriginalFilename() + "\"");
-        response.setContentLengthLong(resource.contentLength());
+        response.setContentLengthLong(fileSize);
+        
+        if (fileSize == 0) {
+            return;
+        }
         
-        // Stream del archivo
-        try (InputStream inputStream = resource.getInputStream();
+        // Stream del archivo, descifrado si está cifrado
+        boolean encrypted = videoEncryptionService.isVideoEncrypted(streamable);
+        try (InputStream inputStream = openRange(resource, 0, fileSize - 1, streamable, encrypted);
              OutputStream outputStream = response.getOutputStream()) {
             
             byte[] buffer = new byte[8192];
@@ -201,22 +241,33 @@ public class StreamingController {
     /**
      * Stream con soporte para Range Requests
      */
-    private void streamWithRange(GridFsResource resource, HttpServletResponse response, 
-                                String rangeHeader, Video video) throws IOException {
+    private void streamWithRange(GridFsResource resource, HttpServletRequest request, HttpServletResponse response,
+                                String rangeHeader, StreamableVideo video) throws IOException {
         
-        long fileSize = resource.contentLength();
+        long fileSize = contentLength(resource, video);
         long start = 0;
         long end = fileSize - 1;
         
         // Parsear Range header
         if (rangeHeader.startsWith("bytes=")) {
             String[] ranges = rangeHeader.substring(6).split("-");
-            start = Long.parseLong(ranges[0]);
-            if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                end = Long.parseLong(ranges[1]);
+            if (ranges[0].isEmpty() && ranges.length > 1) {
+                // Sufijo: últimos N bytes
+                start = Math.max(0, fileSize - Long.parseLong(ranges[1]));
+            } else {
+                start = Long.parseLong(ranges[0]);
+                if (ranges.length > 1 && !ranges[1].isEmpty()) {
+                    end = Math.min(Long.parseLong(ranges[1]), fileSize - 1);
+                }
             }
         }
         
+        if (start > end || start >= fileSize) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader("Content-Range", "bytes */" + fileSize);
+            return;
+        }
+        
         long contentLength = end - start + 1;
         
         // Configurar headers
@@ -224,43 +275,55 @@ public class StreamingController {
         response.setHeader("Content-Range", String.format("bytes %d-%d/%d", start, end, fileSize));
         response.setHeader("Accept-Ranges", "bytes");
         response.setContentLengthLong(contentLength);
-        response.setContentType(video.getContentType());
+        response.setContentType(video.contentType());
         
-        // Stream del rango específico
-        try (InputStream inputStream = resource.getInputStream();
-             OutputStream outputStream = response.getOutputStream()) {
-            
-            // Saltar al inicio del rango
-            inputStream.skip(start);
-            
-            byte[] buffer = new byte[8192];
-            long remaining = contentLength;
-            
-            while (remaining > 0) {
-                int bytesToRead = (int) Math.min(buffer.length, remaining);
-                int bytesRead = inputStream.read(buffer, 0, bytesToRead);
-                
-                if (bytesRead == -1) break;
-                
-                outputStream.write(buffer, 0, bytesRead);
-                remaining -= bytesRead;
-            }
-            
-            outputStream.flush();
-        }
+        writeRange(resource, start, end, request, response, video);
     }
     
     /**
      * Stream del video completo
      */
-    private void streamFullVideo(GridFsResource resource, HttpServletResponse response, Video video) throws IOException {
+    private void streamFullVideo(GridFsResource resource, HttpServletRequest request, HttpServletResponse response,
+                                 StreamableVideo video) throws IOException {
+        
+        long fileSize = contentLength(resource, video);
         
         response.setStatus(HttpStatus.OK.value());
-        response.setContentType(video.getContentType());
-        response.setContentLengthLong(resource.contentLength());
+        response.setContentType(video.contentType());
+        response.setContentLengthLong(fileSize);
         response.setHeader("Accept-Ranges", "bytes");
         
-        try (InputStream inputStream = resource.getInputStream();
+        if (fileSize == 0) {
+            return;
+        }
+        
+        writeRange(resource, 0, fileSize - 1, request, response, video);
+    }
+    
+    /**
+     * Escribir el rango [start, end] desde la copia local en disco o desde GridFS.
+     * Los videos cifrados se descifran al vuelo solo en el rango pedido.
+     */
+    private void writeRange(GridFsResource resource, long start, long end,
+                            HttpServletRequest request, HttpServletResponse response,
+                            StreamableVideo video) throws IOException {
+        
+        boolean encrypted = videoEncryptionService.isVideoEncrypted(video);
+        
+        // La copia local guarda el texto cifrado, así que solo se envía directamente si está en claro
+        if (!encrypted) {
+            Optional<LocalVideoCache.LocalCopy> localCopy = gridFsService.getLocalCopy(resource, viewerKey(request));
+            if (localCopy.isPresent()) {
+                try (LocalVideoCache.LocalCopy copy = localCopy.get()) {
+                    if (sendLocalFile(copy.path(), start, end, request, response)) {
+                        return;
+                    }
+                }
+            }
+        }
+        
+        // Leer solo los chunks de GridFS necesarios
+        try (InputStream inputStream = openRange(resource, start, end, video, encrypted);
              OutputStream outputStream = response.getOutputStream()) {
             
             byte[] buffer = new byte[8192];
@@ -268,10 +331,75 @@ public class StreamingController {
             while ((bytesRead = inputStream.read(buffer)) != -1) {
                 outputStream.write(buffer, 0, bytesRead);
             }
+            
             outputStream.flush();
         }
     }
     
+    /**
+     * Abrir el rango [start, end] de GridFS, descifrándolo si el video está cifrado
+     */
+    private InputStream openRange(GridFsResource resource, long start, long end,
+                                  StreamableVideo video, boolean encrypted) {
+        if (!encrypted) {
+            return gridFsService.openRange(resource, start, end);
+        }
+        
+        SecretKey encryptionKey = dataKeyCache.get(video.id(), video.encryptionKey(), video.encryptionKeyId());
+        return videoEncryptionService.openDecryptedRange(
+                resource.getGridFSFile().getMetadata(), encryptionKey, start, end,
+                (cipherStart, cipherEnd) -> gridFsService.openRange(resource, cipherStart, cipherEnd));
+    }
+    
+    /**
+     * Longitud en claro del video: en el formato segmentado difiere de la longitud almacenada
+     */
+    private long contentLength(GridFsResource resource, StreamableVideo video) throws IOException {
+        long storedLength = resource.contentLength();
+        if (!videoEncryptionService.isVideoEncrypted(video)) {
+            return storedLength;
+        }
+        return videoEncryptionService.plaintextLength(resource.getGridFSFile().getMetadata(), storedLength);
+    }
+    
+    /**
+     * Enviar un archivo local. Con sendfile de Tomcat (si el conector lo soporta) no hay copias
+     * en heap; si no, se copia con transferTo hacia el OutputStream del servlet, que pasa por un
+     * buffer en heap pero evita leer de GridFS. Devuelve false si la copia local ya no existe.
+     */
+    private boolean sendLocalFile(Path file, long start, long end,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR)) && Files.isReadable(file)) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            return true;
+        }
+        
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            log.debug("Local copy {} was evicted, falling back to GridFS", file);
+            return false;
+        }
+        
+        try (channel; WritableByteChannel target = Channels.newChannel(response.getOutputStream())) {
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+        return true;
+    }
+    
     @GetMapping("/{videoId}/info")
     @Operation(summary = "Información del video", description = "Obtiene información básica del video para streaming progresivo")
     @ApiResponses(value = {
@@ -304,7 +432,7 @@ public class StreamingController {
                     .videoId(videoId)
                     .title(video.getTitle())
                     .contentType(video.getContentType())
-                    .fileSize(resource.contentLength())
+                    .fileSize(contentLength(resource, StreamableVideo.from(video)))
                     .supportsRangeRequests(true)
                     .chunkSize(1024 * 1024) // 1MB chunks
                     .build();
@@ -334,22 +462,21 @@ public class StreamingController {
         
         log.info("Video chunk request for video: {} - Range: {}-{}", videoId, start, end);
         
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + videoId));
+        StreamableVideo video = videoNearCache.get(videoId);
         
         // Verificar permisos
-        if (!video.isPublic() && !SecurityUtils.canAccessResource(video.getUploadedBy())) {
+        if (!video.isPublic() && !SecurityUtils.canAccessResource(video.uploadedBy())) {
             throw new ValidationException("Access denied to this video");
         }
         
         // Verificar que el video esté listo
-        if (video.getStatus() != Video.VideoStatus.READY) {
+        if (video.status() != Video.VideoStatus.READY) {
             throw new ValidationException("Video is not ready for streaming");
         }
         
         try {
-            GridFsResource resource = gridFsService.getFile(video.getGridfsFileId());
-            long fileSize = resource.contentLength();
+            GridFsResource resource = gridFsService.getFile(video.gridfsFileId());
+            long fileSize = contentLength(resource, video);
             
             // Validar rango
             if (start < 0 || end >= fileSize || start > end) {
@@ -359,13 +486,13 @@ public class StreamingController {
             }
             
             // Leer chunk específico
-            byte[] chunk = readChunk(resource, start, end);
+            byte[] chunk = readChunk(resource, start, end, video);
             
             // Configurar headers
             response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
             response.setHeader("Content-Range", String.format("bytes %d-%d/%d", start, end, fileSize));
             response.setHeader("Accept-Ranges", "bytes");
-            response.setContentType(video.getContentType());
+            response.setContentType(video.contentType());
             response.setContentLength(chunk.length);
             
             return ResponseEntity.ok(chunk);
@@ -376,6 +503,39 @@ public class StreamingController {
         }
     }
     
+    @PostMapping("/{videoId}/stream-url")
+    @Operation(summary = "URL de streaming firmada",
+            description = "Emite una URL de progressive-stream firmada con HMAC y de corta duración, " +
+                    "válida para Range requests sin cabecera Authorization (etiquetas <video>, CDNs)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "URL emitida"),
+            @ApiResponse(responseCode = "404", description = "Video no encontrado"),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado")
+    })
+    public ResponseEntity<SignedStreamUrl> createStreamUrl(
+            @Parameter(description = "ID del video") @PathVariable String videoId,
+            HttpServletRequest request) {
+        
+        StreamableVideo video = videoNearCache.get(videoId);
+        
+        // Verificar permisos
+        if (!video.isPublic() && !SecurityUtils.canAccessResource(video.uploadedBy())) {
+            throw new ValidationException("Access denied to this video");
+        }
+        
+        String userId = SecurityUtils.getCurrentUserId();
+        long expires = streamUrlSigner.expiresAt();
+        String signature = streamUrlSigner.sign(videoId, userId, expires, request);
+        
+        SignedStreamUrl url = SignedStreamUrl.builder()
+                .url(String.format("/videos/%s/progressive-stream?uid=%s&exp=%d&sig=%s",
+                        videoId, userId, expires, signature))
+                .expiresAt(Instant.ofEpochSecond(expires))
+                .build();
+        
+        return ResponseEntity.ok(url);
+    }
+    
     @GetMapping("/{videoId}/progressive-stream")
     @Operation(summary = "Stream progresivo", description = "Stream progresivo del video con soporte para Range Requests optimizado")
     @ApiResponses(value = {
@@ -386,49 +546,52 @@ public class StreamingController {
     })
     public void progressiveStream(
             @Parameter(description = "ID del video") @PathVariable String videoId,
-            @Parameter(description = "Token de autorización") @RequestParam(required = false) String token,
+            @Parameter(description = "Token JWT de autorización") @RequestParam(required = false) String token,
+            @Parameter(description = "Usuario de la URL firmada") @RequestParam(required = false) String uid,
+            @Parameter(description = "Expiración de la URL firmada (epoch seconds)") @RequestParam(required = false) Long exp,
+            @Parameter(description = "Firma HMAC de la URL") @RequestParam(required = false) String sig,
             HttpServletRequest request,
             HttpServletResponse response) throws IOException {
         
-        log.info("Progressive stream request for video: {} with token: {}", videoId, token != null ? "provided" : "not provided");
+        log.debug("Progressive stream request for video: {} (signed: {})", videoId, sig != null);
         
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + videoId));
+        StreamableVideo video = videoNearCache.get(videoId);
         
-        // Verificar permisos - si hay token, validarlo; si no, verificar si es público
+        // Verificar permisos: URL firmada, token JWT o sesión autenticada; si no, solo videos públicos
         if (!video.isPublic()) {
-            if (token == null || token.trim().isEmpty()) {
-                throw new ValidationException("Token required for private video");
+            boolean signed = sig != null && exp != null
+                    && streamUrlSigner.verify(videoId, uid, exp, sig, request);
+            if (!signed && !canAccessWithToken(token, video)
+                    && !SecurityUtils.canAccessResource(video.uploadedBy())) {
+                throw new ValidationException("Access denied to this video");
             }
-            // Aquí podrías validar el token JWT si es necesario
-            // Por ahora, solo verificamos que esté presente
-            log.info("Token provided for private video: {}", token.substring(0, Math.min(20, token.length())) + "...");
         }
         
         // Verificar que el video esté listo
-        if (video.getStatus() != Video.VideoStatus.READY) {
+        if (video.status() != Video.VideoStatus.READY) {
             throw new ValidationException("Video is not ready for streaming");
         }
         
         try {
-            GridFsResource resource = gridFsService.getFile(video.getGridfsFileId());
+            GridFsResource resource = gridFsService.getFile(video.gridfsFileId());
             
             // Configurar headers para streaming progresivo
             response.setHeader("Accept-Ranges", "bytes");
-            response.setContentType(video.getContentType());
-            response.setHeader("Cache-Control", "public, max-age=3600");
+            response.setContentType(video.contentType());
+            // Un video privado no debe quedar en cachés compartidas, que lo servirían sin verificar la firma
+            response.setHeader("Cache-Control", video.isPublic() ? "public, max-age=3600" : "private, no-store");
             response.setHeader("X-Content-Type-Options", "nosniff");
             
             // Procesar Range Request
             String rangeHeader = request.getHeader("Range");
             if (rangeHeader != null) {
-                streamWithRange(resource, response, rangeHeader, video);
+                streamWithRange(resource, request, response, rangeHeader, video);
             } else {
-                streamFullVideo(resource, response, video);
+                streamFullVideo(resource, request, response, video);
             }
             
-            // Incrementar contador de vistas
-            videoService.incrementViewCount(videoId);
+            // Contar una vista por sesión de reproducción, no por Range request
+            viewCountService.recordPlayback(videoId, viewerKey(request));
             
         } catch (ResourceNotFoundException e) {
             log.error("File not found for video {}: {}", videoId, e.getMessage());
@@ -439,38 +602,51 @@ public class StreamingController {
     }
     
     /**
-     * Leer un chunk específico del archivo
+     * Validar un JWT recibido como parámetro (clientes que no pueden enviar la cabecera Authorization)
      */
-    private byte[] readChunk(GridFsResource resource, long start, long end) throws IOException {
-        try (InputStream inputStream = resource.getInputStream()) {
-            // Saltar al inicio del chunk
-            long bytesToSkip = start;
-            while (bytesToSkip > 0) {
-                long skipped = inputStream.skip(bytesToSkip);
-                if (skipped == 0) {
-                    break;
-                }
-                bytesToSkip -= skipped;
-            }
-            
-            // Leer el chunk
-            int chunkSize = (int) (end - start + 1);
-            byte[] chunk = new byte[chunkSize];
-            int bytesRead = 0;
-            int totalBytesRead = 0;
-            
-            while (totalBytesRead < chunkSize && (bytesRead = inputStream.read(chunk, totalBytesRead, chunkSize - totalBytesRead)) != -1) {
-                totalBytesRead += bytesRead;
-            }
-            
-            // Si no leímos todo el chunk, ajustar el tamaño
-            if (totalBytesRead < chunkSize) {
-                byte[] adjustedChunk = new byte[totalBytesRead];
-                System.arraycopy(chunk, 0, adjustedChunk, 0, totalBytesRead);
-                return adjustedChunk;
+    private boolean canAccessWithToken(String token, StreamableVideo video) {
+        if (token == null || token.isBlank()) {
+            return false;
+        }
+        try {
+            Claims claims = jwtService.verifyToken(token);
+            String userId = claims.get(UserPrincipal.CLAIM_USER_ID, String.class);
+            if (userId == null || tokenDenylist.isRevoked(userId, claims)) {
+                return false;
             }
-            
-            return chunk;
+            UserPrincipal user = UserPrincipal.fromClaims(claims);
+            return user.isEnabled() && (userId.equals(video.uploadedBy()) || user.getRoles().contains("ADMIN"));
+        } catch (Exception e) {
+            log.debug("Invalid stream token: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Identificar al espectador para deduplicar vistas por sesión de reproducción
+     */
+    private String viewerKey(HttpServletRequest request) {
+        String userId = SecurityUtils.getCurrentUserId();
+        if (userId != null) {
+            return userId;
+        }
+        String userAgent = request.getHeader("User-Agent");
+        return request.getRemoteAddr() + "|" + (userAgent != null ? userAgent.hashCode() : 0);
+    }
+    
+    /**
+     * Leer un chunk específico del archivo
+     */
+    private byte[] readChunk(GridFsResource resource, long start, long end, StreamableVideo video) {
+        if (!videoEncryptionService.isVideoEncrypted(video)) {
+            return gridFsService.readRange(resource, start, end);
+        }
+        
+        try (InputStream inputStream = openRange(resource, start, end, video, true)) {
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            log.error("Error reading encrypted chunk: {}", e.getMessage());
+            throw new ResourceNotFoundException("Failed to read video chunk: " + e.getMessage());
         }
     }
     
@@ -490,4 +666,16 @@ public class StreamingController {
         private int chunkSize;
     }
     
+    /**
+     * DTO para URL de streaming firmada
+     */
+    @lombok.Data
+    @lombok.Builder
+    @lombok.NoArgsConstructor
+    @lombok.AllArgsConstructor
+    public static class SignedStreamUrl {
+        private String url;
+        private Instant expiresAt;
+    }
+    
 }
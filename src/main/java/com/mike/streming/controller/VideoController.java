@@ -1,5 +1,7 @@
 package com.mike.streming.controller;
 
+import com.mike.streming.dto.CursorPage;
+import com.mike.streming.dto.VideoFieldSelection;
 import com.mike.streming.dto.VideoResponse;
 import com.mike.streming.dto.VideoUploadRequest;
 import com.mike.streming.dto.VideoUploadSwaggerRequest;
@@ -12,6 +14,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +28,13 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Controlador para gestión de videos
  */
@@ -43,7 +53,8 @@ public class VideoController {
         summary = "Subir video", 
         description = "Sube un nuevo video al sistema con metadata. " +
                     "Formatos soportados: MP4, AVI, MOV, MKV. " +
-                    "Tamaño máximo: 2GB.",
+                    "Tamaño máximo: 2GB. Responde 202 en cuanto el archivo está guardado; " +
+                    "el progreso del procesamiento se consulta en processingStatus y uploadProgress.",
         requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
             content = @Content(
                 mediaType = MediaType.MULTIPART_FORM_DATA_VALUE,
@@ -53,8 +64,8 @@ public class VideoController {
     )
     @ApiResponses(value = {
             @ApiResponse(
-                responseCode = "201", 
-                description = "Video subido exitosamente",
+                responseCode = "202", 
+                description = "Video subido; el cifrado se procesa en segundo plano",
                 content = @Content(
                     mediaType = "application/json",
                     schema = @Schema(implementation = VideoResponse.class)
@@ -107,7 +118,7 @@ public class VideoController {
         
         VideoResponse response = videoService.uploadVideo(file, request);
         
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
     }
     
     @PostMapping(value = "/upload-swagger", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -127,8 +138,8 @@ public class VideoController {
     )
     @ApiResponses(value = {
             @ApiResponse(
-                responseCode = "201", 
-                description = "Video subido exitosamente",
+                responseCode = "202", 
+                description = "Video subido; el cifrado se procesa en segundo plano",
                 content = @Content(
                     mediaType = "application/json",
                     schema = @Schema(implementation = VideoResponse.class)
@@ -168,7 +179,43 @@ public class VideoController {
         
         VideoResponse response = videoService.uploadVideo(file, request);
         
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    @PostMapping(value = "/upload-stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Subir video en streaming",
+        description = "Igual que /upload, pero el cuerpo multipart se lee según llega y el archivo se escribe " +
+                    "directamente en GridFS, sin copia temporal en disco. El tipo, el tamaño (máximo 500MB) " +
+                    "y el SHA-256 se validan y calculan en la misma pasada. Los campos del formulario pueden " +
+                    "enviarse antes o después del archivo, o en la query string.",
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            content = @Content(
+                mediaType = MediaType.MULTIPART_FORM_DATA_VALUE,
+                schema = @Schema(implementation = VideoUploadSwaggerRequest.class)
+            )
+        )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                responseCode = "202",
+                description = "Video subido; el cifrado se procesa en segundo plano",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = VideoResponse.class)
+                )
+            ),
+            @ApiResponse(responseCode = "400", description = "Cuerpo multipart inválido, archivo no soportado, demasiado grande o sin título"),
+            @ApiResponse(responseCode = "401", description = "No autorizado")
+    })
+    public ResponseEntity<VideoResponse> uploadVideoStream(HttpServletRequest request) throws IOException {
+        // Sin @RequestParam: leer parámetros haría que el contenedor procesara el cuerpo entero
+        log.info("Streaming video upload request: {} bytes", request.getContentLengthLong());
+        
+        VideoResponse response = videoService.uploadVideoStream(
+                request.getInputStream(), request.getContentType(), queryParams(request));
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
     }
     
     @GetMapping("/{videoId}")
@@ -179,9 +226,11 @@ public class VideoController {
             @ApiResponse(responseCode = "403", description = "Acceso denegado")
     })
     public ResponseEntity<VideoResponse> getVideo(
-            @Parameter(description = "ID del video") @PathVariable String videoId) {
+            @Parameter(description = "ID del video") @PathVariable String videoId,
+            @Parameter(description = "Campos a devolver, separados por comas", example = "id,title,thumbnailUrl")
+            @RequestParam(required = false) String fields) {
         
-        VideoResponse response = videoService.getVideoById(videoId);
+        VideoResponse response = videoService.getVideoById(videoId, VideoFieldSelection.parse(fields));
         return ResponseEntity.ok(response);
     }
     
@@ -192,9 +241,11 @@ public class VideoController {
             @ApiResponse(responseCode = "401", description = "No autorizado")
     })
     public ResponseEntity<Page<VideoResponse>> getMyVideos(
-            @PageableDefault(size = 20) Pageable pageable) {
+            @PageableDefault(size = 20) Pageable pageable,
+            @Parameter(description = "Campos a devolver, separados por comas", example = "id,title,thumbnailUrl")
+            @RequestParam(required = false) String fields) {
         
-        Page<VideoResponse> videos = videoService.getUserVideos(pageable);
+        Page<VideoResponse> videos = videoService.getUserVideos(pageable, VideoFieldSelection.parse(fields));
         return ResponseEntity.ok(videos);
     }
     
@@ -204,9 +255,11 @@ public class VideoController {
             @ApiResponse(responseCode = "200", description = "Videos obtenidos exitosamente")
     })
     public ResponseEntity<Page<VideoResponse>> getPublicVideos(
-            @PageableDefault(size = 20) Pageable pageable) {
+            @PageableDefault(size = 20) Pageable pageable,
+            @Parameter(description = "Campos a devolver, separados por comas", example = "id,title,thumbnailUrl")
+            @RequestParam(required = false) String fields) {
         
-        Page<VideoResponse> videos = videoService.getPublicVideos(pageable);
+        Page<VideoResponse> videos = videoService.getPublicVideos(pageable, VideoFieldSelection.parse(fields));
         return ResponseEntity.ok(videos);
     }
     
@@ -217,12 +270,100 @@ public class VideoController {
     })
     public ResponseEntity<Page<VideoResponse>> searchVideos(
             @Parameter(description = "Término de búsqueda") @RequestParam String title,
-            @PageableDefault(size = 20) Pageable pageable) {
+            @PageableDefault(size = 20) Pageable pageable,
+            @Parameter(description = "Campos a devolver, separados por comas", example = "id,title,thumbnailUrl")
+            @RequestParam(required = false) String fields) {
         
-        Page<VideoResponse> videos = videoService.searchVideosByTitle(title, pageable);
+        Page<VideoResponse> videos = videoService.searchVideosByTitle(title, pageable, VideoFieldSelection.parse(fields));
         return ResponseEntity.ok(videos);
     }
     
+    @GetMapping("/my-videos/cursor")
+    @Operation(summary = "Mis videos (cursor)",
+            description = "Obtiene los videos del usuario autenticado con paginación por cursor. " +
+                    "Enviar nextCursor de la respuesta anterior para obtener la página siguiente.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Videos obtenidos exitosamente"),
+            @ApiResponse(responseCode = "400", description = "Cursor inválido"),
+            @ApiResponse(responseCode = "401", description = "No autorizado")
+    })
+    public ResponseEntity<CursorPage<VideoResponse>> getMyVideosByCursor(
+            @Parameter(description = "Cursor de continuación") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamaño de página (máx. 100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Incluir total") @RequestParam(defaultValue = "false") boolean includeTotal,
+            @Parameter(description = "Campos a devolver, separados por comas", example = "id,title,thumbnailUrl")
+            @RequestParam(required = false) String fields) {
+        
+        return ResponseEntity.ok(videoService.getUserVideos(cursor, size, includeTotal, VideoFieldSelection.parse(fields)));
+    }
+    
+    @GetMapping("/public/cursor")
+    @Operation(summary = "Videos públicos (cursor)",
+            description = "Obtiene videos públicos con paginación por cursor. El total, si se pide, es un conteo exacto con coste proporcional al número de videos públicos.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Videos obtenidos exitosamente"),
+            @ApiResponse(responseCode = "400", description = "Cursor inválido")
+    })
+    public ResponseEntity<CursorPage<VideoResponse>> getPublicVideosByCursor(
+            @Parameter(description = "Cursor de continuación") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamaño de página (máx. 100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Incluir total de videos públicos") @RequestParam(defaultValue = "false") boolean includeTotal,
+            @Parameter(description = "Campos a devolver, separados por comas", example = "id,title,thumbnailUrl")
+            @RequestParam(required = false) String fields) {
+        
+        return ResponseEntity.ok(videoService.getPublicVideos(cursor, size, includeTotal, VideoFieldSelection.parse(fields)));
+    }
+    
+    @GetMapping("/trending")
+    @Operation(summary = "Videos en tendencia", description = "Videos públicos con más vistas recientes")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Videos obtenidos exitosamente")
+    })
+    public ResponseEntity<List<VideoResponse>> getTrendingVideos(
+            @Parameter(description = "Número de videos (máx. 100)") @RequestParam(defaultValue = "20") int limit) {
+        
+        return ResponseEntity.ok(videoService.getTrendingVideos(limit));
+    }
+    
+    @GetMapping("/top")
+    @Operation(summary = "Videos más vistos", description = "Videos públicos con más vistas")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Videos obtenidos exitosamente")
+    })
+    public ResponseEntity<List<VideoResponse>> getTopVideos(
+            @Parameter(description = "Número de videos (máx. 100)") @RequestParam(defaultValue = "20") int limit) {
+        
+        return ResponseEntity.ok(videoService.getTopVideos(limit));
+    }
+    
+    @GetMapping("/search/suggest")
+    @Operation(summary = "Autocompletar búsqueda", description = "Sugiere términos que empiezan por el texto escrito")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sugerencias obtenidas")
+    })
+    public ResponseEntity<List<String>> suggestSearchTerms(
+            @Parameter(description = "Texto escrito") @RequestParam String prefix,
+            @Parameter(description = "Número máximo de sugerencias") @RequestParam(defaultValue = "10") int limit) {
+        
+        return ResponseEntity.ok(videoService.suggestSearchTerms(prefix, limit));
+    }
+    
+    @GetMapping("/search/cursor")
+    @Operation(summary = "Buscar videos (cursor)", description = "Busca videos por título con paginación por cursor")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Búsqueda completada"),
+            @ApiResponse(responseCode = "400", description = "Cursor inválido")
+    })
+    public ResponseEntity<CursorPage<VideoResponse>> searchVideosByCursor(
+            @Parameter(description = "Término de búsqueda") @RequestParam String title,
+            @Parameter(description = "Cursor de continuación") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamaño de página (máx. 100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Campos a devolver, separados por comas", example = "id,title,thumbnailUrl")
+            @RequestParam(required = false) String fields) {
+        
+        return ResponseEntity.ok(videoService.searchVideosByTitle(title, cursor, size, VideoFieldSelection.parse(fields)));
+    }
+    
     @PutMapping("/{videoId}")
     @Operation(summary = "Actualizar video", description = "Actualiza la metadata de un video")
     @ApiResponses(value = {
@@ -264,4 +405,24 @@ public class VideoController {
         videoService.incrementViewCount(videoId);
         return ResponseEntity.ok().build();
     }
+    
+    /**
+     * Parámetros de la query string, leídos sin tocar el cuerpo de la petición
+     */
+    private static Map<String, String> queryParams(HttpServletRequest request) {
+        Map<String, String> params = new HashMap<>();
+        String query = request.getQueryString();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            String[] keyValue = pair.split("=", 2);
+            if (!keyValue[0].isEmpty()) {
+                params.putIfAbsent(
+                        URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8),
+                        keyValue.length > 1 ? URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        return params;
+    }
 }
@@ -0,0 +1,25 @@
+package com.mike.streming.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para una página de resultados con paginación por cursor (keyset)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    
+    private List<T> content;
+    private int size;
+    private String nextCursor; // Opaco; null cuando no hay más resultados
+    private boolean hasMore;
+    // Conteo exacto, solo si se pidió includeTotal: cuesta un recorrido del índice por petición
+    private Long total;
+}
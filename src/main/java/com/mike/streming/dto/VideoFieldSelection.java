@@ -0,0 +1,101 @@
+package com.mike.streming.dto;
+
+import com.mike.streming.exception.ValidationException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selección de campos (parámetro fields=) para las respuestas de video. Traduce los nombres de
+ * propiedad JSON de VideoResponse a los campos de la entidad Video que hay que proyectar en MongoDB.
+ */
+public final class VideoFieldSelection {
+    
+    public static final String FILTER_ID = "videoFields";
+    public static final String PARAMETER = "fields";
+    
+    // Propiedad JSON -> campos de Video necesarios para calcularla
+    private static final Map<String, List<String>> FIELDS = new LinkedHashMap<>();
+    
+    static {
+        FIELDS.put("id", List.of("id"));
+        FIELDS.put("title", List.of("title"));
+        FIELDS.put("description", List.of("description"));
+        FIELDS.put("originalFilename", List.of("originalFilename"));
+        FIELDS.put("contentType", List.of("contentType"));
+        FIELDS.put("size", List.of("size"));
+        FIELDS.put("duration", List.of("duration"));
+        FIELDS.put("uploadedBy", List.of("uploadedBy"));
+        FIELDS.put("encrypted", List.of("isEncrypted"));
+        FIELDS.put("resolution", List.of("resolution"));
+        FIELDS.put("bitrate", List.of("bitrate"));
+        FIELDS.put("codec", List.of("codec"));
+        FIELDS.put("tags", List.of("tags"));
+        FIELDS.put("public", List.of("isPublic"));
+        FIELDS.put("viewCount", List.of("viewCount"));
+        FIELDS.put("status", List.of("status"));
+        FIELDS.put("processingStatus", List.of("processingStatus"));
+        FIELDS.put("createdAt", List.of("createdAt"));
+        FIELDS.put("updatedAt", List.of("updatedAt"));
+        FIELDS.put("uploadProgress", List.of("uploadProgress"));
+        FIELDS.put("thumbnailUrl", List.of("id", "thumbnailId"));
+        FIELDS.put("streamUrl", List.of("id"));
+    }
+    
+    // Nombres de los campos Java de VideoResponse que Jackson serializa sin el prefijo "is"
+    private static final Map<String, String> ALIASES = Map.of(
+            "isEncrypted", "encrypted",
+            "isPublic", "public");
+    
+    private final Set<String> properties;
+    private final Set<String> entityFields;
+    
+    private VideoFieldSelection(Set<String> properties, Set<String> entityFields) {
+        this.properties = properties;
+        this.entityFields = entityFields;
+    }
+    
+    /**
+     * Interpretar el parámetro fields. Devuelve null si no se pidió selección (todos los campos).
+     */
+    public static VideoFieldSelection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> properties = new LinkedHashSet<>();
+        Set<String> entityFields = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            name = ALIASES.getOrDefault(name, name);
+            List<String> required = FIELDS.get(name);
+            if (required == null) {
+                throw new ValidationException("Unknown field: " + name);
+            }
+            properties.add(name);
+            entityFields.addAll(required);
+        }
+        return properties.isEmpty() ? null : new VideoFieldSelection(properties, entityFields);
+    }
+    
+    /**
+     * Propiedades JSON que se deben serializar
+     */
+    public Set<String> properties() {
+        return properties;
+    }
+    
+    /**
+     * Campos de la entidad a proyectar, más los necesarios internamente (p. ej. control de acceso)
+     */
+    public String[] entityFields(String... alwaysRequired) {
+        Set<String> fields = new LinkedHashSet<>(entityFields);
+        fields.addAll(List.of(alwaysRequired));
+        return fields.toArray(new String[0]);
+    }
+}
@@ -1,5 +1,6 @@
 package com.mike.streming.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.mike.streming.model.Video;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,6 +17,7 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonFilter(VideoFieldSelection.FILTER_ID)
 public class VideoResponse {
     
     private String id;
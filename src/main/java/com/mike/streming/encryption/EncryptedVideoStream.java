@@ -0,0 +1,24 @@
+package com.mike.streming.encryption;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stream de video cifrado junto con la cabecera necesaria para descifrarlo
+ *
+ * @param inputStream      texto cifrado
+ * @param encryptionHeader versión del formato, algoritmo y parámetros (IV o índice de segmentos)
+ * @param chunkSize        tamaño de chunk de GridFS requerido por el formato, o 0 para el por defecto
+ */
+public record EncryptedVideoStream(InputStream inputStream, Map<String, Object> encryptionHeader, int chunkSize) {
+
+    /**
+     * Metadata de cifrado que se guarda junto al archivo en GridFS
+     */
+    public Map<String, Object> toMetadata() {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("encryption", encryptionHeader);
+        return metadata;
+    }
+}
@@ -2,20 +2,30 @@ package com.mike.streming.encryption;
 
 import com.mike.streming.config.EncryptionConfig;
 import com.mike.streming.exception.EncryptionException;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Servicio de encriptación AES-256-CBC
@@ -28,6 +38,32 @@ public class EncryptionService {
     private final EncryptionConfig encryptionConfig;
     private static final int IV_LENGTH = 16; // Para AES/CBC
     
+    // Un único CSPRNG compartido: SecureRandom es thread-safe
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    
+    // Cifradores reutilizados por hilo y transformación; Cipher no es thread-safe
+    private final ThreadLocal<Map<String, Cipher>> cipherPool = ThreadLocal.withInitial(HashMap::new);
+    
+    // Claves AES derivadas de cada versión de la clave maestra. Las claves de datos no se
+    // guardan aquí: las cachea DataKeyCache, que sobrescribe su material al expulsarlas.
+    private final Map<String, SecretKey> derivedMasterKeys = new ConcurrentHashMap<>();
+    
+    /**
+     * Derivar la clave maestra activa una sola vez al arrancar
+     */
+    @PostConstruct
+    public void init() {
+        masterKey(getActiveMasterKeyId());
+    }
+    
+    /**
+     * Versión de la clave maestra con la que se envuelven las claves nuevas
+     */
+    public String getActiveMasterKeyId() {
+        String keyId = encryptionConfig.getMasterKeyId();
+        return keyId != null ? keyId : EncryptionConfig.DEFAULT_MASTER_KEY_ID;
+    }
+    
     /**
      * Generar clave de encriptación aleatoria
      */
@@ -48,31 +84,16 @@ public class EncryptionService {
      * Encriptar datos
      */
     public EncryptedData encrypt(byte[] data, String base64Key) {
+        return encrypt(data, 0, data.length, base64Key);
+    }
+    
+    /**
+     * Encriptar una porción de un array sin copiarla previamente
+     */
+    public EncryptedData encrypt(byte[] data, int offset, int length, String base64Key) {
         try {
-            SecretKey secretKey = new SecretKeySpec(
-                    Base64.getDecoder().decode(base64Key), 
-                    encryptionConfig.getAlgorithm()
-            );
-            
-            // Usar el proveedor por defecto de Java para AES/CBC/PKCS5Padding
-            Cipher cipher = Cipher.getInstance(encryptionConfig.getTransformation());
-            
-            // Generar IV aleatorio
-            byte[] iv = new byte[IV_LENGTH];
-            new SecureRandom().nextBytes(iv);
-            
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
-            
-            byte[] encryptedData = cipher.doFinal(data);
-            
-            // Combinar IV + datos encriptados
-            byte[] encryptedWithIv = new byte[IV_LENGTH + encryptedData.length];
-            System.arraycopy(iv, 0, encryptedWithIv, 0, IV_LENGTH);
-            System.arraycopy(encryptedData, 0, encryptedWithIv, IV_LENGTH, encryptedData.length);
-            
             return EncryptedData.builder()
-                    .data(encryptedWithIv)
+                    .data(encrypt(data, offset, length, toSecretKey(base64Key)))
                     .key(base64Key)
                     .algorithm(encryptionConfig.getTransformation())
                     .build();
@@ -88,26 +109,7 @@ public class EncryptionService {
      */
     public byte[] decrypt(EncryptedData encryptedData) {
         try {
-            SecretKey secretKey = new SecretKeySpec(
-                    Base64.getDecoder().decode(encryptedData.getKey()), 
-                    encryptionConfig.getAlgorithm()
-            );
-            
-            // Usar el proveedor por defecto de Java para AES/CBC/PKCS5Padding
-            Cipher cipher = Cipher.getInstance(encryptedData.getAlgorithm());
-            
-            // Extraer IV
-            byte[] iv = new byte[IV_LENGTH];
-            System.arraycopy(encryptedData.getData(), 0, iv, 0, IV_LENGTH);
-            
-            // Extraer datos encriptados
-            byte[] encryptedBytes = new byte[encryptedData.getData().length - IV_LENGTH];
-            System.arraycopy(encryptedData.getData(), IV_LENGTH, encryptedBytes, 0, encryptedBytes.length);
-            
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
-            
-            return cipher.doFinal(encryptedBytes);
+            return decrypt(encryptedData.getData(), encryptedData.getAlgorithm(), toSecretKey(encryptedData.getKey()));
             
         } catch (Exception e) {
             log.error("Error decrypting data: {}", e.getMessage());
@@ -115,6 +117,60 @@ public class EncryptionService {
         }
     }
     
+    /**
+     * Cifrar o descifrar de una vez el contenido restante de input en output, con un cifrador
+     * reutilizado del hilo actual. Permite trabajar sobre buffers propios sin copias por chunk.
+     *
+     * El cifrado GCM usa un cifrador nuevo: el proveedor rechaza reinicializar para cifrar una
+     * instancia con la misma clave e IV que su último uso, y eso es justo lo que ocurre al retomar
+     * un cifrado desde el último segmento sellado en el mismo hilo.
+     *
+     * @return bytes escritos en output
+     */
+    public int doFinal(String transformation, int mode, SecretKey key, AlgorithmParameterSpec params,
+                       ByteBuffer input, ByteBuffer output) {
+        try {
+            Cipher cipher = mode == Cipher.ENCRYPT_MODE && params instanceof GCMParameterSpec
+                    ? Cipher.getInstance(transformation)
+                    : pooledCipher(transformation);
+            cipher.init(mode, key, params);
+            return cipher.doFinal(input, output);
+            
+        } catch (AEADBadTagException e) {
+            throw new EncryptionException("Authentication failed", e);
+        } catch (Exception e) {
+            log.error("Error processing {} buffer: {}", transformation, e.getMessage());
+            throw new EncryptionException("Failed to process buffer", e);
+        }
+    }
+    
+    /**
+     * Decodificar una clave Base64 sin guardarla en la caché interna
+     */
+    public SecretKey toSecretKey(String base64Key) {
+        try {
+            return new SecretKeySpec(Base64.getDecoder().decode(base64Key), encryptionConfig.getAlgorithm());
+        } catch (IllegalArgumentException e) {
+            throw new EncryptionException("Invalid encryption key", e);
+        }
+    }
+    
+    /**
+     * Generar un IV aleatorio
+     */
+    public byte[] generateIv() {
+        return generateRandomBytes(IV_LENGTH);
+    }
+    
+    /**
+     * Generar bytes aleatorios (nonces, prefijos)
+     */
+    public byte[] generateRandomBytes(int length) {
+        byte[] bytes = new byte[length];
+        SECURE_RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+    
     /**
      * Encriptar string
      */
@@ -135,12 +191,9 @@ public class EncryptionService {
      */
     public String encryptKey(String keyToEncrypt) {
         try {
-            // Crear una clave AES válida a partir de la clave maestra
-            String masterKeyBase64 = createAESKeyFromMasterKey(encryptionConfig.getMasterKey());
-            
             byte[] keyBytes = keyToEncrypt.getBytes(StandardCharsets.UTF_8);
-            EncryptedData encrypted = encrypt(keyBytes, masterKeyBase64);
-            return Base64.getEncoder().encodeToString(encrypted.getData());
+            byte[] encrypted = encrypt(keyBytes, 0, keyBytes.length, masterKey(getActiveMasterKeyId()));
+            return Base64.getEncoder().encodeToString(encrypted);
         } catch (Exception e) {
             log.error("Error encrypting key: {}", e.getMessage());
             throw new EncryptionException("Failed to encrypt key", e);
@@ -151,18 +204,15 @@ public class EncryptionService {
      * Desencriptar clave con clave maestra
      */
     public String decryptKey(String encryptedKey) {
+        return decryptKey(encryptedKey, getActiveMasterKeyId());
+    }
+    
+    /**
+     * Desencriptar clave con una versión concreta de la clave maestra (null = versión inicial)
+     */
+    public String decryptKey(String encryptedKey, String masterKeyId) {
         try {
-            // Crear una clave AES válida a partir de la clave maestra
-            String masterKeyBase64 = createAESKeyFromMasterKey(encryptionConfig.getMasterKey());
-            
-            byte[] encryptedBytes = Base64.getDecoder().decode(encryptedKey);
-            EncryptedData encryptedData = EncryptedData.builder()
-                    .data(encryptedBytes)
-                    .key(masterKeyBase64)
-                    .algorithm(encryptionConfig.getTransformation())
-                    .build();
-            
-            byte[] decryptedBytes = decrypt(encryptedData);
+            byte[] decryptedBytes = unwrap(encryptedKey, masterKeyId);
             return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
             log.error("Error decrypting key: {}", e.getMessage());
@@ -170,15 +220,112 @@ public class EncryptionService {
         }
     }
     
+    /**
+     * Desencriptar una clave envuelta y devolver directamente su material, sin pasar por
+     * Strings (inmutables, no se pueden sobrescribir). El llamador debe llenar de ceros el
+     * array cuando deje de necesitarlo.
+     */
+    public byte[] decryptKeyMaterial(String encryptedKey, String masterKeyId) {
+        byte[] encoded = null;
+        try {
+            encoded = unwrap(encryptedKey, masterKeyId);
+            return Base64.getDecoder().decode(encoded);
+        } catch (Exception e) {
+            log.error("Error decrypting key: {}", e.getMessage());
+            throw new EncryptionException("Failed to decrypt key", e);
+        } finally {
+            if (encoded != null) {
+                Arrays.fill(encoded, (byte) 0);
+            }
+        }
+    }
+    
+    /**
+     * Volver a envolver una clave con la clave maestra activa, sin tocar los datos que protege
+     */
+    public String rewrapKey(String encryptedKey, String masterKeyId) {
+        return encryptKey(decryptKey(encryptedKey, masterKeyId));
+    }
+    
+    /**
+     * Desenvolver una clave con la clave maestra: devuelve la clave en Base64 como bytes
+     */
+    private byte[] unwrap(String encryptedKey, String masterKeyId) throws GeneralSecurityException {
+        byte[] encryptedBytes = Base64.getDecoder().decode(encryptedKey);
+        return decrypt(encryptedBytes, encryptionConfig.getTransformation(),
+                masterKey(masterKeyId != null ? masterKeyId : EncryptionConfig.DEFAULT_MASTER_KEY_ID));
+    }
+    
+    /**
+     * Cifrar con un IV aleatorio: devuelve IV + datos cifrados
+     */
+    private byte[] encrypt(byte[] data, int offset, int length, SecretKey key) throws GeneralSecurityException {
+        Cipher cipher = pooledCipher(encryptionConfig.getTransformation());
+        byte[] iv = generateIv();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+        
+        // IV + datos encriptados, escritos directamente en el array de salida
+        byte[] encryptedWithIv = new byte[IV_LENGTH + cipher.getOutputSize(length)];
+        System.arraycopy(iv, 0, encryptedWithIv, 0, IV_LENGTH);
+        int written = cipher.doFinal(data, offset, length, encryptedWithIv, IV_LENGTH);
+        if (IV_LENGTH + written < encryptedWithIv.length) {
+            encryptedWithIv = Arrays.copyOf(encryptedWithIv, IV_LENGTH + written);
+        }
+        return encryptedWithIv;
+    }
+    
+    /**
+     * Descifrar IV + datos cifrados; el IV se usa sin copiarlo
+     */
+    private byte[] decrypt(byte[] data, String transformation, SecretKey key) throws GeneralSecurityException {
+        Cipher cipher = pooledCipher(transformation);
+        cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(data, 0, IV_LENGTH));
+        return cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+    }
+    
+    /**
+     * Clave AES derivada de una versión de la clave maestra, calculada una sola vez por versión
+     */
+    private SecretKey masterKey(String keyId) {
+        return derivedMasterKeys.computeIfAbsent(keyId, id -> createAESKeyFromMasterKey(masterKeySecret(id)));
+    }
+    
+    private String masterKeySecret(String keyId) {
+        if (keyId.equals(getActiveMasterKeyId())) {
+            return encryptionConfig.getMasterKey();
+        }
+        Map<String, String> previous = encryptionConfig.getPreviousMasterKeys();
+        String secret = previous != null ? previous.get(keyId) : null;
+        if (secret == null) {
+            throw new EncryptionException("Unknown master key id: " + keyId);
+        }
+        return secret;
+    }
+    
+    /**
+     * Cifrador del hilo actual para la transformación dada
+     */
+    private Cipher pooledCipher(String transformation) throws GeneralSecurityException {
+        Map<String, Cipher> ciphers = cipherPool.get();
+        Cipher cipher = ciphers.get(transformation);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+            ciphers.put(transformation, cipher);
+        }
+        return cipher;
+    }
+    
     /**
      * Crear una clave AES válida a partir de la clave maestra
      */
-    private String createAESKeyFromMasterKey(String masterKey) {
+    private SecretKey createAESKeyFromMasterKey(String masterKey) {
         try {
             // Usar SHA-256 para crear una clave de 32 bytes a partir de la clave maestra
             java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(masterKey.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
+            SecretKey key = new SecretKeySpec(hash, encryptionConfig.getAlgorithm());
+            Arrays.fill(hash, (byte) 0);
+            return key;
         } catch (Exception e) {
             log.error("Error creating AES key from master key: {}", e.getMessage());
             throw new EncryptionException("Failed to create AES key from master key", e);
@@ -0,0 +1,160 @@
+package com.mike.streming.encryption;
+
+import com.mike.streming.exception.EncryptionException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Variante paralela de {@link SegmentEncryptingInputStream}: los segmentos se leen en orden desde
+ * el texto plano, se sellan en un pool de workers y se entregan en orden gracias a una cola FIFO de
+ * futuros que actúa como buffer de reordenamiento. Como mucho maxInFlight segmentos están en vuelo,
+ * así que la memoria queda acotada a maxInFlight * (segmento + segmento sellado).
+ */
+class ParallelSegmentEncryptingInputStream extends InputStream {
+
+    private final InputStream plaintext;
+    private final EncryptionService encryptionService;
+    private final SecretKey encryptionKey;
+    private final SegmentIndex index;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    private final Deque<Future<SealedSegment>> inFlight = new ArrayDeque<>();
+    private final Deque<byte[]> plainBuffers = new ArrayDeque<>();
+    private final Deque<byte[]> sealedBuffers = new ArrayDeque<>();
+
+    private long nextSegment;
+    private byte[] current;
+    private int currentLength;
+    private int position;
+
+    ParallelSegmentEncryptingInputStream(InputStream plaintext, EncryptionService encryptionService,
+                                         SecretKey encryptionKey, SegmentIndex index,
+                                         ExecutorService executor, int maxInFlight) {
+        this(plaintext, encryptionService, encryptionKey, index, executor, maxInFlight, 0);
+    }
+
+    /**
+     * Empezar en un segmento concreto; el texto plano debe estar posicionado al inicio de ese segmento
+     */
+    ParallelSegmentEncryptingInputStream(InputStream plaintext, EncryptionService encryptionService,
+                                         SecretKey encryptionKey, SegmentIndex index,
+                                         ExecutorService executor, int maxInFlight, long firstSegment) {
+        this.plaintext = plaintext;
+        this.encryptionService = encryptionService;
+        this.encryptionKey = encryptionKey;
+        this.index = index;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.nextSegment = firstSegment;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= currentLength && !nextSealed()) {
+            return -1;
+        }
+        int toCopy = Math.min(len, currentLength - position);
+        System.arraycopy(current, position, b, off, toCopy);
+        position += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Future<SealedSegment> pending;
+        while ((pending = inFlight.poll()) != null) {
+            pending.cancel(true);
+        }
+        plaintext.close();
+    }
+
+    private boolean nextSealed() throws IOException {
+        if (current != null) {
+            sealedBuffers.push(current);
+            current = null;
+            currentLength = 0;
+        }
+
+        submitAvailable();
+
+        Future<SealedSegment> next = inFlight.poll();
+        if (next == null) {
+            if (plaintext.read() != -1) {
+                throw new EncryptionException("Video is longer than its declared size");
+            }
+            return false;
+        }
+
+        SealedSegment sealed = await(next);
+        plainBuffers.push(sealed.plain());
+        current = sealed.sealed();
+        currentLength = sealed.length();
+        position = 0;
+
+        // Mantener el pipeline lleno mientras el llamador consume este segmento
+        submitAvailable();
+        return true;
+    }
+
+    /**
+     * Leer en orden los siguientes segmentos y enviarlos a sellar hasta llenar la ventana
+     */
+    private void submitAvailable() throws IOException {
+        while (inFlight.size() < maxInFlight && nextSegment < index.segmentCount()) {
+            long segment = nextSegment;
+            int length = index.plaintextLength(segment);
+
+            byte[] plain = plainBuffers.isEmpty() ? new byte[index.segmentSize()] : plainBuffers.pop();
+            if (plaintext.readNBytes(plain, 0, length) < length) {
+                throw new EncryptionException("Video is shorter than its declared size");
+            }
+            byte[] sealed = sealedBuffers.isEmpty() ? new byte[index.sealedSegmentSize()] : sealedBuffers.pop();
+
+            inFlight.add(executor.submit(() -> new SealedSegment(plain, sealed, encryptionService.doFinal(
+                    SegmentIndex.ALGORITHM, Cipher.ENCRYPT_MODE, encryptionKey, index.parameterSpec(segment),
+                    ByteBuffer.wrap(plain, 0, length), ByteBuffer.wrap(sealed)))));
+            nextSegment++;
+        }
+    }
+
+    private SealedSegment await(Future<SealedSegment> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encrypting video segments");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EncryptionException encryptionException) {
+                throw encryptionException;
+            }
+            throw new EncryptionException("Failed to encrypt video segment", e.getCause());
+        }
+    }
+
+    /**
+     * Segmento ya sellado junto con los buffers que se reciclan al consumirlo
+     */
+    private record SealedSegment(byte[] plain, byte[] sealed, int length) {
+    }
+}
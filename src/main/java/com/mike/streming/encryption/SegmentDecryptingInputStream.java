@@ -0,0 +1,99 @@
+package com.mike.streming.encryption;
+
+import com.mike.streming.exception.EncryptionException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream que verifica y descifra segmentos AES-GCM (formato v2) a partir de un stream
+ * de texto cifrado que empieza en el límite del primer segmento del rango pedido.
+ */
+class SegmentDecryptingInputStream extends InputStream {
+
+    private final InputStream ciphertext;
+    private final EncryptionService encryptionService;
+    private final SecretKey encryptionKey;
+    private final SegmentIndex index;
+    private final byte[] sealed;
+    private final byte[] plain;
+
+    private long nextSegment;
+    private long skip;
+    private long remaining;
+
+    private int position;
+    private int limit;
+
+    /**
+     * @param start primer byte (texto plano) del rango
+     * @param end   último byte (texto plano, inclusive) del rango
+     */
+    SegmentDecryptingInputStream(InputStream ciphertext, EncryptionService encryptionService,
+                                 SecretKey encryptionKey, SegmentIndex index, long start, long end) {
+        this.ciphertext = ciphertext;
+        this.encryptionService = encryptionService;
+        this.encryptionKey = encryptionKey;
+        this.index = index;
+        this.sealed = new byte[index.sealedSegmentSize()];
+        this.plain = new byte[index.segmentSize()];
+        this.nextSegment = index.segmentOf(start);
+        this.skip = start - nextSegment * index.segmentSize();
+        this.remaining = end - start + 1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= limit && !openNext()) {
+            return -1;
+        }
+        int toCopy = Math.min(len, limit - position);
+        System.arraycopy(plain, position, b, off, toCopy);
+        position += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ciphertext.close();
+    }
+
+    private boolean openNext() throws IOException {
+        if (remaining <= 0 || nextSegment >= index.segmentCount()) {
+            return false;
+        }
+
+        int sealedLength = index.plaintextLength(nextSegment) + SegmentIndex.TAG_LENGTH;
+        if (ciphertext.readNBytes(sealed, 0, sealedLength) < sealedLength) {
+            throw new EncryptionException("Encrypted segment " + nextSegment + " is truncated");
+        }
+
+        int plainLength;
+        try {
+            plainLength = encryptionService.doFinal(SegmentIndex.ALGORITHM, Cipher.DECRYPT_MODE, encryptionKey,
+                    index.parameterSpec(nextSegment), ByteBuffer.wrap(sealed, 0, sealedLength), ByteBuffer.wrap(plain));
+        } catch (EncryptionException e) {
+            throw new EncryptionException("Failed to verify encrypted segment " + nextSegment, e);
+        }
+
+        position = (int) skip;
+        limit = (int) Math.min(plainLength, skip + remaining);
+        remaining -= limit - position;
+        skip = 0;
+        nextSegment++;
+        return true;
+    }
+}
@@ -0,0 +1,93 @@
+package com.mike.streming.encryption;
+
+import com.mike.streming.exception.EncryptionException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream que sella el video segmento a segmento con AES-GCM (formato v2).
+ * Solo mantiene en memoria el segmento en curso.
+ */
+class SegmentEncryptingInputStream extends InputStream {
+
+    private final InputStream plaintext;
+    private final EncryptionService encryptionService;
+    private final SecretKey encryptionKey;
+    private final SegmentIndex index;
+    private final byte[] segment;
+    private final byte[] sealed;
+
+    private int sealedLength;
+    private int position;
+    private long nextSegment;
+
+    SegmentEncryptingInputStream(InputStream plaintext, EncryptionService encryptionService,
+                                 SecretKey encryptionKey, SegmentIndex index) {
+        this(plaintext, encryptionService, encryptionKey, index, 0);
+    }
+
+    /**
+     * Empezar en un segmento concreto; el texto plano debe estar posicionado al inicio de ese segmento
+     */
+    SegmentEncryptingInputStream(InputStream plaintext, EncryptionService encryptionService,
+                                 SecretKey encryptionKey, SegmentIndex index, long firstSegment) {
+        this.plaintext = plaintext;
+        this.encryptionService = encryptionService;
+        this.encryptionKey = encryptionKey;
+        this.index = index;
+        this.segment = new byte[index.segmentSize()];
+        this.sealed = new byte[index.sealedSegmentSize()];
+        this.nextSegment = firstSegment;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= sealedLength && !sealNext()) {
+            return -1;
+        }
+        int toCopy = Math.min(len, sealedLength - position);
+        System.arraycopy(sealed, position, b, off, toCopy);
+        position += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public void close() throws IOException {
+        plaintext.close();
+    }
+
+    private boolean sealNext() throws IOException {
+        if (nextSegment >= index.segmentCount()) {
+            if (plaintext.read() != -1) {
+                throw new EncryptionException("Video is longer than its declared size");
+            }
+            return false;
+        }
+
+        int length = index.plaintextLength(nextSegment);
+        if (plaintext.readNBytes(segment, 0, length) < length) {
+            throw new EncryptionException("Video is shorter than its declared size");
+        }
+
+        // Los buffers del segmento se reutilizan: no hay arrays nuevos por segmento
+        sealedLength = encryptionService.doFinal(SegmentIndex.ALGORITHM, Cipher.ENCRYPT_MODE, encryptionKey,
+                index.parameterSpec(nextSegment), ByteBuffer.wrap(segment, 0, length), ByteBuffer.wrap(sealed));
+        position = 0;
+        nextSegment++;
+        return true;
+    }
+}
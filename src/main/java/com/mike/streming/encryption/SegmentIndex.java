@@ -0,0 +1,113 @@
+package com.mike.streming.encryption;
+
+import com.mike.streming.exception.EncryptionException;
+
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Índice del formato segmentado (v2): el video se divide en segmentos de texto plano de tamaño fijo
+ * y cada uno se sella por separado con AES-GCM. Cada segmento cifrado ocupa exactamente un chunk de
+ * GridFS, así que cualquier segmento puede verificarse y descifrarse de forma independiente.
+ *
+ * Nonce de 12 bytes: prefijo aleatorio del archivo (7) + índice del segmento (4, big-endian)
+ * + indicador de último segmento (1). El nonce impide reordenar, duplicar o truncar segmentos.
+ */
+record SegmentIndex(int segmentSize, long segmentCount, int lastSegmentLength, byte[] noncePrefix) {
+
+    static final int VERSION = 2;
+    static final String ALGORITHM = "AES/GCM/NoPadding";
+    static final int TAG_LENGTH = 16;
+    static final int NONCE_PREFIX_LENGTH = 7;
+    static final int NONCE_LENGTH = 12;
+
+    private static final long MAX_SEGMENTS = 0xFFFFFFFFL;
+
+    /**
+     * Construir el índice para un video de longitud conocida
+     */
+    static SegmentIndex forLength(long plaintextLength, int segmentSize, byte[] noncePrefix) {
+        if (plaintextLength < 0 || segmentSize <= 0) {
+            throw new EncryptionException("Invalid segmented encryption parameters");
+        }
+        long segmentCount = Math.max(1, (plaintextLength + segmentSize - 1) / segmentSize);
+        if (segmentCount > MAX_SEGMENTS) {
+            throw new EncryptionException("Video too large for segment size " + segmentSize);
+        }
+        int lastSegmentLength = (int) (plaintextLength - (segmentCount - 1) * segmentSize);
+        return new SegmentIndex(segmentSize, segmentCount, lastSegmentLength, noncePrefix);
+    }
+
+    /**
+     * Leer el índice guardado en la metadata de GridFS
+     */
+    static SegmentIndex fromHeader(Map<?, ?> header) {
+        try {
+            return new SegmentIndex(
+                    ((Number) header.get("segmentSize")).intValue(),
+                    ((Number) header.get("segmentCount")).longValue(),
+                    ((Number) header.get("lastSegmentLength")).intValue(),
+                    Base64.getDecoder().decode((String) header.get("noncePrefix"))
+            );
+        } catch (RuntimeException e) {
+            throw new EncryptionException("Invalid segment index in file metadata", e);
+        }
+    }
+
+    Map<String, Object> toHeader() {
+        Map<String, Object> header = new HashMap<>();
+        header.put("version", VERSION);
+        header.put("algorithm", ALGORITHM);
+        header.put("segmentSize", segmentSize);
+        header.put("segmentCount", segmentCount);
+        header.put("lastSegmentLength", lastSegmentLength);
+        header.put("plaintextLength", plaintextLength());
+        header.put("noncePrefix", Base64.getEncoder().encodeToString(noncePrefix));
+        return header;
+    }
+
+    long plaintextLength() {
+        return (segmentCount - 1) * segmentSize + lastSegmentLength;
+    }
+
+    /**
+     * Tamaño de un segmento completo ya sellado; es el tamaño de chunk de GridFS
+     */
+    int sealedSegmentSize() {
+        return segmentSize + TAG_LENGTH;
+    }
+
+    int plaintextLength(long segment) {
+        return segment == segmentCount - 1 ? lastSegmentLength : segmentSize;
+    }
+
+    long segmentOf(long plaintextOffset) {
+        return plaintextOffset / segmentSize;
+    }
+
+    long ciphertextOffset(long segment) {
+        return segment * sealedSegmentSize();
+    }
+
+    /**
+     * Último byte (inclusive) del segmento sellado dentro del archivo cifrado
+     */
+    long ciphertextEnd(long segment) {
+        return ciphertextOffset(segment) + plaintextLength(segment) + TAG_LENGTH - 1;
+    }
+
+    GCMParameterSpec parameterSpec(long segment) {
+        if (segment < 0 || segment >= segmentCount) {
+            throw new EncryptionException("Segment out of range: " + segment);
+        }
+        byte[] nonce = ByteBuffer.allocate(NONCE_LENGTH)
+                .put(noncePrefix, 0, NONCE_PREFIX_LENGTH)
+                .putInt((int) segment)
+                .put((byte) (segment == segmentCount - 1 ? 1 : 0))
+                .array();
+        return new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+    }
+}
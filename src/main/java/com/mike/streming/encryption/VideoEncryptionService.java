@@ -1,16 +1,21 @@
 package com.mike.streming.encryption;
 
+import com.mike.streming.config.EncryptionConfig;
 import com.mike.streming.exception.EncryptionException;
+import com.mike.streming.model.StreamableVideo;
 import com.mike.streming.model.Video;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.InputStream;
+import javax.crypto.SecretKey;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Servicio especializado para encriptación de videos
@@ -21,40 +26,27 @@ import java.util.concurrent.CompletableFuture;
 public class VideoEncryptionService {
     
     private final EncryptionService encryptionService;
-    private static final int CHUNK_SIZE = 1024 * 1024; // 1MB chunks
+    private final EncryptionConfig encryptionConfig;
+    
+    /** Formato v2: segmentos de tamaño fijo sellados con AES-GCM, índice en la metadata de GridFS */
+    public static final int SEGMENTED_FORMAT_VERSION = SegmentIndex.VERSION;
+    
+    // Pool dedicado al cifrado de segmentos; se crea al primer uso
+    private volatile ExecutorService segmentExecutor;
     
     /**
-     * Encriptar video completo
+     * Fuente de rangos [start, end] (inclusive) del archivo cifrado almacenado
      */
-    public CompletableFuture<EncryptedData> encryptVideo(InputStream videoStream, String encryptionKey) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                log.info("Starting video encryption");
-                
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                byte[] buffer = new byte[CHUNK_SIZE];
-                int bytesRead;
-                
-                while ((bytesRead = videoStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                }
-                
-                byte[] videoData = outputStream.toByteArray();
-                log.info("Video data loaded, size: {} bytes", videoData.length);
-                
-                EncryptedData encryptedData = encryptionService.encrypt(videoData, encryptionKey);
-                log.info("Video encryption completed");
-                
-                return encryptedData;
-                
-            } catch (IOException e) {
-                log.error("Error reading video stream: {}", e.getMessage());
-                throw new EncryptionException("Failed to read video stream", e);
-            } catch (Exception e) {
-                log.error("Error encrypting video: {}", e.getMessage());
-                throw new EncryptionException("Failed to encrypt video", e);
-            }
-        });
+    @FunctionalInterface
+    public interface CiphertextSource {
+        InputStream open(long start, long end);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (segmentExecutor != null) {
+            segmentExecutor.shutdownNow();
+        }
     }
     
     /**
@@ -75,68 +67,122 @@ public class VideoEncryptionService {
     }
     
     /**
-     * Encriptar video en streaming (chunks)
-     */
-    public InputStream encryptVideoStream(InputStream videoStream, String encryptionKey) {
-        try {
-            log.info("Starting streaming video encryption");
-            
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            byte[] buffer = new byte[CHUNK_SIZE];
-            int bytesRead;
-            
-            while ((bytesRead = videoStream.read(buffer)) != -1) {
-                // Encriptar chunk
-                byte[] chunk = new byte[bytesRead];
-                System.arraycopy(buffer, 0, chunk, 0, bytesRead);
-                
-                EncryptedData encryptedChunk = encryptionService.encrypt(chunk, encryptionKey);
-                outputStream.write(encryptedChunk.getData());
-            }
-            
-            byte[] encryptedData = outputStream.toByteArray();
-            log.info("Streaming video encryption completed, size: {} bytes", encryptedData.length);
-            
-            return new ByteArrayInputStream(encryptedData);
-            
-        } catch (IOException e) {
-            log.error("Error in streaming video encryption: {}", e.getMessage());
-            throw new EncryptionException("Failed to encrypt video stream", e);
-        }
+     * Cifrar video en streaming con el formato segmentado AES-GCM (v2). Cada segmento se
+     * autentica por separado y ocupa un chunk de GridFS, lo que permite verificarlo y
+     * descifrarlo de forma independiente, en paralelo o a partir de cualquier offset.
+     */
+    public EncryptedVideoStream sealingStream(InputStream videoStream, String encryptionKey, long plaintextLength) {
+        return sealingStream(videoStream, encryptionKey, newSegmentedHeader(plaintextLength), 0);
     }
     
     /**
-     * Desencriptar video en streaming (chunks)
-     */
-    public InputStream decryptVideoStream(InputStream encryptedStream, String encryptionKey) {
-        try {
-            log.info("Starting streaming video decryption");
-            
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            byte[] buffer = new byte[CHUNK_SIZE];
-            int bytesRead;
-            
-            while ((bytesRead = encryptedStream.read(buffer)) != -1) {
-                // Desencriptar chunk
-                EncryptedData encryptedChunk = EncryptedData.builder()
-                        .data(buffer)
-                        .key(encryptionKey)
-                        .algorithm("AES/CBC/PKCS5Padding")
-                        .build();
-                
-                byte[] decryptedChunk = encryptionService.decrypt(encryptedChunk);
-                outputStream.write(decryptedChunk);
-            }
-            
-            byte[] decryptedData = outputStream.toByteArray();
-            log.info("Streaming video decryption completed, size: {} bytes", decryptedData.length);
-            
-            return new ByteArrayInputStream(decryptedData);
-            
-        } catch (IOException e) {
-            log.error("Error in streaming video decryption: {}", e.getMessage());
-            throw new EncryptionException("Failed to decrypt video stream", e);
+     * Cabecera de un nuevo video en formato segmentado (tamaño de segmento y prefijo de nonce
+     * aleatorio). Guardarla permite retomar el cifrado más tarde con los mismos parámetros.
+     */
+    public Map<String, Object> newSegmentedHeader(long plaintextLength) {
+        return SegmentIndex.forLength(
+                plaintextLength,
+                encryptionConfig.getSegmentSize(),
+                encryptionService.generateRandomBytes(SegmentIndex.NONCE_PREFIX_LENGTH)
+        ).toHeader();
+    }
+    
+    /**
+     * Continuar el cifrado segmentado a partir de firstSegment con una cabecera ya generada.
+     * El texto plano debe empezar en {@link #segmentOffset(Map, long)}. Volver a sellar un
+     * segmento produce el mismo texto cifrado (misma clave, nonce y contenido), así que repetir
+     * segmentos tras una interrupción no reutiliza el nonce con datos distintos.
+     */
+    public EncryptedVideoStream sealingStream(InputStream videoStream, String encryptionKey,
+                                              Map<String, Object> header, long firstSegment) {
+        return sealingStream(videoStream, encryptionService.toSecretKey(encryptionKey), header, firstSegment);
+    }
+    
+    /**
+     * Igual que {@link #sealingStream(InputStream, String, Map, long)} con la clave de datos ya
+     * desenvuelta (por ejemplo, desde la caché de claves)
+     */
+    public EncryptedVideoStream sealingStream(InputStream videoStream, SecretKey key,
+                                              Map<String, Object> header, long firstSegment) {
+        SegmentIndex index = SegmentIndex.fromHeader(header);
+        int parallelism = parallelism();
+        
+        // Con varios segmentos y varios núcleos, los segmentos se sellan en paralelo y se emiten en orden
+        InputStream ciphertext = parallelism > 1 && index.segmentCount() - firstSegment > 1
+                ? new ParallelSegmentEncryptingInputStream(videoStream, encryptionService, key, index,
+                        segmentExecutor(), maxSegmentsInFlight(parallelism), firstSegment)
+                : new SegmentEncryptingInputStream(videoStream, encryptionService, key, index, firstSegment);
+        
+        log.info("Starting segmented AES-GCM video encryption: {} segments of {} bytes on {} threads, from segment {}", 
+                index.segmentCount(), index.segmentSize(), parallelism, firstSegment);
+        return new EncryptedVideoStream(ciphertext, index.toHeader(), index.sealedSegmentSize());
+    }
+    
+    /**
+     * Número de segmentos (y de chunks de GridFS) de un video en formato segmentado
+     */
+    public long segmentCount(Map<String, Object> header) {
+        return SegmentIndex.fromHeader(header).segmentCount();
+    }
+    
+    /**
+     * Offset en claro donde empieza un segmento
+     */
+    public long segmentOffset(Map<String, Object> header, long segment) {
+        return segment * SegmentIndex.fromHeader(header).segmentSize();
+    }
+    
+    /**
+     * Tamaño de un segmento sellado, que es el tamaño de chunk de GridFS del archivo cifrado
+     */
+    public int sealedSegmentSize(Map<String, Object> header) {
+        return SegmentIndex.fromHeader(header).sealedSegmentSize();
+    }
+    
+    /**
+     * Longitud total del archivo cifrado en formato segmentado
+     */
+    public long sealedLength(Map<String, Object> header) {
+        SegmentIndex index = SegmentIndex.fromHeader(header);
+        return index.ciphertextEnd(index.segmentCount() - 1) + 1;
+    }
+    
+    /**
+     * Longitud en claro de un video cifrado a partir de la metadata de GridFS
+     */
+    public long plaintextLength(Map<String, Object> fileMetadata, long storedLength) {
+        Map<?, ?> header = encryptionHeader(fileMetadata);
+        return formatVersion(header) == SEGMENTED_FORMAT_VERSION
+                ? SegmentIndex.fromHeader(header).plaintextLength()
+                : storedLength;
+    }
+    
+    /**
+     * Abrir el rango [start, end] (en claro, inclusive) de un video cifrado, leyendo del
+     * almacenamiento solo el texto cifrado que lo cubre
+     */
+    public InputStream openDecryptedRange(Map<String, Object> fileMetadata, String encryptionKey,
+                                          long start, long end, CiphertextSource source) {
+        return openDecryptedRange(fileMetadata, encryptionService.toSecretKey(encryptionKey), start, end, source);
+    }
+    
+    /**
+     * Igual que {@link #openDecryptedRange(Map, String, long, long, CiphertextSource)} con la
+     * clave de datos ya desenvuelta (por ejemplo, desde la caché de claves)
+     */
+    public InputStream openDecryptedRange(Map<String, Object> fileMetadata, SecretKey encryptionKey,
+                                          long start, long end, CiphertextSource source) {
+        Map<?, ?> header = encryptionHeader(fileMetadata);
+        if (formatVersion(header) != SEGMENTED_FORMAT_VERSION) {
+            throw new EncryptionException("Unsupported encrypted video format");
         }
+        
+        SegmentIndex index = SegmentIndex.fromHeader(header);
+        InputStream ciphertext = source.open(
+                index.ciphertextOffset(index.segmentOf(start)),
+                index.ciphertextEnd(index.segmentOf(end))
+        );
+        return new SegmentDecryptingInputStream(ciphertext, encryptionService, encryptionKey, index, start, end);
     }
     
     /**
@@ -160,10 +206,93 @@ public class VideoEncryptionService {
         return encryptionService.decryptKey(encryptedVideoKey);
     }
     
+    /**
+     * Desencriptar clave de video con la versión de clave maestra que la envolvió
+     */
+    public String decryptVideoKey(String encryptedVideoKey, String masterKeyId) {
+        return encryptionService.decryptKey(encryptedVideoKey, masterKeyId);
+    }
+    
+    /**
+     * Material de la clave de video, desenvuelto sin pasar por Strings. El llamador debe
+     * llenarlo de ceros al terminar.
+     */
+    public byte[] decryptVideoKeyMaterial(String encryptedVideoKey, String masterKeyId) {
+        return encryptionService.decryptKeyMaterial(encryptedVideoKey, masterKeyId);
+    }
+    
+    /**
+     * Re-envolver la clave de video con la clave maestra activa (rotación de claves)
+     */
+    public String rewrapVideoKey(String encryptedVideoKey, String masterKeyId) {
+        return encryptionService.rewrapKey(encryptedVideoKey, masterKeyId);
+    }
+    
+    /**
+     * Versión de la clave maestra activa
+     */
+    public String getActiveMasterKeyId() {
+        return encryptionService.getActiveMasterKeyId();
+    }
+    
     /**
      * Verificar si un video está encriptado
      */
     public boolean isVideoEncrypted(Video video) {
         return video.isEncrypted() && video.getEncryptionKey() != null && !video.getEncryptionKey().isEmpty();
     }
+    
+    /**
+     * Verificar si un video está encriptado a partir de su proyección de streaming
+     */
+    public boolean isVideoEncrypted(StreamableVideo video) {
+        return video.isEncrypted() && video.encryptionKey() != null && !video.encryptionKey().isEmpty();
+    }
+    
+    /**
+     * Cabecera de cifrado guardada en la metadata del archivo
+     */
+    private Map<?, ?> encryptionHeader(Map<String, Object> fileMetadata) {
+        Object encryption = fileMetadata != null ? fileMetadata.get("encryption") : null;
+        if (!(encryption instanceof Map<?, ?> header)) {
+            throw new EncryptionException("Missing encryption metadata");
+        }
+        return header;
+    }
+    
+    private int parallelism() {
+        Integer parallelism = encryptionConfig.getParallelism();
+        return parallelism != null && parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+    
+    private int maxSegmentsInFlight(int parallelism) {
+        Integer maxInFlight = encryptionConfig.getMaxSegmentsInFlight();
+        return maxInFlight != null && maxInFlight > 0 ? maxInFlight : 2 * parallelism;
+    }
+    
+    /**
+     * Pool de hilos daemon con tantos workers como el paralelismo configurado
+     */
+    private ExecutorService segmentExecutor() {
+        ExecutorService executor = segmentExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = segmentExecutor;
+                if (executor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(parallelism(), runnable -> {
+                        Thread thread = new Thread(runnable, "video-encrypt-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    segmentExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+    
+    private int formatVersion(Map<?, ?> header) {
+        return header.get("version") instanceof Number version ? version.intValue() : 0;
+    }
 }
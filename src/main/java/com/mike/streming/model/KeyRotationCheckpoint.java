@@ -0,0 +1,58 @@
+package com.mike.streming.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progreso persistido de una rotación de clave maestra, para reanudarla tras una caída
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "key_rotations")
+public class KeyRotationCheckpoint {
+
+    @Id
+    private String targetKeyId; // Versión de la clave maestra destino
+
+    @Field("status")
+    private RotationStatus status;
+
+    @Field("last_video_id")
+    private String lastVideoId; // Último video procesado (orden por _id)
+
+    @Field("rewrapped")
+    private long rewrapped;
+
+    @Field("failed")
+    private long failed;
+
+    @Field("last_error")
+    private String lastError;
+
+    @Field("started_at")
+    private LocalDateTime startedAt;
+
+    @Field("updated_at")
+    private LocalDateTime updatedAt;
+
+    @Field("completed_at")
+    private LocalDateTime completedAt;
+
+    /**
+     * Estados de la rotación
+     */
+    public enum RotationStatus {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
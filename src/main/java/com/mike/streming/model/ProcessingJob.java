@@ -0,0 +1,100 @@
+package com.mike.streming.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Trabajo de procesamiento de un video en la cola compartida entre nodos
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "processing_jobs")
+public class ProcessingJob {
+
+    @Id
+    private String id;
+
+    @Field("video_id")
+    private String videoId;
+
+    @Field("stage")
+    private Stage stage;
+
+    @Field("status")
+    private JobStatus status;
+
+    @Field("attempts")
+    private int attempts;
+
+    @Field("visible_at")
+    private LocalDateTime visibleAt; // QUEUED: desde cuándo se puede tomar; LEASED: fin del lease; DEAD: sin valor
+
+    @Field("lease_owner")
+    private String leaseOwner; // Nodo que tiene el lease
+
+    @Field("lease_token")
+    private String leaseToken; // Distinto en cada adquisición: identifica al worker dueño del lease
+
+    @Field("last_error")
+    private String lastError;
+
+    @Field("checkpoint")
+    private Checkpoint checkpoint; // Progreso confirmado, para retomar el trabajo tras una interrupción
+
+    @Field("created_at")
+    private LocalDateTime createdAt;
+
+    @Field("updated_at")
+    private LocalDateTime updatedAt;
+
+    /**
+     * Progreso confirmado de una etapa que escribe un archivo nuevo en GridFS chunk a chunk
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Checkpoint {
+
+        @Field("source_file_id")
+        private String sourceFileId; // Archivo de GridFS que se está procesando
+
+        @Field("output_file_id")
+        private String outputFileId; // Archivo de GridFS que se está escribiendo
+
+        @Field("committed_chunks")
+        private long committedChunks; // Chunks del archivo de salida ya escritos (el siguiente índice a escribir)
+
+        @Field("header")
+        private Map<String, Object> header; // Estado del cifrado: tamaño de segmento, número de segmentos y prefijo de nonce
+
+        @Field("updated_at")
+        private LocalDateTime updatedAt;
+    }
+
+    /**
+     * Etapas del pipeline de procesamiento
+     */
+    public enum Stage {
+        ENCRYPTION
+    }
+
+    /**
+     * Estados del trabajo. Los completados se eliminan de la colección.
+     */
+    public enum JobStatus {
+        QUEUED,
+        LEASED,
+        DEAD
+    }
+}
@@ -0,0 +1,41 @@
+package com.mike.streming.model;
+
+/**
+ * Proyección de Video con los campos que necesita el camino de streaming
+ */
+public record StreamableVideo(
+        String id,
+        Video.VideoStatus status,
+        boolean isPublic,
+        String uploadedBy,
+        String gridfsFileId,
+        String contentType,
+        Long size,
+        boolean isEncrypted,
+        String encryptionKey,
+        String encryptionKeyId
+) {
+
+    /**
+     * Campos de Video que se leen para construir la proyección
+     */
+    public static final String[] FIELDS = {
+            "status", "isPublic", "uploadedBy", "gridfsFileId", "contentType", "size",
+            "isEncrypted", "encryptionKey", "encryptionKeyId"
+    };
+
+    public static StreamableVideo from(Video video) {
+        return new StreamableVideo(
+                video.getId(),
+                video.getStatus(),
+                video.isPublic(),
+                video.getUploadedBy(),
+                video.getGridfsFileId(),
+                video.getContentType(),
+                video.getSize(),
+                video.isEncrypted(),
+                video.getEncryptionKey(),
+                video.getEncryptionKeyId()
+        );
+    }
+}
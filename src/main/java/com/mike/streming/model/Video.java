@@ -58,6 +58,9 @@ public class Video {
     @Field("encryption_key")
     private String encryptionKey; // Clave encriptada
     
+    @Field("encryption_key_id")
+    private String encryptionKeyId; // Versión de la clave maestra que envuelve encryptionKey
+    
     @Field("gridfs_file_id")
     private String gridfsFileId; // ID del archivo en GridFS
     
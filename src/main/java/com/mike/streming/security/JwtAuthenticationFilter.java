@@ -1,6 +1,7 @@
 package com.mike.streming.security;
 
 import com.mike.streming.service.JwtService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -28,6 +29,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final TokenDenylist tokenDenylist;
     
     @Override
     protected void doFilterInternal(
@@ -47,12 +49,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         try {
             jwt = authHeader.substring(7);
-            username = jwtService.extractUsername(jwt);
+            // Una sola verificación de firma por request (o ninguna si los claims están en caché)
+            final Claims claims = jwtService.verifyToken(jwt);
+            username = claims.getSubject();
+            
+            // Los refresh tokens solo sirven para /api/auth/refresh
+            if (jwtService.isRefreshToken(claims)) {
+                log.debug("Rejected refresh token used as access token");
+                filterChain.doFilter(request, response);
+                return;
+            }
             
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = loadUser(claims, username);
                 
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (userDetails != null && userDetails.isEnabled() && jwtService.isTokenValid(claims, userDetails)) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
@@ -68,4 +79,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+    
+    /**
+     * Construir el usuario desde los claims del token, sin consultar MongoDB.
+     * Los tokens emitidos antes de incluir userId/roles (entre ellos los refresh tokens sin
+     * claim de tipo) se resuelven con la base de datos y también pasan por la lista de revocados.
+     */
+    private UserDetails loadUser(Claims claims, String username) {
+        String userId = claims.get(UserPrincipal.CLAIM_USER_ID, String.class);
+        UserDetails userDetails = null;
+        if (userId == null) {
+            userDetails = this.userDetailsService.loadUserByUsername(username);
+            if (userDetails instanceof UserPrincipal principal) {
+                userId = principal.getId();
+            }
+        }
+        if (userId != null && tokenDenylist.isRevoked(userId, claims)) {
+            log.debug("Rejected revoked token of user {}", userId);
+            return null;
+        }
+        return userDetails != null ? userDetails : UserPrincipal.fromClaims(claims);
+    }
 }
@@ -0,0 +1,108 @@
+package com.mike.streming.security;
+
+import com.mike.streming.config.JwtConfig;
+import com.mike.streming.config.StreamUrlConfig;
+import io.jsonwebtoken.io.Decoders;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Firma y verificación de URLs de streaming de corta duración. La firma es un HMAC-SHA256 sobre
+ * (videoId, userId, expiración, cliente), así que validar un Range request no necesita JWT ni
+ * base de datos: solo un HMAC y una comparación en tiempo constante.
+ */
+@Slf4j
+@Component
+public class StreamUrlSigner {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final byte[] DERIVATION_LABEL = "stream-url".getBytes(StandardCharsets.US_ASCII);
+
+    private final StreamUrlConfig config;
+    private final SecretKeySpec signingKey;
+    private final ThreadLocal<Mac> macs;
+
+    public StreamUrlSigner(StreamUrlConfig config, JwtConfig jwtConfig) {
+        this.config = config;
+        this.signingKey = new SecretKeySpec(resolveSecret(config, jwtConfig), HMAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(signingKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialize " + HMAC_ALGORITHM, e);
+            }
+        });
+    }
+
+    /**
+     * Instante de expiración (epoch seconds) para una URL emitida ahora
+     */
+    public long expiresAt() {
+        return System.currentTimeMillis() / 1000 + config.getTtl().toSeconds();
+    }
+
+    /**
+     * Firmar la URL de un video para un usuario y el cliente de la petición
+     */
+    public String sign(String videoId, String userId, long expires, HttpServletRequest request) {
+        byte[] signature = hmac(videoId, userId, expires, clientBinding(request));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    /**
+     * Verificar la firma y la expiración de una URL de streaming
+     */
+    public boolean verify(String videoId, String userId, long expires, String signature,
+                          HttpServletRequest request) {
+        if (userId == null || signature == null || expires < System.currentTimeMillis() / 1000) {
+            return false;
+        }
+        byte[] provided;
+        try {
+            provided = Base64.getUrlDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        byte[] expected = hmac(videoId, userId, expires, clientBinding(request));
+        return MessageDigest.isEqual(expected, provided);
+    }
+
+    private byte[] hmac(String videoId, String userId, long expires, String client) {
+        Mac mac = macs.get();
+        // Campos separados por '\n' para que no se puedan desplazar bytes entre ellos
+        String payload = videoId + '\n' + userId + '\n' + expires + '\n' + client;
+        return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String clientBinding(HttpServletRequest request) {
+        return config.isBindClientIp() ? request.getRemoteAddr() : "";
+    }
+
+    /**
+     * Clave propia si está configurada; si no, una clave derivada de jwt.secret para no
+     * reutilizar directamente la clave de firma de los JWT. Se decodifican igual que en
+     * JwtService, que acepta secretos Base64 con bits sobrantes en el último carácter.
+     */
+    private static byte[] resolveSecret(StreamUrlConfig config, JwtConfig jwtConfig) {
+        if (config.getSecret() != null && !config.getSecret().isBlank()) {
+            return Decoders.BASE64.decode(config.getSecret());
+        }
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(Decoders.BASE64.decode(jwtConfig.getSecret()), HMAC_ALGORITHM));
+            return mac.doFinal(DERIVATION_LABEL);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot derive stream URL key", e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.mike.streming.security;
+
+import com.mike.streming.config.JwtConfig;
+import com.mike.streming.config.VideoCacheConfig;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lista en memoria de usuarios cuyos access tokens se revocaron (logout, cuenta deshabilitada).
+ * Se guarda el instante de revocación por usuario y se rechazan los tokens emitidos antes de él.
+ * Cada entrada solo hace falta mientras pueda existir un access token previo sin expirar, así que
+ * se descarta pasada la duración del access token.
+ *
+ * Las revocaciones se publican en la colección cache_invalidations (como las invalidaciones de
+ * VideoNearCache) y cada nodo aplica las de los demás. Un nodo recién arrancado carga las que
+ * siguen en la colección, que las conserva durante streaming.video-cache.invalidation-retention.
+ */
+@Slf4j
+@Component
+public class TokenDenylist {
+
+    private static final String INVALIDATIONS_COLLECTION = "cache_invalidations";
+    private static final String REVOKED_USER_FIELD = "revokedUser";
+    private static final long POLL_OVERLAP_MS = 5_000;
+    private static final int POLL_BATCH_SIZE = 1_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final VideoCacheConfig invalidationConfig;
+    private final long retentionMillis;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    @Value("${jwt.denylist.cluster-propagation:true}")
+    private boolean clusterPropagation;
+
+    private volatile long lastPollMillis;
+    private volatile boolean loaded;
+
+    public TokenDenylist(JwtConfig jwtConfig, MongoTemplate mongoTemplate, VideoCacheConfig invalidationConfig) {
+        this.retentionMillis = jwtConfig.getExpiration();
+        this.mongoTemplate = mongoTemplate;
+        this.invalidationConfig = invalidationConfig;
+    }
+
+    /**
+     * Revocar todos los access tokens del usuario emitidos hasta ahora, en este nodo y en el resto
+     */
+    public void revokeUser(String userId) {
+        long revokedAt = System.currentTimeMillis();
+        revokedUsers.merge(userId, revokedAt, Math::max);
+        log.debug("Revoked access tokens of user {}", userId);
+
+        if (clusterPropagation) {
+            try {
+                mongoTemplate.insert(new Document(REVOKED_USER_FIELD, userId)
+                        .append("revokedAt", revokedAt)
+                        .append("node", nodeId)
+                        .append("createdAt", new Date(revokedAt)), INVALIDATIONS_COLLECTION);
+            } catch (Exception e) {
+                log.warn("Could not publish token revocation for user {}: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Verificar si los claims corresponden a un token revocado. iat está truncado a segundos, así
+     * que un token emitido en el mismo segundo que la revocación se considera revocado: es
+     * preferible pedir un nuevo login a aceptar un token anterior al logout.
+     */
+    public boolean isRevoked(String userId, Claims claims) {
+        Long revokedAt = revokedUsers.get(userId);
+        if (revokedAt == null) {
+            return false;
+        }
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt == null || issuedAt.getTime() <= revokedAt;
+    }
+
+    /**
+     * Aplicar las revocaciones publicadas por otros nodos. La primera vez se cargan todas las
+     * que puedan afectar a tokens vigentes; se hace aquí y no al arrancar para no bloquear el
+     * arranque si MongoDB no responde.
+     */
+    @Scheduled(fixedDelayString = "${jwt.denylist.poll-ms:1000}")
+    public void pollRevocations() {
+        if (!clusterPropagation) {
+            return;
+        }
+        long pollStart = System.currentTimeMillis();
+
+        try {
+            Query query;
+            if (loaded) {
+                // Ventana solapada: los ObjectId de distintos nodos no son estrictamente monótonos
+                query = revocationsSince(lastPollMillis - POLL_OVERLAP_MS).limit(POLL_BATCH_SIZE);
+            } else {
+                // Mismo índice TTL que crea VideoNearCache, para no acumular revocaciones
+                mongoTemplate.indexOps(INVALIDATIONS_COLLECTION).ensureIndex(new Index()
+                        .on("createdAt", Sort.Direction.ASC).expire(invalidationConfig.getInvalidationRetention()));
+                query = revocationsSince(pollStart - retentionMillis);
+            }
+            apply(mongoTemplate.find(query, Document.class, INVALIDATIONS_COLLECTION));
+            lastPollMillis = pollStart;
+            if (!loaded) {
+                loaded = true;
+                log.info("Token denylist cluster propagation enabled (node {}), {} users revoked",
+                        nodeId, revokedUsers.size());
+            }
+        } catch (Exception e) {
+            log.warn("Could not poll token revocations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Eliminar revocaciones de las que ya no puede quedar ningún token válido
+     */
+    @Scheduled(fixedDelayString = "${jwt.denylist.cleanup-interval-ms:60000}")
+    public void expire() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        revokedUsers.values().removeIf(revokedAt -> revokedAt < cutoff);
+    }
+
+    private Query revocationsSince(long fromMillis) {
+        return Query.query(Criteria.where("_id").gte(ObjectId.getSmallestWithDate(new Date(fromMillis)))
+                        .and(REVOKED_USER_FIELD).exists(true))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+    }
+
+    private void apply(List<Document> revocations) {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (Document revocation : revocations) {
+            Long revokedAt = revocation.getLong("revokedAt");
+            if (!nodeId.equals(revocation.getString("node")) && revokedAt != null && revokedAt >= cutoff) {
+                revokedUsers.merge(revocation.getString(REVOKED_USER_FIELD), revokedAt, Math::max);
+            }
+        }
+    }
+}
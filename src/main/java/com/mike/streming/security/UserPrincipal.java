@@ -1,6 +1,7 @@
 package com.mike.streming.security;
 
 import com.mike.streming.model.User;
+import io.jsonwebtoken.Claims;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.security.core.GrantedAuthority;
@@ -9,6 +10,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 
 import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -19,6 +22,12 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class UserPrincipal implements UserDetails {
     
+    public static final String CLAIM_USER_ID = "userId";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_ENABLED = "enabled";
+    public static final String CLAIM_TOKEN_TYPE = "type";
+    public static final String TOKEN_TYPE_REFRESH = "refresh";
+    
     private String id;
     private String username;
     private String email;
@@ -45,6 +54,32 @@ public class UserPrincipal implements UserDetails {
         );
     }
     
+    /**
+     * Construir el principal a partir de los claims de un access token ya verificado,
+     * sin consultar la base de datos. No incluye password ni email.
+     */
+    public static UserPrincipal fromClaims(Claims claims) {
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        Boolean enabled = claims.get(CLAIM_ENABLED, Boolean.class);
+        Set<String> roleSet = new HashSet<>();
+        if (roles != null) {
+            roles.forEach(role -> roleSet.add(String.valueOf(role)));
+        }
+        
+        return new UserPrincipal(
+                claims.get(CLAIM_USER_ID, String.class),
+                claims.getSubject(),
+                null,
+                null,
+                roleSet,
+                Boolean.TRUE.equals(enabled),
+                true,
+                true,
+                true,
+                null
+        );
+    }
+    
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return roles.stream()
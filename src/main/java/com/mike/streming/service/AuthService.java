@@ -6,6 +6,7 @@ import com.mike.streming.dto.UserRegistrationRequest;
 import com.mike.streming.exception.ValidationException;
 import com.mike.streming.model.User;
 import com.mike.streming.repository.UserRepository;
+import com.mike.streming.security.TokenDenylist;
 import com.mike.streming.security.UserPrincipal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,6 +33,7 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
+    private final TokenDenylist tokenDenylist;
     
     /**
      * Registrar nuevo usuario
@@ -165,6 +167,9 @@ public class AuthService {
         user.setRefreshTokenExpiry(null);
         userRepository.save(user);
         
+        // Los access tokens no se consultan contra la base de datos: revocarlos en memoria
+        tokenDenylist.revokeUser(user.getId());
+        
         SecurityContextHolder.clearContext();
     }
     
@@ -0,0 +1,159 @@
+package com.mike.streming.service;
+
+import com.mike.streming.cache.ChunkCache;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream que lee solo los documentos de fs.chunks que cubren un rango de bytes.
+ * Los chunks se sirven primero desde la {@link ChunkCache}; solo las rachas de chunks
+ * ausentes se consultan a MongoDB.
+ */
+class GridFsRangeInputStream extends InputStream {
+
+    private final MongoCollection<Document> chunks;
+    private final ChunkCache chunkCache;
+    private final BsonValue filesId;
+    private final String cacheFileId;
+    private final int chunkSize;
+    private final long start;
+    private final int firstChunk;
+    private final int lastChunk;
+
+    private MongoCursor<Document> cursor;
+    private int cursorNext;
+    private int cursorLast;
+    private int nextChunk;
+    private ByteBuffer buffer;
+    private long remaining;
+    private boolean closed;
+
+    GridFsRangeInputStream(MongoCollection<Document> chunks, ChunkCache chunkCache, BsonValue filesId,
+                           String cacheFileId, int chunkSize, long start, long end) {
+        this.chunks = chunks;
+        this.chunkCache = chunkCache;
+        this.filesId = filesId;
+        this.cacheFileId = cacheFileId;
+        this.chunkSize = chunkSize;
+        this.start = start;
+        this.firstChunk = (int) (start / chunkSize);
+        this.lastChunk = (int) (end / chunkSize);
+        this.nextChunk = firstChunk;
+        this.remaining = end - start + 1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+        if (buffer == null || !buffer.hasRemaining()) {
+            loadNextChunk();
+        }
+
+        int toCopy = Math.min(len, buffer.remaining());
+        buffer.get(b, off, toCopy);
+        remaining -= toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public int available() {
+        return buffer == null ? 0 : buffer.remaining();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        buffer = null;
+        closeCursor();
+    }
+
+    /**
+     * Cargar el siguiente chunk del rango desde la caché o desde MongoDB
+     */
+    private void loadNextChunk() throws IOException {
+        if (nextChunk > lastChunk) {
+            throw new IOException("Unexpected end of GridFS range for file " + cacheFileId);
+        }
+        int n = nextChunk++;
+
+        ByteBuffer chunk = chunkCache.get(cacheFileId, n);
+        if (chunk == null) {
+            byte[] data = fetchChunk(n);
+            chunkCache.put(cacheFileId, n, data);
+            chunk = ByteBuffer.wrap(data);
+        }
+
+        int offset = n == firstChunk ? (int) (start - (long) firstChunk * chunkSize) : 0;
+        int limit = (int) Math.min(chunk.limit(), offset + remaining);
+        if (offset >= limit) {
+            throw new IOException("GridFS chunk " + n + " is shorter than expected for file " + cacheFileId);
+        }
+        chunk.limit(limit).position(offset);
+        buffer = chunk;
+    }
+
+    /**
+     * Leer un chunk de MongoDB, abriendo un cursor para la racha de chunks que no están en caché
+     */
+    private byte[] fetchChunk(int n) throws IOException {
+        if (cursor == null || cursorNext != n || n > cursorLast) {
+            closeCursor();
+            int runEnd = n;
+            while (runEnd < lastChunk && !chunkCache.contains(cacheFileId, runEnd + 1)) {
+                runEnd++;
+            }
+            cursor = chunks.find(Filters.and(
+                            Filters.eq("files_id", filesId),
+                            Filters.gte("n", n),
+                            Filters.lte("n", runEnd)))
+                    .projection(Projections.include("n", "data"))
+                    .sort(Sorts.ascending("n"))
+                    .iterator();
+            cursorNext = n;
+            cursorLast = runEnd;
+        }
+        if (!cursor.hasNext()) {
+            throw new IOException("Missing GridFS chunk " + n + " for file " + cacheFileId);
+        }
+
+        Document document = cursor.next();
+        int found = ((Number) document.get("n")).intValue();
+        if (found != n) {
+            throw new IOException("Expected GridFS chunk " + n + " but found " + found + " for file " + cacheFileId);
+        }
+        cursorNext = n + 1;
+        return document.get("data", Binary.class).getData();
+    }
+
+    private void closeCursor() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
+}
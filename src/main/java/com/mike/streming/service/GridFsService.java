@@ -1,18 +1,40 @@
 package com.mike.streming.service;
 
+import com.mike.streming.cache.ChunkCache;
+import com.mike.streming.cache.LocalVideoCache;
 import com.mike.streming.exception.FileUploadException;
 import com.mike.streming.exception.ResourceNotFoundException;
+import com.mike.streming.util.FileUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.gridfs.GridFsOperations;
 import org.springframework.data.mongodb.gridfs.GridFsResource;
 import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.data.mongodb.gridfs.GridFsUpload;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Servicio para manejo de archivos con GridFS
@@ -24,32 +46,218 @@ public class GridFsService {
     
     private final GridFsTemplate gridFsTemplate;
     private final GridFsOperations gridFsOperations;
+    private final MongoTemplate mongoTemplate;
+    private final ChunkCache chunkCache;
+    private final LocalVideoCache localVideoCache;
+    
+    @Value("${spring.data.mongodb.gridfs.bucket:fs}")
+    private String bucket;
+    
+    /**
+     * Aviso de chunk confirmado durante {@link #writeChunks}
+     */
+    @FunctionalInterface
+    public interface ChunkListener {
+        void committed(long committedChunks) throws IOException;
+    }
     
     /**
      * Almacenar archivo en GridFS
      */
     public String storeFile(MultipartFile file, String videoId) {
+        try (InputStream content = file.getInputStream()) {
+            return storeFile(file, videoId, content, Map.of());
+        } catch (IOException e) {
+            log.error("Error storing file in GridFS: {}", e.getMessage());
+            throw new FileUploadException("Failed to store file: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Almacenar en GridFS el contenido dado (por ejemplo, el archivo ya cifrado) con la
+     * metadata del archivo subido más la metadata adicional. El contenido se lee en streaming.
+     */
+    public String storeFile(MultipartFile file, String videoId, InputStream content, Map<String, Object> extraMetadata) {
+        return storeFile(file, videoId, content, extraMetadata, 0);
+    }
+    
+    /**
+     * Almacenar en GridFS con un tamaño de chunk concreto (0 para el por defecto), para
+     * formatos cuyos bloques deben coincidir con los chunks de GridFS
+     */
+    public String storeFile(MultipartFile file, String videoId, InputStream content, 
+                            Map<String, Object> extraMetadata, int chunkSize) {
         try {
             log.info("Storing file in GridFS: {}", file.getOriginalFilename());
             
             String filename = generateFilename(file.getOriginalFilename(), videoId);
             
-            String fileId = gridFsTemplate.store(
-                    file.getInputStream(),
-                    filename,
-                    file.getContentType(),
-                    createMetadata(file, videoId)
-            ).toString();
+            Map<String, Object> metadata = createMetadata(file, videoId);
+            metadata.putAll(extraMetadata);
+            
+            String fileId;
+            if (chunkSize > 0) {
+                fileId = gridFsTemplate.store(GridFsUpload.fromStream(content)
+                        .filename(filename)
+                        .contentType(file.getContentType())
+                        .metadata(new Document(metadata))
+                        .chunkSize(chunkSize)
+                        .build()
+                ).toString();
+            } else {
+                fileId = gridFsTemplate.store(
+                        content,
+                        filename,
+                        file.getContentType(),
+                        metadata
+                ).toString();
+            }
             
             log.info("File stored successfully with ID: {}", fileId);
             return fileId;
             
-        } catch (IOException e) {
+        } catch (Exception e) {
             log.error("Error storing file in GridFS: {}", e.getMessage());
             throw new FileUploadException("Failed to store file: " + e.getMessage());
         }
     }
     
+    /**
+     * Archivo subido en streaming: id en GridFS, bytes recibidos y SHA-256 del contenido
+     */
+    public record StoredUpload(String fileId, long size, String sha256) {
+    }
+    
+    /**
+     * Almacenar en GridFS el contenido de una subida según llega por la red, sin copia temporal.
+     * El tamaño y el SHA-256 se calculan en la misma pasada; si se supera maxSize la lectura
+     * falla y GridFS descarta los chunks ya escritos. El tamaño y el hash se guardan después
+     * en la metadata del archivo, porque no se conocen hasta el final.
+     */
+    public StoredUpload storeUpload(String videoId, String originalFilename, String contentType,
+                                    InputStream content, long maxSize) {
+        UploadInputStream upload = new UploadInputStream(content, maxSize);
+        String fileId;
+        try {
+            log.info("Streaming upload into GridFS: {}", originalFilename);
+            
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("videoId", videoId);
+            metadata.put("originalFilename", originalFilename);
+            metadata.put("contentType", contentType);
+            metadata.put("uploadDate", java.time.LocalDateTime.now());
+            
+            fileId = gridFsTemplate.store(
+                    upload,
+                    generateFilename(originalFilename, videoId),
+                    contentType,
+                    metadata
+            ).toString();
+        } catch (Exception e) {
+            if (upload.exceeded) {
+                throw new FileUploadException("File size exceeds maximum limit of " + FileUtils.formatFileSize(maxSize));
+            }
+            log.error("Error streaming upload into GridFS: {}", e.getMessage());
+            throw new FileUploadException("Failed to store file: " + e.getMessage());
+        }
+        
+        if (upload.count == 0) {
+            deleteFile(fileId);
+            throw new FileUploadException("File is empty");
+        }
+        
+        String sha256 = HexFormat.of().formatHex(upload.digest.digest());
+        mongoTemplate.getCollection(bucket + ".files").updateOne(
+                Filters.eq("_id", new ObjectId(fileId)),
+                new Document("$set", new Document("metadata.size", upload.count)
+                        .append("metadata.sha256", sha256)));
+        
+        log.info("Upload streamed into GridFS with ID: {} ({} bytes)", fileId, upload.count);
+        return new StoredUpload(fileId, upload.count, sha256);
+    }
+    
+    /**
+     * Escribir chunk a chunk un archivo de GridFS a partir del chunk firstChunk, sin crear todavía
+     * su documento en files (el archivo no es visible hasta {@link #finishChunkedFile}). El listener
+     * se invoca cuando cada chunk queda confirmado, lo que permite guardar checkpoints y retomar
+     * la escritura más tarde. Devuelve los bytes escritos en esta llamada.
+     */
+    public long writeChunks(String fileId, long firstChunk, InputStream content, int chunkSize,
+                            ChunkListener listener) throws IOException {
+        MongoCollection<Document> chunks = mongoTemplate.getCollection(bucket + ".chunks");
+        ObjectId filesId = new ObjectId(fileId);
+        byte[] buffer = new byte[chunkSize];
+        long chunk = firstChunk;
+        long written = 0;
+        
+        int read;
+        while ((read = content.readNBytes(buffer, 0, chunkSize)) > 0) {
+            byte[] data = read == chunkSize ? buffer : Arrays.copyOf(buffer, read);
+            chunks.insertOne(new Document("files_id", filesId)
+                    .append("n", (int) chunk)
+                    .append("data", new Binary(data)));
+            chunk++;
+            written += read;
+            listener.committed(chunk);
+        }
+        return written;
+    }
+    
+    /**
+     * Descartar los chunks escritos a partir de fromChunk (restos de una escritura interrumpida
+     * después del último checkpoint)
+     */
+    public void deleteChunksFrom(String fileId, long fromChunk) {
+        long deleted = mongoTemplate.getCollection(bucket + ".chunks").deleteMany(Filters.and(
+                Filters.eq("files_id", new ObjectId(fileId)),
+                Filters.gte("n", fromChunk)
+        )).getDeletedCount();
+        if (deleted > 0) {
+            log.info("Discarded {} uncommitted chunks of file {}", deleted, fileId);
+        }
+    }
+    
+    /**
+     * Hacer visible un archivo escrito con {@link #writeChunks}: crea su documento en files con el
+     * nombre y la metadata del archivo de origen más la metadata adicional. Es idempotente.
+     */
+    public String finishChunkedFile(String fileId, GridFsResource source, long length, int chunkSize,
+                                    Map<String, Object> extraMetadata) {
+        GridFSFile sourceFile = source.getGridFSFile();
+        
+        // La metadata del original ya incluye el tipo de contenido
+        Document metadata = sourceFile.getMetadata() != null
+                ? new Document(sourceFile.getMetadata())
+                : new Document();
+        metadata.putAll(extraMetadata);
+        
+        try {
+            mongoTemplate.getCollection(bucket + ".files").insertOne(new Document("_id", new ObjectId(fileId))
+                    .append("length", length)
+                    .append("chunkSize", chunkSize)
+                    .append("uploadDate", new Date())
+                    .append("filename", sourceFile.getFilename())
+                    .append("metadata", metadata));
+            log.info("Chunked file stored successfully with ID: {}", fileId);
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw new FileUploadException("Failed to store file: " + e.getMessage());
+            }
+        }
+        return fileId;
+    }
+    
+    /**
+     * Eliminar un archivo escrito con {@link #writeChunks}, esté terminado o no
+     */
+    public void discardChunkedFile(String fileId) {
+        ObjectId id = new ObjectId(fileId);
+        mongoTemplate.getCollection(bucket + ".files").deleteOne(Filters.eq("_id", id));
+        mongoTemplate.getCollection(bucket + ".chunks").deleteMany(Filters.eq("files_id", id));
+        chunkCache.invalidateFile(fileId);
+        localVideoCache.invalidate(fileId);
+    }
+    
     /**
      * Almacenar stream de datos en GridFS
      */
@@ -168,6 +376,50 @@ public class GridFsService {
         }
     }
     
+    /**
+     * Abrir un stream que lee solo los chunks de GridFS que cubren el rango [start, end]
+     */
+    public InputStream openRange(GridFsResource resource, long start, long end) {
+        GridFSFile file = resource.getGridFSFile();
+        if (start < 0 || end < start || end >= file.getLength()) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid range %d-%d for file of %d bytes", start, end, file.getLength()));
+        }
+        
+        log.debug("Opening GridFS range {}-{} for file {} (chunk size {})", 
+                start, end, file.getId(), file.getChunkSize());
+        
+        return new GridFsRangeInputStream(
+                mongoTemplate.getCollection(bucket + ".chunks"),
+                chunkCache,
+                file.getId(),
+                cacheKeyOf(file),
+                file.getChunkSize(),
+                start,
+                end
+        );
+    }
+    
+    /**
+     * Leer un rango de bytes del archivo leyendo solo los chunks necesarios
+     */
+    public byte[] readRange(GridFsResource resource, long start, long end) {
+        try (InputStream inputStream = openRange(resource, start, end)) {
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            log.error("Error reading GridFS range: {}", e.getMessage());
+            throw new FileUploadException("Failed to read file range: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Obtener la copia en disco local del archivo si es frecuente y ya fue copiado.
+     * La copia queda reservada hasta cerrarla.
+     */
+    public Optional<LocalVideoCache.LocalCopy> getLocalCopy(GridFsResource resource, String viewerKey) {
+        return localVideoCache.access(cacheKeyOf(resource.getGridFSFile()), viewerKey, resource);
+    }
+    
     /**
      * Eliminar archivo de GridFS
      */
@@ -179,6 +431,8 @@ public class GridFsService {
                     org.springframework.data.mongodb.core.query.Criteria.where("_id").is(fileId)
             ));
             
+            chunkCache.invalidateFile(fileId);
+            localVideoCache.invalidate(fileId);
             log.info("File deleted successfully: {}", fileId);
             
         } catch (Exception e) {
@@ -323,6 +577,15 @@ public class GridFsService {
         }
     }
     
+    /**
+     * Identificador del archivo usado como clave en la caché de chunks
+     */
+    private String cacheKeyOf(GridFSFile file) {
+        return file.getId().isObjectId()
+                ? file.getObjectId().toHexString()
+                : file.getId().toString();
+    }
+    
     /**
      * Generar nombre de archivo único
      */
@@ -334,16 +597,65 @@ public class GridFsService {
         return videoId + "_" + System.currentTimeMillis() + extension;
     }
     
+    /**
+     * Contenido de una subida que cuenta los bytes leídos, calcula su SHA-256 y corta la lectura
+     * al superar el tamaño máximo
+     */
+    private static class UploadInputStream extends FilterInputStream {
+        
+        private final long maxSize;
+        private final MessageDigest digest;
+        private long count;
+        private boolean exceeded;
+        
+        UploadInputStream(InputStream in, long maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+                if (count > maxSize) {
+                    exceeded = true;
+                    throw new IOException("Upload exceeds maximum size of " + maxSize + " bytes");
+                }
+                digest.update(b, off, read);
+            }
+            return read;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            // Todo el contenido debe pasar por el hash
+            return 0;
+        }
+    }
+    
     /**
      * Crear metadata para el archivo
      */
-    private Object createMetadata(MultipartFile file, String videoId) {
-        return new java.util.HashMap<String, Object>() {{
-            put("videoId", videoId);
-            put("originalFilename", file.getOriginalFilename());
-            put("contentType", file.getContentType());
-            put("size", file.getSize());
-            put("uploadDate", java.time.LocalDateTime.now());
-        }};
+    private Map<String, Object> createMetadata(MultipartFile file, String videoId) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("videoId", videoId);
+        metadata.put("originalFilename", file.getOriginalFilename());
+        metadata.put("contentType", file.getContentType());
+        metadata.put("size", file.getSize());
+        metadata.put("uploadDate", java.time.LocalDateTime.now());
+        return metadata;
     }
 }
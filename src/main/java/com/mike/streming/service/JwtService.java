@@ -1,11 +1,15 @@
 package com.mike.streming.service;
 
+import com.mike.streming.cache.TokenClaimsCache;
 import com.mike.streming.config.JwtConfig;
+import com.mike.streming.security.UserPrincipal;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,6 +18,7 @@ import org.springframework.stereotype.Service;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -26,34 +31,68 @@ import java.util.function.Function;
 public class JwtService {
     
     private final JwtConfig jwtConfig;
+    private final TokenClaimsCache tokenClaimsCache;
+    
+    // Clave y parser se construyen una sola vez; el parser es inmutable y thread-safe
+    private Key signInKey;
+    private JwtParser parser;
+    
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes = Decoders.BASE64.decode(jwtConfig.getSecret());
+        this.signInKey = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+    }
+    
+    /**
+     * Verificar firma y expiración del token una sola vez y devolver sus claims.
+     * Los claims verificados se guardan en caché hasta el exp del token.
+     */
+    public Claims verifyToken(String token) {
+        Claims claims = tokenClaimsCache.get(token);
+        if (claims == null) {
+            claims = extractAllClaims(token);
+            tokenClaimsCache.put(token, claims);
+        }
+        return claims;
+    }
     
     /**
      * Extraer username del token
      */
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verifyToken(token).getSubject();
     }
     
     /**
      * Extraer fecha de expiración del token
      */
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return verifyToken(token).getExpiration();
     }
     
     /**
      * Extraer claim específico del token
      */
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        return claimsResolver.apply(verifyToken(token));
     }
     
     /**
      * Generar token para usuario
      */
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof UserPrincipal principal) {
+            // Suficiente para construir el principal sin consultar la base de datos
+            claims.put(UserPrincipal.CLAIM_USER_ID, principal.getId());
+            claims.put(UserPrincipal.CLAIM_ROLES,
+                    principal.getRoles() != null ? List.copyOf(principal.getRoles()) : List.of());
+            claims.put(UserPrincipal.CLAIM_ENABLED, principal.isEnabled());
+        }
+        return generateToken(claims, userDetails);
     }
     
     /**
@@ -64,10 +103,19 @@ public class JwtService {
     }
     
     /**
-     * Generar refresh token
+     * Generar refresh token. Lleva un claim de tipo para que no se acepte como access token.
      */
     public String generateRefreshToken(UserDetails userDetails) {
-        return buildToken(new HashMap<>(), userDetails, jwtConfig.getRefreshExpiration());
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(UserPrincipal.CLAIM_TOKEN_TYPE, UserPrincipal.TOKEN_TYPE_REFRESH);
+        return buildToken(claims, userDetails, jwtConfig.getRefreshExpiration());
+    }
+    
+    /**
+     * Verificar si los claims son de un refresh token
+     */
+    public boolean isRefreshToken(Claims claims) {
+        return UserPrincipal.TOKEN_TYPE_REFRESH.equals(claims.get(UserPrincipal.CLAIM_TOKEN_TYPE, String.class));
     }
     
     /**
@@ -80,7 +128,7 @@ public class JwtService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
@@ -88,50 +136,47 @@ public class JwtService {
      * Validar token
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(verifyToken(token), userDetails);
+    }
+    
+    /**
+     * Validar claims ya verificados contra el usuario
+     */
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        final String username = claims.getSubject();
+        return (username.equals(userDetails.getUsername())) && !isTokenExpired(claims);
     }
     
     /**
      * Verificar si el token ha expirado
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
     
     /**
      * Extraer todos los claims del token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .setSigningKey(getSignInKey())
+        return parser
                 .parseClaimsJws(token)
                 .getBody();
     }
     
-    /**
-     * Obtener clave de firma
-     */
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtConfig.getSecret());
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-    
     /**
      * Extraer ID de usuario del token
      */
     public String extractUserId(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("userId", String.class);
+        Claims claims = verifyToken(token);
+        return claims.get(UserPrincipal.CLAIM_USER_ID, String.class);
     }
     
     /**
      * Extraer roles del token
      */
     @SuppressWarnings("unchecked")
-    public java.util.List<String> extractRoles(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("roles", java.util.List.class);
+    public List<String> extractRoles(String token) {
+        Claims claims = verifyToken(token);
+        return claims.get(UserPrincipal.CLAIM_ROLES, List.class);
     }
 }
@@ -0,0 +1,233 @@
+package com.mike.streming.service;
+
+import com.mike.streming.config.KeyRotationConfig;
+import com.mike.streming.encryption.VideoEncryptionService;
+import com.mike.streming.model.KeyRotationCheckpoint;
+import com.mike.streming.model.KeyRotationCheckpoint.RotationStatus;
+import com.mike.streming.model.Video;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rotación de la clave maestra por envoltura: recorre los videos cifrados por lotes en orden de _id,
+ * desenvuelve cada clave de datos con la versión anterior de la clave maestra y la vuelve a envolver
+ * con la activa. Solo se reescribe encryption_key / encryption_key_id; los datos en GridFS no se tocan.
+ *
+ * El progreso se guarda en key_rotations después de cada lote, así que una caída reanuda desde el
+ * último lote confirmado. Las versiones anteriores de la clave maestra deben seguir configuradas
+ * (encryption.previous-master-keys) hasta que la rotación termine.
+ */
+@Slf4j
+@Service
+public class KeyRotationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final VideoEncryptionService videoEncryptionService;
+    private final KeyRotationConfig config;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile boolean stopRequested;
+
+    public KeyRotationService(MongoTemplate mongoTemplate, VideoEncryptionService videoEncryptionService,
+                              KeyRotationConfig config) {
+        this.mongoTemplate = mongoTemplate;
+        this.videoEncryptionService = videoEncryptionService;
+        this.config = config;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "key-rotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reanudar una rotación que quedó a medias (caída o reinicio del nodo)
+     */
+    @PostConstruct
+    public void init() {
+        if (!config.isResumeOnStartup()) {
+            return;
+        }
+        try {
+            KeyRotationCheckpoint checkpoint = findCheckpoint(videoEncryptionService.getActiveMasterKeyId());
+            if (checkpoint != null && checkpoint.getStatus() == RotationStatus.RUNNING) {
+                log.info("Resuming master key rotation to {} after video {}",
+                        checkpoint.getTargetKeyId(), checkpoint.getLastVideoId());
+                start();
+            }
+        } catch (Exception e) {
+            log.warn("Could not check for an interrupted key rotation: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Iniciar (o reanudar) la rotación hacia la clave maestra activa en segundo plano
+     */
+    public KeyRotationCheckpoint start() {
+        String targetKeyId = videoEncryptionService.getActiveMasterKeyId();
+
+        if (running.compareAndSet(false, true)) {
+            KeyRotationCheckpoint checkpoint = findCheckpoint(targetKeyId);
+            if (checkpoint == null || checkpoint.getStatus() == RotationStatus.COMPLETED) {
+                // Nueva pasada completa: también reintenta los videos que fallaron antes
+                checkpoint = KeyRotationCheckpoint.builder()
+                        .targetKeyId(targetKeyId)
+                        .startedAt(LocalDateTime.now())
+                        .build();
+            }
+            checkpoint.setStatus(RotationStatus.RUNNING);
+            checkpoint.setLastError(null);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            KeyRotationCheckpoint saved = mongoTemplate.save(checkpoint);
+
+            executor.execute(() -> run(saved));
+            return saved;
+        }
+        return findCheckpoint(targetKeyId);
+    }
+
+    /**
+     * Estado de la rotación hacia la clave maestra activa
+     */
+    public KeyRotationCheckpoint getStatus() {
+        KeyRotationCheckpoint checkpoint = findCheckpoint(videoEncryptionService.getActiveMasterKeyId());
+        return checkpoint != null ? checkpoint : KeyRotationCheckpoint.builder()
+                .targetKeyId(videoEncryptionService.getActiveMasterKeyId())
+                .build();
+    }
+
+    /**
+     * Videos cuya clave de datos todavía no está envuelta con la clave maestra activa
+     */
+    public long countPending() {
+        return mongoTemplate.count(pendingVideos(videoEncryptionService.getActiveMasterKeyId()), Video.class);
+    }
+
+    private void run(KeyRotationCheckpoint checkpoint) {
+        String targetKeyId = checkpoint.getTargetKeyId();
+        log.info("Starting master key rotation to {}", targetKeyId);
+
+        try {
+            while (!stopRequested) {
+                long batchStart = System.nanoTime();
+
+                Query query = pendingVideos(targetKeyId)
+                        .with(Sort.by(Sort.Direction.ASC, "id"))
+                        .limit(config.getBatchSize());
+                if (checkpoint.getLastVideoId() != null) {
+                    query.addCriteria(Criteria.where("id").gt(checkpoint.getLastVideoId()));
+                }
+                query.fields().include("encryptionKey", "encryptionKeyId");
+
+                List<Video> batch = mongoTemplate.find(query, Video.class);
+                if (batch.isEmpty()) {
+                    checkpoint.setStatus(RotationStatus.COMPLETED);
+                    checkpoint.setCompletedAt(LocalDateTime.now());
+                    checkpoint.setUpdatedAt(LocalDateTime.now());
+                    mongoTemplate.save(checkpoint);
+                    log.info("Master key rotation to {} completed: {} rewrapped, {} failed",
+                            targetKeyId, checkpoint.getRewrapped(), checkpoint.getFailed());
+                    return;
+                }
+
+                rewrapBatch(batch, checkpoint);
+                throttle(batch.size(), batchStart);
+            }
+            log.info("Master key rotation to {} paused after video {}", targetKeyId, checkpoint.getLastVideoId());
+
+        } catch (Exception e) {
+            log.error("Master key rotation to {} failed: {}", targetKeyId, e.getMessage());
+            checkpoint.setStatus(RotationStatus.FAILED);
+            checkpoint.setLastError(e.getMessage());
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            mongoTemplate.save(checkpoint);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Re-envolver las claves de un lote y escribirlas con un único bulkWrite
+     */
+    private void rewrapBatch(List<Video> batch, KeyRotationCheckpoint checkpoint) {
+        String targetKeyId = checkpoint.getTargetKeyId();
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Video.class);
+        int rewrapped = 0;
+        int failed = 0;
+
+        for (Video video : batch) {
+            try {
+                String newWrappedKey = videoEncryptionService.rewrapVideoKey(
+                        video.getEncryptionKey(), video.getEncryptionKeyId());
+
+                // Condición sobre la clave anterior: no pisar una clave cambiada mientras tanto
+                operations.updateOne(
+                        Query.query(Criteria.where("id").is(video.getId())
+                                .and("encryptionKey").is(video.getEncryptionKey())),
+                        new Update()
+                                .set("encryptionKey", newWrappedKey)
+                                .set("encryptionKeyId", targetKeyId));
+                rewrapped++;
+            } catch (Exception e) {
+                log.warn("Could not rewrap data key of video {}: {}", video.getId(), e.getMessage());
+                failed++;
+            }
+        }
+
+        if (rewrapped > 0) {
+            operations.execute();
+        }
+
+        checkpoint.setLastVideoId(batch.get(batch.size() - 1).getId());
+        checkpoint.setRewrapped(checkpoint.getRewrapped() + rewrapped);
+        checkpoint.setFailed(checkpoint.getFailed() + failed);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        mongoTemplate.save(checkpoint);
+    }
+
+    /**
+     * Limitar el ritmo a maxVideosPerSecond para no competir con el tráfico de streaming
+     */
+    private void throttle(int batchSize, long batchStart) throws InterruptedException {
+        if (config.getMaxVideosPerSecond() <= 0) {
+            return;
+        }
+        long minimumNanos = TimeUnit.SECONDS.toNanos(batchSize) / config.getMaxVideosPerSecond();
+        long remaining = minimumNanos - (System.nanoTime() - batchStart);
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    private Query pendingVideos(String targetKeyId) {
+        return Query.query(Criteria.where("isEncrypted").is(true)
+                .and("encryptionKey").ne(null)
+                .and("encryptionKeyId").ne(targetKeyId));
+    }
+
+    private KeyRotationCheckpoint findCheckpoint(String targetKeyId) {
+        return mongoTemplate.findById(targetKeyId, KeyRotationCheckpoint.class);
+    }
+}
@@ -0,0 +1,280 @@
+package com.mike.streming.service;
+
+import com.mike.streming.config.ProcessingConfig;
+import com.mike.streming.model.ProcessingJob;
+import com.mike.streming.model.ProcessingJob.JobStatus;
+import com.mike.streming.model.ProcessingJob.Stage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cola de trabajos duradera en la colección processing_jobs, compartida por todos los nodos.
+ *
+ * Un trabajo solo es visible cuando visible_at ya pasó. Al tomarlo, un findAndModify atómico lo
+ * marca como LEASED y mueve visible_at al fin del lease; el dueño lo renueva mientras trabaja.
+ * Si el nodo cae, el lease vence y el trabajo vuelve a ser visible para cualquier otro nodo.
+ * Los fallos se reintentan con backoff exponencial y, agotados los intentos, el trabajo queda
+ * en DEAD (sin visible_at) para revisarlo a mano.
+ *
+ * Que no haya dos trabajos de la misma etapa para un video lo garantiza el índice único
+ * (video_id, stage). Se crea al arrancar, antes de que los workers o las subidas encolen nada,
+ * y no se encola ningún trabajo mientras no exista.
+ */
+@Slf4j
+@Service
+public class ProcessingJobQueue implements MeterBinder {
+
+    private static final int MAX_ERROR_LENGTH = 1_000;
+    private static final String UNIQUE_INDEX = "video_id_stage";
+
+    private final MongoTemplate mongoTemplate;
+    private final ProcessingConfig config;
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile boolean uniqueIndexReady;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    public ProcessingJobQueue(MongoTemplate mongoTemplate, ProcessingConfig config) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = config;
+    }
+
+    /**
+     * Crear el índice único de forma síncrona. MongoIndexManager crea el resto de índices en
+     * segundo plano tras el arranque, demasiado tarde para este.
+     */
+    @PostConstruct
+    public void init() {
+        ensureUniqueIndex();
+    }
+
+    /**
+     * Encolar una etapa de un video. Si ya hay un trabajo para esa etapa no se duplica.
+     *
+     * @throws IllegalStateException si el índice único aún no se pudo crear
+     */
+    public void enqueue(String videoId, Stage stage) {
+        if (!ensureUniqueIndex()) {
+            throw new IllegalStateException("Unique index " + UNIQUE_INDEX + " on processing_jobs is not available");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            mongoTemplate.insert(ProcessingJob.builder()
+                    .videoId(videoId)
+                    .stage(stage)
+                    .status(JobStatus.QUEUED)
+                    .visibleAt(now)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        } catch (DuplicateKeyException e) {
+            log.debug("Processing job {} for video {} already queued", stage, videoId);
+        }
+    }
+
+    /**
+     * Tomar el trabajo visible más antiguo de una etapa, o null si no hay ninguno
+     */
+    public ProcessingJob acquire(Stage stage) {
+        LocalDateTime now = LocalDateTime.now();
+        ProcessingJob job = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("stage").is(stage).and("visibleAt").lte(now))
+                        .with(Sort.by(Sort.Direction.ASC, "visibleAt")),
+                new Update()
+                        .set("status", JobStatus.LEASED)
+                        .set("leaseOwner", nodeId)
+                        .set("leaseToken", UUID.randomUUID().toString())
+                        .set("visibleAt", now.plus(config.getLeaseDuration()))
+                        .set("updatedAt", now)
+                        .inc("attempts", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                ProcessingJob.class);
+        if (job != null) {
+            acquired.increment();
+        }
+        return job;
+    }
+
+    /**
+     * Renovar el lease de un trabajo. Devuelve false si el lease se perdió (venció y otro nodo
+     * lo tomó), en cuyo caso el trabajo en curso debe abandonarse.
+     */
+    public boolean renew(ProcessingJob job) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.updateFirst(
+                ownedBy(job),
+                new Update()
+                        .set("visibleAt", now.plus(config.getLeaseDuration()))
+                        .set("updatedAt", now),
+                ProcessingJob.class).getMatchedCount() > 0;
+    }
+
+    /**
+     * Guardar el progreso confirmado de un trabajo, renovando también su lease.
+     * Devuelve false si el lease se perdió.
+     */
+    public boolean checkpoint(ProcessingJob job, ProcessingJob.Checkpoint checkpoint) {
+        LocalDateTime now = LocalDateTime.now();
+        checkpoint.setUpdatedAt(now);
+        boolean saved = mongoTemplate.updateFirst(
+                ownedBy(job),
+                new Update()
+                        .set("checkpoint", checkpoint)
+                        .set("visibleAt", now.plus(config.getLeaseDuration()))
+                        .set("updatedAt", now),
+                ProcessingJob.class).getMatchedCount() > 0;
+        if (saved) {
+            job.setCheckpoint(checkpoint);
+        }
+        return saved;
+    }
+
+    /**
+     * Marcar el trabajo como terminado (se elimina de la cola)
+     */
+    public void complete(ProcessingJob job) {
+        if (mongoTemplate.remove(ownedBy(job), ProcessingJob.class).getDeletedCount() > 0) {
+            completed.increment();
+        }
+    }
+
+    /**
+     * Registrar un fallo: reintento con backoff o dead-letter si se agotaron los intentos.
+     * Devuelve true si el trabajo pasó a dead-letter.
+     */
+    public boolean fail(ProcessingJob job, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        String lastError = error != null && error.length() > MAX_ERROR_LENGTH
+                ? error.substring(0, MAX_ERROR_LENGTH)
+                : error;
+
+        if (job.getAttempts() >= config.getMaxAttempts()) {
+            boolean dead = mongoTemplate.updateFirst(
+                    ownedBy(job),
+                    new Update()
+                            .set("status", JobStatus.DEAD)
+                            .unset("visibleAt")
+                            .unset("leaseOwner")
+                            .unset("leaseToken")
+                            .set("lastError", lastError)
+                            .set("updatedAt", now),
+                    ProcessingJob.class).getMatchedCount() > 0;
+            if (dead) {
+                deadLettered.increment();
+                log.error("Processing job {} for video {} moved to dead-letter after {} attempts: {}",
+                        job.getStage(), job.getVideoId(), job.getAttempts(), lastError);
+            }
+            return dead;
+        }
+
+        Duration backoff = backoff(job.getAttempts());
+        mongoTemplate.updateFirst(
+                ownedBy(job),
+                new Update()
+                        .set("status", JobStatus.QUEUED)
+                        .set("visibleAt", now.plus(backoff))
+                        .unset("leaseOwner")
+                        .unset("leaseToken")
+                        .set("lastError", lastError)
+                        .set("updatedAt", now),
+                ProcessingJob.class);
+        retried.increment();
+        log.warn("Processing job {} for video {} failed (attempt {}), retrying in {}s: {}",
+                job.getStage(), job.getVideoId(), job.getAttempts(), backoff.toSeconds(), lastError);
+        return false;
+    }
+
+    /**
+     * Trabajos en dead-letter, los más recientes primero
+     */
+    public List<ProcessingJob> getDeadLetters(int limit) {
+        return mongoTemplate.find(
+                Query.query(Criteria.where("status").is(JobStatus.DEAD))
+                        .with(Sort.by(Sort.Direction.DESC, "updatedAt"))
+                        .limit(limit),
+                ProcessingJob.class);
+    }
+
+    /**
+     * Crear el índice único (video_id, stage) si aún no se creó. Mismo nombre y opciones que en
+     * MongoIndexManager y mongo-init.js, así que crearlo de nuevo no tiene efecto.
+     */
+    private boolean ensureUniqueIndex() {
+        if (uniqueIndexReady) {
+            return true;
+        }
+        try {
+            mongoTemplate.indexOps(ProcessingJob.class).ensureIndex(new Index()
+                    .named(UNIQUE_INDEX)
+                    .on("video_id", Sort.Direction.ASC)
+                    .on("stage", Sort.Direction.ASC)
+                    .unique());
+            uniqueIndexReady = true;
+        } catch (Exception e) {
+            log.warn("Could not create unique index {} on processing_jobs: {}", UNIQUE_INDEX, e.getMessage());
+        }
+        return uniqueIndexReady;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("streaming.processing.jobs", acquired, LongAdder::sum)
+                .tag("result", "acquired")
+                .register(registry);
+        FunctionCounter.builder("streaming.processing.jobs", completed, LongAdder::sum)
+                .tag("result", "completed")
+                .register(registry);
+        FunctionCounter.builder("streaming.processing.jobs", retried, LongAdder::sum)
+                .tag("result", "retried")
+                .register(registry);
+        FunctionCounter.builder("streaming.processing.jobs", deadLettered, LongAdder::sum)
+                .tag("result", "dead_lettered")
+                .register(registry);
+    }
+
+    /**
+     * Solo el dueño actual del lease puede modificar el trabajo. Se compara el token de la
+     * adquisición y no solo el nodo: si el lease vence y otro worker del mismo nodo vuelve a
+     * tomar el trabajo, la ejecución anterior deja de ser dueña.
+     */
+    private Query ownedBy(ProcessingJob job) {
+        return Query.query(Criteria.where("id").is(job.getId())
+                .and("status").is(JobStatus.LEASED)
+                .and("leaseOwner").is(nodeId)
+                .and("leaseToken").is(job.getLeaseToken()));
+    }
+
+    /**
+     * Backoff exponencial con un 20% de variación para que los reintentos no coincidan
+     */
+    private Duration backoff(int attempts) {
+        long initial = config.getInitialBackoff().toMillis();
+        long max = config.getMaxBackoff().toMillis();
+        long delay = initial << Math.min(Math.max(attempts - 1, 0), 20);
+        delay = Math.min(delay, max);
+        delay += (long) (delay * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(delay);
+    }
+}
@@ -0,0 +1,354 @@
+package com.mike.streming.service;
+
+import com.mike.streming.config.LeaderboardConfig;
+import com.mike.streming.model.Video;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Rankings materializados de videos públicos:
+ * <ul>
+ *   <li>Tendencia: un count-min sketch con decaimiento exponencial (los contadores se reducen a la
+ *   mitad cada halfLife) estima la popularidad reciente de cada video, y se mantienen en memoria
+ *   los K videos con mayor estimación, actualizados con cada vista.</li>
+ *   <li>Más vistos: los K primeros por view_count, leídos periódicamente con el índice
+ *   (is_public, view_count).</li>
+ * </ul>
+ * Las peticiones solo copian la lista ya ordenada, sin consultas ni ordenación en MongoDB.
+ */
+@Slf4j
+@Component
+public class VideoLeaderboard {
+
+    private final MongoTemplate mongoTemplate;
+    private final LeaderboardConfig config;
+    private final CountMinSketch sketch;
+    private final CandidateHeap trendingCandidates;
+
+    private volatile List<Video> trending = List.of();
+    private volatile List<Video> top = List.of();
+    private long lastDecay = System.nanoTime();
+
+    public VideoLeaderboard(MongoTemplate mongoTemplate, LeaderboardConfig config) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = config;
+        this.sketch = new CountMinSketch(config.getSketchWidth());
+        this.trendingCandidates = new CandidateHeap(config.getSize() * 2);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refreshTop();
+    }
+
+    /**
+     * Registrar una vista en el ranking de tendencia. Coste O(log K): el candidato más débil es la
+     * raíz de un heap de mínimos indexado por video.
+     */
+    public synchronized void recordView(String videoId) {
+        decayIfDue();
+        trendingCandidates.offer(videoId, sketch.add(videoId));
+    }
+
+    /**
+     * Videos en tendencia, de más a menos popular
+     */
+    public List<Video> getTrending(int limit) {
+        List<Video> snapshot = trending;
+        return snapshot.subList(0, Math.min(limit, snapshot.size()));
+    }
+
+    /**
+     * Videos más vistos, de más a menos vistas
+     */
+    public List<Video> getTop(int limit) {
+        List<Video> snapshot = top;
+        return snapshot.subList(0, Math.min(limit, snapshot.size()));
+    }
+
+    /**
+     * Materializar el ranking de tendencia: ordenar los candidatos y cargar sus datos por _id
+     */
+    @Scheduled(fixedDelayString = "${streaming.leaderboard.trending-refresh-ms:10000}")
+    public void refreshTrending() {
+        List<String> ranked;
+        synchronized (this) {
+            decayIfDue();
+            ranked = trendingCandidates.ranked();
+        }
+        if (ranked.isEmpty()) {
+            trending = List.of();
+            return;
+        }
+
+        try {
+            Query query = Query.query(Criteria.where("id").in(ranked)
+                    .and("isPublic").is(true)
+                    .and("status").is(Video.VideoStatus.READY));
+            Map<String, Video> videos = mongoTemplate.find(query, Video.class).stream()
+                    .collect(Collectors.toMap(Video::getId, Function.identity()));
+
+            List<Video> materialized = new ArrayList<>(config.getSize());
+            for (String videoId : ranked) {
+                Video video = videos.get(videoId);
+                if (video != null && materialized.size() < config.getSize()) {
+                    materialized.add(video);
+                }
+            }
+            trending = List.copyOf(materialized);
+        } catch (Exception e) {
+            log.warn("Could not refresh trending videos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Materializar el ranking de más vistos: K documentos leídos en orden del índice
+     */
+    @Scheduled(fixedDelayString = "${streaming.leaderboard.top-refresh-ms:30000}")
+    public void refreshTop() {
+        try {
+            Query query = Query.query(Criteria.where("isPublic").is(true)
+                            .and("status").is(Video.VideoStatus.READY))
+                    .with(Sort.by(Sort.Direction.DESC, "viewCount"))
+                    .limit(config.getSize());
+            top = List.copyOf(mongoTemplate.find(query, Video.class));
+        } catch (Exception e) {
+            log.warn("Could not refresh top videos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Retirar un video de los rankings (p. ej. al eliminarlo o hacerlo privado)
+     */
+    public void remove(String videoId) {
+        synchronized (this) {
+            trendingCandidates.remove(videoId);
+        }
+        trending = trending.stream().filter(video -> !video.getId().equals(videoId)).toList();
+        top = top.stream().filter(video -> !video.getId().equals(videoId)).toList();
+    }
+
+    /**
+     * Decaimiento exponencial: reducir a la mitad sketch y candidatos por cada halfLife transcurrido
+     */
+    private void decayIfDue() {
+        long halfLifeNanos = config.getHalfLife().toNanos();
+        while (System.nanoTime() - lastDecay >= halfLifeNanos) {
+            sketch.halve();
+            trendingCandidates.halve();
+            lastDecay += halfLifeNanos;
+        }
+    }
+
+    /**
+     * Heap de mínimos de candidatos con su estimación y un índice id -> posición, para actualizar o
+     * retirar un video en O(log K) y comparar con el más débil en O(1). No es thread-safe: se usa
+     * bajo el monitor del leaderboard.
+     */
+    private static final class CandidateHeap {
+
+        private final String[] ids;
+        private final long[] estimates;
+        private final Map<String, Integer> positions;
+        private int size;
+
+        CandidateHeap(int capacity) {
+            this.ids = new String[Math.max(1, capacity)];
+            this.estimates = new long[ids.length];
+            this.positions = new HashMap<>(ids.length * 2);
+        }
+
+        /**
+         * Actualizar un candidato, añadirlo si hay hueco o sustituir al más débil si lo supera
+         */
+        void offer(String id, long estimate) {
+            Integer position = positions.get(id);
+            if (position != null) {
+                long previous = estimates[position];
+                estimates[position] = estimate;
+                if (estimate < previous) {
+                    siftUp(position);
+                } else {
+                    siftDown(position);
+                }
+            } else if (size < ids.length) {
+                ids[size] = id;
+                estimates[size] = estimate;
+                positions.put(id, size);
+                siftUp(size++);
+            } else if (estimate > estimates[0]) {
+                positions.remove(ids[0]);
+                ids[0] = id;
+                estimates[0] = estimate;
+                positions.put(id, 0);
+                siftDown(0);
+            }
+        }
+
+        void remove(String id) {
+            Integer position = positions.remove(id);
+            if (position == null) {
+                return;
+            }
+            int last = --size;
+            if (position != last) {
+                move(last, position);
+                siftDown(position);
+                siftUp(position);
+            }
+            ids[last] = null;
+        }
+
+        /**
+         * Dividir las estimaciones entre dos. El orden relativo se conserva, así que el heap sigue
+         * siendo válido; los que llegan a cero están en la raíz y se retiran.
+         */
+        void halve() {
+            for (int i = 0; i < size; i++) {
+                estimates[i] >>>= 1;
+            }
+            while (size > 0 && estimates[0] == 0) {
+                remove(ids[0]);
+            }
+        }
+
+        /**
+         * Ids con estimación positiva, de mayor a menor
+         */
+        List<String> ranked() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(estimates[b], estimates[a]));
+            List<String> ranked = new ArrayList<>(size);
+            for (Integer i : order) {
+                if (estimates[i] > 0) {
+                    ranked.add(ids[i]);
+                }
+            }
+            return ranked;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (estimates[parent] <= estimates[position]) {
+                    return;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && estimates[left] < estimates[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && estimates[right] < estimates[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                swap(position, smallest);
+                position = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            String id = ids[a];
+            long estimate = estimates[a];
+            move(b, a);
+            ids[b] = id;
+            estimates[b] = estimate;
+            positions.put(id, b);
+        }
+
+        private void move(int from, int to) {
+            ids[to] = ids[from];
+            estimates[to] = estimates[from];
+            positions.put(ids[to], to);
+        }
+    }
+
+    /**
+     * Count-min sketch con contadores int: estima la frecuencia de cada video en memoria constante
+     */
+    private static final class CountMinSketch {
+
+        private static final int DEPTH = 4;
+        private static final long[] SEEDS = {
+                0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+        };
+
+        private final int[][] table;
+        private final int mask;
+
+        CountMinSketch(int width) {
+            int size = Integer.highestOneBit(Math.max(16, width) - 1) << 1;
+            this.table = new int[DEPTH][size];
+            this.mask = size - 1;
+        }
+
+        /**
+         * Incrementar y devolver la nueva estimación (mínimo entre filas)
+         */
+        long add(String key) {
+            int estimate = Integer.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(key, i);
+                if (table[i][index] < Integer.MAX_VALUE) {
+                    table[i][index]++;
+                }
+                estimate = Math.min(estimate, table[i][index]);
+            }
+            return estimate;
+        }
+
+        void halve() {
+            for (int[] row : table) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] >>>= 1;
+                }
+            }
+        }
+
+        /**
+         * Hash de 64 bits de los caracteres con la semilla de la fila, independiente en cada fila:
+         * dos ids que colisionan en String.hashCode no colisionan por ello en todas las filas.
+         */
+        private int indexOf(String key, int row) {
+            long h = SEEDS[row] ^ key.length();
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x100000001B3L;
+            }
+            // Finalizador de MurmurHash3 para repartir los bits altos
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return (int) h & mask;
+        }
+    }
+}
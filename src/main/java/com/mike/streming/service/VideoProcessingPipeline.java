@@ -0,0 +1,488 @@
+package com.mike.streming.service;
+
+import com.mike.streming.cache.DataKeyCache;
+import com.mike.streming.cache.VideoNearCache;
+import com.mike.streming.config.ProcessingConfig;
+import com.mike.streming.encryption.EncryptedVideoStream;
+import com.mike.streming.encryption.VideoEncryptionService;
+import com.mike.streming.model.ProcessingJob;
+import com.mike.streming.model.ProcessingJob.Stage;
+import com.mike.streming.model.Video;
+import com.mike.streming.model.Video.ProcessingStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipeline de procesamiento posterior a la subida. La subida termina en cuanto el archivo está
+ * guardado en GridFS y el video queda en PENDING con un trabajo de cifrado en processing_jobs.
+ *
+ * Cada nodo toma trabajos de la cola según su capacidad local (un permiso por worker y etapa),
+ * los ejecuta fuera de los hilos de Tomcat y renueva sus leases mientras trabaja. Si un nodo cae
+ * sus leases vencen y otro nodo retoma los trabajos; las etapas son idempotentes respecto al
+ * estado del video, así que repetir una etapa interrumpida es seguro.
+ *
+ * Ventana en claro: un video con encryptVideo se guarda primero sin cifrar y solo queda sellado
+ * (formato segmentado AES-GCM) cuando termina su etapa de cifrado, que borra el original. Hasta
+ * entonces el video está en PROCESSING y no se sirve; si el trabajo agota los reintentos el
+ * original se borra al marcarlo como fallido.
+ */
+@Slf4j
+@Service
+public class VideoProcessingPipeline implements MeterBinder {
+
+    private static final int ENCRYPTION_PROGRESS_MAX = 90;
+    private static final int RECONCILE_BATCH_SIZE = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final GridFsService gridFsService;
+    private final VideoEncryptionService videoEncryptionService;
+    private final DataKeyCache dataKeyCache;
+    private final VideoNearCache videoNearCache;
+    private final VideoSearchIndex videoSearchIndex;
+    private final ProcessingJobQueue jobQueue;
+    private final ProcessingConfig config;
+
+    private final Map<Stage, Worker> workers = new EnumMap<>(Stage.class);
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeatScheduler =
+            Executors.newSingleThreadScheduledExecutor(Worker.threadFactory("video-pipeline-heartbeat"));
+
+    public VideoProcessingPipeline(MongoTemplate mongoTemplate, GridFsService gridFsService,
+                                   VideoEncryptionService videoEncryptionService, DataKeyCache dataKeyCache,
+                                   VideoNearCache videoNearCache, VideoSearchIndex videoSearchIndex,
+                                   ProcessingJobQueue jobQueue, ProcessingConfig config) {
+        this.mongoTemplate = mongoTemplate;
+        this.gridFsService = gridFsService;
+        this.videoEncryptionService = videoEncryptionService;
+        this.dataKeyCache = dataKeyCache;
+        this.videoNearCache = videoNearCache;
+        this.videoSearchIndex = videoSearchIndex;
+        this.jobQueue = jobQueue;
+        this.config = config;
+        workers.put(Stage.ENCRYPTION, new Worker("video-pipeline-encrypt", config.getEncryptionWorkers()));
+    }
+
+    /**
+     * Los leases se renuevan en un hilo propio: en el scheduler compartido, una tarea lenta
+     * (reconstrucción del índice de búsqueda, flush de vistas...) podría retrasar la renovación
+     * más allá del lease y hacer que otro nodo tome trabajos que siguen en curso.
+     */
+    @PostConstruct
+    public void startHeartbeat() {
+        long interval = Math.max(1, config.getHeartbeatIntervalMs());
+        heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Los trabajos interrumpidos vuelven a ser visibles para otro nodo cuando vence su lease
+        heartbeatScheduler.shutdownNow();
+        workers.values().forEach(worker -> worker.executor().shutdownNow());
+    }
+
+    /**
+     * Encolar el procesamiento de un video recién subido. Si la cola no está disponible,
+     * la reconciliación periódica lo encolará más tarde.
+     */
+    public void submit(String videoId) {
+        try {
+            jobQueue.enqueue(videoId, Stage.ENCRYPTION);
+        } catch (Exception e) {
+            log.warn("Could not enqueue processing of video {}, it will be reconciled later: {}",
+                    videoId, e.getMessage());
+        }
+    }
+
+    /**
+     * Tomar de la cola tantos trabajos como workers libres tenga cada etapa en este nodo
+     */
+    @Scheduled(fixedDelayString = "${streaming.processing.poll-interval-ms:1000}")
+    public void poll() {
+        workers.forEach((stage, worker) -> {
+            while (worker.slots().tryAcquire()) {
+                ProcessingJob job;
+                try {
+                    job = jobQueue.acquire(stage);
+                } catch (Exception e) {
+                    worker.slots().release();
+                    log.warn("Could not poll processing queue for {}: {}", stage, e.getMessage());
+                    return;
+                }
+                if (job == null) {
+                    worker.slots().release();
+                    return;
+                }
+                Lease lease = new Lease(job);
+                leases.put(job.getId(), lease);
+                worker.executor().execute(() -> run(lease, worker));
+            }
+        });
+    }
+
+    /**
+     * Renovar los leases de los trabajos en curso; los que se perdieron se abandonan
+     */
+    void heartbeat() {
+        leases.values().forEach(lease -> {
+            try {
+                if (!jobQueue.renew(lease.job())) {
+                    lease.lost = true;
+                    log.warn("Lost lease of processing job {} for video {}",
+                            lease.job().getStage(), lease.job().getVideoId());
+                }
+            } catch (Exception e) {
+                log.warn("Could not renew lease of processing job {}: {}", lease.job().getId(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Encolar los videos que quedaron en PENDING sin trabajo (por ejemplo, si falló el encolado
+     * durante la subida). Los trabajos ya existentes no se duplican.
+     */
+    @Scheduled(fixedDelayString = "${streaming.processing.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        try {
+            Query query = Query.query(Criteria.where("status").is(Video.VideoStatus.PROCESSING)
+                            .and("processingStatus").is(ProcessingStatus.PENDING)
+                            .and("updatedAt").lt(LocalDateTime.now().minus(config.getLeaseDuration())))
+                    .limit(RECONCILE_BATCH_SIZE);
+            query.fields().include("id");
+
+            for (Video video : mongoTemplate.find(query, Video.class)) {
+                jobQueue.enqueue(video.getId(), Stage.ENCRYPTION);
+            }
+        } catch (Exception e) {
+            log.warn("Could not reconcile pending videos: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        workers.forEach((stage, worker) -> Gauge.builder("streaming.processing.active", worker,
+                        w -> w.size() - w.slots().availablePermits())
+                .tag("stage", stage.name().toLowerCase())
+                .register(registry));
+    }
+
+    private void run(Lease lease, Worker worker) {
+        ProcessingJob job = lease.job();
+        try {
+            runEncryptionStage(lease);
+            jobQueue.complete(job);
+        } catch (Exception e) {
+            if (lease.lost || Thread.currentThread().isInterrupted()) {
+                // Sin lease (o apagando el nodo) el trabajo queda para quien lo tome al vencer el lease
+                log.warn("Abandoned processing job {} for video {}: {}", job.getStage(), job.getVideoId(),
+                        lease.lost ? "lease lost" : "interrupted");
+            } else if (jobQueue.fail(job, e.getMessage())) {
+                markFailed(job.getVideoId());
+                discardCheckpoint(job);
+            }
+        } finally {
+            leases.remove(job.getId());
+            worker.slots().release();
+        }
+    }
+
+    /**
+     * Etapa de cifrado: cifrar si el video lo requiere y dejarlo listo para servirse
+     */
+    private void runEncryptionStage(Lease lease) throws IOException {
+        String videoId = lease.job().getVideoId();
+        Video video = mongoTemplate.findById(videoId, Video.class);
+        if (video == null || video.getStatus() != Video.VideoStatus.PROCESSING) {
+            discardCheckpoint(lease.job());
+            return;
+        }
+
+        // Un reintento tras una caída encuentra el video en ENCRYPTING y continúa desde el checkpoint
+        ProcessingStatus status = video.getProcessingStatus();
+        if (status == ProcessingStatus.PENDING || status == ProcessingStatus.ENCRYPTING) {
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("id").is(videoId)
+                            .and("processingStatus").in(ProcessingStatus.PENDING, ProcessingStatus.ENCRYPTING)),
+                    new Update()
+                            .set("processingStatus", ProcessingStatus.ENCRYPTING)
+                            .set("updatedAt", LocalDateTime.now()),
+                    Video.class);
+
+            if (video.isEncrypted()) {
+                // El cambio al archivo cifrado deja el video listo en la misma escritura
+                encrypt(video, lease);
+                return;
+            }
+        }
+
+        // No hay generador de thumbnails (no hay decodificador de video en el classpath), así que
+        // el procesamiento termina aquí. GENERATING_THUMBNAIL solo lo dejaban versiones anteriores.
+        completed(mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(videoId)
+                        .and("status").is(Video.VideoStatus.PROCESSING)
+                        .and("processingStatus").in(ProcessingStatus.ENCRYPTING, ProcessingStatus.GENERATING_THUMBNAIL)),
+                readyUpdate(),
+                FindAndModifyOptions.options().returnNew(true),
+                Video.class));
+    }
+
+    /**
+     * Marcar el video como listo: a partir de aquí se sirve
+     */
+    private static Update readyUpdate() {
+        return new Update()
+                .set("status", Video.VideoStatus.READY)
+                .set("processingStatus", ProcessingStatus.COMPLETED)
+                .set("uploadProgress", 100)
+                .set("updatedAt", LocalDateTime.now());
+    }
+
+    private void completed(Video video) {
+        if (video != null) {
+            videoNearCache.invalidate(video.getId());
+            videoSearchIndex.index(video);
+            log.info("Video processed successfully: {}", video.getId());
+        }
+    }
+
+    /**
+     * Cifrar el archivo original en un archivo nuevo de GridFS, apuntar el video al cifrado
+     * (marcándolo como listo en la misma escritura) y borrar el original. Si el video cambió
+     * mientras tanto se descarta el archivo nuevo.
+     *
+     * El archivo cifrado se escribe chunk a chunk (un segmento por chunk) y el trabajo guarda
+     * periódicamente un checkpoint con los chunks confirmados y la cabecera del cifrado. Un trabajo
+     * interrumpido continúa desde el último checkpoint en lugar de volver a cifrar todo el video.
+     */
+    private void encrypt(Video video, Lease lease) throws IOException {
+        ProcessingJob job = lease.job();
+        String plaintextFileId = video.getGridfsFileId();
+        GridFsResource plaintext = gridFsService.getFile(plaintextFileId);
+        long length = plaintext.getGridFSFile().getLength();
+        SecretKey encryptionKey = dataKeyCache.get(video.getId(), video.getEncryptionKey(), video.getEncryptionKeyId());
+
+        ProcessingJob.Checkpoint checkpoint = job.getCheckpoint();
+        if (checkpoint == null || !plaintextFileId.equals(checkpoint.getSourceFileId())) {
+            // El checkpoint se guarda antes de escribir el primer chunk para no dejar chunks sin dueño
+            checkpoint = ProcessingJob.Checkpoint.builder()
+                    .sourceFileId(plaintextFileId)
+                    .outputFileId(new ObjectId().toHexString())
+                    .header(videoEncryptionService.newSegmentedHeader(length))
+                    .committedChunks(0)
+                    .build();
+            if (!jobQueue.checkpoint(job, checkpoint)) {
+                lease.lost = true;
+                throw new IOException("Lease lost for processing job " + job.getId());
+            }
+            log.info("Encrypting video {} ({} bytes)", video.getId(), length);
+        } else {
+            gridFsService.deleteChunksFrom(checkpoint.getOutputFileId(), checkpoint.getCommittedChunks());
+            log.info("Resuming encryption of video {} from chunk {}", video.getId(), checkpoint.getCommittedChunks());
+        }
+
+        String encryptedFileId = checkpoint.getOutputFileId();
+        Map<String, Object> header = checkpoint.getHeader();
+        long segmentCount = videoEncryptionService.segmentCount(header);
+        long firstSegment = checkpoint.getCommittedChunks();
+
+        if (firstSegment < segmentCount) {
+            try (InputStream content = plaintext.getInputStream()) {
+                content.skipNBytes(videoEncryptionService.segmentOffset(header, firstSegment));
+                EncryptedVideoStream encrypted = videoEncryptionService.sealingStream(
+                        content, encryptionKey, header, firstSegment);
+                gridFsService.writeChunks(encryptedFileId, firstSegment, encrypted.inputStream(),
+                        encrypted.chunkSize(), new ChunkProgress(lease, checkpoint, segmentCount));
+            }
+        }
+        gridFsService.finishChunkedFile(encryptedFileId, plaintext, videoEncryptionService.sealedLength(header),
+                videoEncryptionService.sealedSegmentSize(header), Map.of("encryption", header));
+
+        Video ready = lease.lost ? null : mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(video.getId())
+                        .and("status").is(Video.VideoStatus.PROCESSING)
+                        .and("processingStatus").is(ProcessingStatus.ENCRYPTING)
+                        .and("gridfsFileId").is(plaintextFileId)),
+                readyUpdate().set("gridfsFileId", encryptedFileId),
+                FindAndModifyOptions.options().returnNew(true),
+                Video.class);
+
+        if (lease.lost) {
+            // Otro nodo retoma el trabajo desde el checkpoint y necesita el archivo intacto
+            throw new IOException("Lease lost for processing job " + job.getId());
+        }
+        if (ready == null) {
+            gridFsService.discardChunkedFile(encryptedFileId);
+            throw new IllegalStateException("Video changed while it was being encrypted");
+        }
+        gridFsService.deleteFile(plaintextFileId);
+        completed(ready);
+    }
+
+    /**
+     * Eliminar el archivo a medio escribir de un trabajo que no va a continuar, salvo que el
+     * video ya apunte a él
+     */
+    private void discardCheckpoint(ProcessingJob job) {
+        ProcessingJob.Checkpoint checkpoint = job.getCheckpoint();
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            boolean inUse = mongoTemplate.exists(
+                    Query.query(Criteria.where("id").is(job.getVideoId())
+                            .and("gridfsFileId").is(checkpoint.getOutputFileId())),
+                    Video.class);
+            if (!inUse) {
+                gridFsService.discardChunkedFile(checkpoint.getOutputFileId());
+            }
+        } catch (Exception e) {
+            log.warn("Could not discard partial output of processing job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Marcar el video como fallido cuando su trabajo agotó los reintentos. Si el video debía
+     * cifrarse y no llegó a cifrarse, se borra el original en claro: un video en ERROR no se sirve
+     * y no debe quedar una copia sin cifrar en GridFS.
+     */
+    private void markFailed(String videoId) {
+        try {
+            Video previous = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("id").is(videoId)
+                            .and("status").is(Video.VideoStatus.PROCESSING)),
+                    new Update()
+                            .set("status", Video.VideoStatus.ERROR)
+                            .set("processingStatus", ProcessingStatus.FAILED)
+                            .set("updatedAt", LocalDateTime.now()),
+                    Video.class);
+            videoNearCache.invalidate(videoId);
+
+            if (previous != null && previous.isEncrypted() && previous.getGridfsFileId() != null
+                    && (previous.getProcessingStatus() == ProcessingStatus.PENDING
+                    || previous.getProcessingStatus() == ProcessingStatus.ENCRYPTING)) {
+                gridFsService.deleteFile(previous.getGridfsFileId());
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("id").is(videoId)
+                                .and("gridfsFileId").is(previous.getGridfsFileId())),
+                        new Update().unset("gridfsFileId"),
+                        Video.class);
+                log.info("Deleted unencrypted original of failed video {}", videoId);
+            }
+        } catch (Exception e) {
+            log.error("Could not mark video {} as failed: {}", videoId, e.getMessage());
+        }
+    }
+
+    /**
+     * Executor de una etapa con un permiso por worker: solo se toman trabajos con permisos libres
+     */
+    private record Worker(ExecutorService executor, Semaphore slots, int size) {
+
+        Worker(String name, int size) {
+            this(Executors.newFixedThreadPool(Math.max(1, size), threadFactory(name)),
+                    new Semaphore(Math.max(1, size)), Math.max(1, size));
+        }
+
+        private static ThreadFactory threadFactory(String name) {
+            AtomicInteger counter = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * Trabajo tomado por este nodo. Se marca como perdido si no se pudo renovar el lease.
+     */
+    private static final class Lease {
+
+        private final ProcessingJob job;
+        private volatile boolean lost;
+
+        Lease(ProcessingJob job) {
+            this.job = job;
+        }
+
+        ProcessingJob job() {
+            return job;
+        }
+    }
+
+    /**
+     * Recibe cada chunk confirmado del archivo cifrado: publica el progreso en upload_progress y
+     * guarda el checkpoint cada checkpoint-interval. Corta la escritura si el lease se perdió.
+     */
+    private class ChunkProgress implements GridFsService.ChunkListener {
+
+        private final Lease lease;
+        private final ProcessingJob.Checkpoint checkpoint;
+        private final long segmentCount;
+        private final long intervalMs = config.getCheckpointInterval().toMillis();
+        private long lastCheckpoint = System.currentTimeMillis();
+
+        ChunkProgress(Lease lease, ProcessingJob.Checkpoint checkpoint, long segmentCount) {
+            this.lease = lease;
+            this.checkpoint = checkpoint;
+            this.segmentCount = segmentCount;
+        }
+
+        @Override
+        public void committed(long committedChunks) throws IOException {
+            if (lease.lost) {
+                throw new IOException("Lease lost for processing job " + lease.job().getId());
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastCheckpoint < intervalMs && committedChunks < segmentCount) {
+                return;
+            }
+            lastCheckpoint = now;
+
+            checkpoint.setCommittedChunks(committedChunks);
+            if (!jobQueue.checkpoint(lease.job(), checkpoint)) {
+                lease.lost = true;
+                throw new IOException("Lease lost for processing job " + lease.job().getId());
+            }
+            try {
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("id").is(lease.job().getVideoId())
+                                .and("processingStatus").is(ProcessingStatus.ENCRYPTING)),
+                        new Update()
+                                .set("uploadProgress", (int) (committedChunks * ENCRYPTION_PROGRESS_MAX / segmentCount))
+                                .set("updatedAt", LocalDateTime.now()),
+                        Video.class);
+            } catch (Exception e) {
+                log.debug("Could not update processing progress of video {}: {}",
+                        lease.job().getVideoId(), e.getMessage());
+            }
+        }
+    }
+}
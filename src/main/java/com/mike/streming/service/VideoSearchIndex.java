@@ -0,0 +1,491 @@
+package com.mike.streming.service;
+
+import com.mike.streming.model.Video;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Índice invertido en memoria de títulos, descripciones y tags de los videos. Cada término apunta a
+ * una lista de documentos en arrays primitivos ordenados (ordinales int) con un peso por campo.
+ * Las consultas intersectan las listas de todos los términos; el último término se expande por
+ * prefijo para autocompletar. Se construye al arrancar, se actualiza de forma incremental desde
+ * VideoService y se reconstruye periódicamente para recoger cambios de otros nodos.
+ */
+@Slf4j
+@Component
+public class VideoSearchIndex implements MeterBinder {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MAX_TOKEN_LENGTH = 40;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final int TITLE_WEIGHT = 8;
+    private static final int TAG_WEIGHT = 4;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Value("${streaming.search.enabled:true}")
+    private boolean enabled;
+
+    private volatile boolean ready;
+    private Segment segment = new Segment();
+    private List<Video> pendingDuringRebuild; // Cambios recibidos mientras se reconstruye
+
+    public VideoSearchIndex(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Construir el índice sin retrasar el arranque
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "video-search-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Indica si el índice ya está construido y puede responder búsquedas
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Reconstruir el índice completo desde MongoDB y sustituir el actual
+     */
+    @Scheduled(initialDelayString = "${streaming.search.rebuild-interval-ms:600000}",
+            fixedDelayString = "${streaming.search.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Segment rebuilt = new Segment();
+        try {
+            // Solo los videos listos: el resto entra en el índice al pasar a READY
+            Query query = Query.query(Criteria.where("status").is(Video.VideoStatus.READY));
+            query.fields().include("title", "description", "tags", "isPublic", "status", "createdAt");
+            try (Stream<Video> videos = mongoTemplate.stream(query, Video.class)) {
+                videos.forEach(rebuilt::put);
+            }
+        } catch (Exception e) {
+            log.error("Could not build video search index: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild.forEach(rebuilt::put);
+            pendingDuringRebuild = null;
+            segment = rebuilt;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Video search index built: {} videos, {} terms in {} ms", rebuilt.liveCount,
+                rebuilt.terms.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Añadir o actualizar un video en el índice. Los videos que no están en READY se retiran.
+     */
+    public void index(Video video) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            segment.put(video);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(video);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Eliminar un video del índice
+     */
+    public void remove(String videoId) {
+        if (!enabled) {
+            return;
+        }
+        Video removed = Video.builder().id(videoId).status(Video.VideoStatus.DELETED).build();
+        index(removed);
+    }
+
+    /**
+     * Buscar videos públicos. Devuelve los ids ordenados por relevancia (y los más recientes
+     * primero a igual relevancia), hasta limit, junto con el total de coincidencias.
+     */
+    public SearchResult search(String text, int limit) {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty() || limit <= 0) {
+            return new SearchResult(List.of(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            return segment.search(tokens, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Términos que empiezan por el prefijo, ordenados por número de videos que los contienen
+     */
+    public List<String> suggest(String prefix, int limit) {
+        List<String> tokens = tokenize(prefix);
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return segment.suggest(tokens.get(tokens.size() - 1), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("streaming.search.index.videos", this, index -> index.segment.liveCount)
+                .register(registry);
+        Gauge.builder("streaming.search.index.terms", this, index -> index.segment.terms.size())
+                .register(registry);
+    }
+
+    /**
+     * Normalizar (minúsculas, sin acentos) y separar en términos alfanuméricos
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Resultado de una búsqueda
+     *
+     * @param videoIds ids de los mejores resultados, en orden
+     * @param total    número total de videos que coinciden
+     */
+    public record SearchResult(List<String> videoIds, int total) {
+    }
+
+    /**
+     * Estado del índice. No es thread-safe: el acceso se sincroniza con el lock del índice.
+     */
+    private static final class Segment {
+
+        private final NavigableMap<String, PostingList> terms = new TreeMap<>();
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final List<String> videoIds = new ArrayList<>();
+        private final List<String[]> docTerms = new ArrayList<>();
+        private final BitSet publicDocs = new BitSet();
+        private long[] createdAt = new long[64]; // Epoch millis por ordinal, desempata por recencia
+        private int liveCount;
+
+        void put(Video video) {
+            Integer existing = ordinals.get(video.getId());
+            if (existing != null) {
+                removeDoc(existing);
+            }
+            if (video.getStatus() != Video.VideoStatus.READY) {
+                return;
+            }
+
+            int doc;
+            if (existing != null) {
+                doc = existing;
+            } else {
+                doc = videoIds.size();
+                videoIds.add(video.getId());
+                docTerms.add(null);
+                ordinals.put(video.getId(), doc);
+                if (doc == createdAt.length) {
+                    createdAt = Arrays.copyOf(createdAt, doc * 2);
+                }
+            }
+            createdAt[doc] = video.getCreatedAt() != null
+                    ? video.getCreatedAt().atZone(ZoneOffset.UTC).toInstant().toEpochMilli()
+                    : 0L;
+
+            Map<String, Integer> weights = new HashMap<>();
+            addTokens(weights, video.getTitle(), TITLE_WEIGHT);
+            addTokens(weights, video.getDescription(), DESCRIPTION_WEIGHT);
+            if (video.getTags() != null) {
+                video.getTags().forEach(tag -> addTokens(weights, tag, TAG_WEIGHT));
+            }
+
+            weights.forEach((term, weight) ->
+                    terms.computeIfAbsent(term, t -> new PostingList()).put(doc, (byte) Math.min(weight, Byte.MAX_VALUE)));
+            docTerms.set(doc, weights.keySet().toArray(new String[0]));
+            publicDocs.set(doc, video.isPublic());
+            liveCount++;
+        }
+
+        private void removeDoc(int doc) {
+            String[] previous = docTerms.get(doc);
+            if (previous == null) {
+                return;
+            }
+            for (String term : previous) {
+                PostingList postings = terms.get(term);
+                if (postings != null && postings.remove(doc) && postings.size == 0) {
+                    terms.remove(term);
+                }
+            }
+            docTerms.set(doc, null);
+            publicDocs.clear(doc);
+            liveCount--;
+        }
+
+        private static void addTokens(Map<String, Integer> weights, String text, int weight) {
+            for (String token : tokenize(text)) {
+                weights.merge(token, weight, Integer::sum);
+            }
+        }
+
+        SearchResult search(List<String> tokens, int limit) {
+            Hits hits = null;
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean last = i == tokens.size() - 1;
+                Hits tokenHits = last ? prefixHits(tokens.get(i)) : exactHits(tokens.get(i));
+                hits = hits == null ? tokenHits : hits.intersect(tokenHits);
+                if (hits.size == 0) {
+                    return new SearchResult(List.of(), 0);
+                }
+            }
+            return topPublic(hits, limit);
+        }
+
+        private Hits exactHits(String token) {
+            PostingList postings = terms.get(token);
+            return postings != null ? Hits.of(postings, 2) : Hits.EMPTY;
+        }
+
+        /**
+         * Coincidencia exacta con peso completo y expansiones por prefijo con la mitad
+         */
+        private Hits prefixHits(String prefix) {
+            Map<Integer, Integer> scores = new HashMap<>();
+            int expansions = 0;
+            for (Map.Entry<String, PostingList> entry : terms.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix) || expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                int factor = entry.getKey().length() == prefix.length() ? 2 : 1;
+                PostingList postings = entry.getValue();
+                for (int i = 0; i < postings.size; i++) {
+                    scores.merge(postings.docs[i], postings.weights[i] * factor, Math::max);
+                }
+            }
+            return Hits.of(scores);
+        }
+
+        private SearchResult topPublic(Hits hits, int limit) {
+            // Heap de mínimos: la raíz es el peor de los mejores resultados (a igual puntuación, el más antiguo)
+            PriorityQueue<int[]> top = new PriorityQueue<>(limit + 1, (a, b) -> {
+                if (a[1] != b[1]) {
+                    return Integer.compare(a[1], b[1]);
+                }
+                int byDate = Long.compare(createdAt[a[0]], createdAt[b[0]]);
+                return byDate != 0 ? byDate : Integer.compare(a[0], b[0]);
+            });
+            int total = 0;
+            for (int i = 0; i < hits.size; i++) {
+                int doc = hits.docs[i];
+                if (!publicDocs.get(doc)) {
+                    continue;
+                }
+                total++;
+                top.offer(new int[]{doc, hits.scores[i]});
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            String[] ids = new String[top.size()];
+            for (int i = ids.length - 1; i >= 0; i--) {
+                ids[i] = videoIds.get(top.poll()[0]);
+            }
+            return new SearchResult(Arrays.asList(ids), total);
+        }
+
+        List<String> suggest(String prefix, int limit) {
+            PriorityQueue<Map.Entry<String, PostingList>> top = new PriorityQueue<>(
+                    (a, b) -> Integer.compare(a.getValue().size, b.getValue().size));
+            int expansions = 0;
+            for (Map.Entry<String, PostingList> entry : terms.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix) || expansions++ >= MAX_PREFIX_EXPANSIONS * 4) {
+                    break;
+                }
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            String[] suggestions = new String[top.size()];
+            for (int i = suggestions.length - 1; i >= 0; i--) {
+                suggestions[i] = top.poll().getKey();
+            }
+            return Arrays.asList(suggestions);
+        }
+    }
+
+    /**
+     * Lista de documentos de un término, ordenada por ordinal, con el peso del término en cada uno
+     */
+    private static final class PostingList {
+
+        private int[] docs = new int[4];
+        private byte[] weights = new byte[4];
+        private int size;
+
+        void put(int doc, byte weight) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                weights[index] = weight;
+                return;
+            }
+            int insertAt = -index - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            // Los videos nuevos tienen el ordinal más alto: normalmente se añade al final
+            System.arraycopy(docs, insertAt, docs, insertAt + 1, size - insertAt);
+            System.arraycopy(weights, insertAt, weights, insertAt + 1, size - insertAt);
+            docs[insertAt] = doc;
+            weights[insertAt] = weight;
+            size++;
+        }
+
+        boolean remove(int doc) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * Coincidencias parciales de una consulta: ordinales ordenados con su puntuación acumulada
+     */
+    private static final class Hits {
+
+        static final Hits EMPTY = new Hits(new int[0], new int[0], 0);
+
+        final int[] docs;
+        final int[] scores;
+        final int size;
+
+        Hits(int[] docs, int[] scores, int size) {
+            this.docs = docs;
+            this.scores = scores;
+            this.size = size;
+        }
+
+        static Hits of(PostingList postings, int factor) {
+            int[] scores = new int[postings.size];
+            for (int i = 0; i < postings.size; i++) {
+                scores[i] = postings.weights[i] * factor;
+            }
+            return new Hits(Arrays.copyOf(postings.docs, postings.size), scores, postings.size);
+        }
+
+        static Hits of(Map<Integer, Integer> scoresByDoc) {
+            int[] docs = scoresByDoc.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] scores = new int[docs.length];
+            for (int i = 0; i < docs.length; i++) {
+                scores[i] = scoresByDoc.get(docs[i]);
+            }
+            return new Hits(docs, scores, docs.length);
+        }
+
+        /**
+         * Intersección por mezcla de dos listas ordenadas, sumando puntuaciones
+         */
+        Hits intersect(Hits other) {
+            int[] resultDocs = new int[Math.min(size, other.size)];
+            int[] resultScores = new int[resultDocs.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < size && j < other.size) {
+                if (docs[i] < other.docs[j]) {
+                    i++;
+                } else if (docs[i] > other.docs[j]) {
+                    j++;
+                } else {
+                    resultDocs[n] = docs[i];
+                    resultScores[n++] = scores[i++] + other.scores[j++];
+                }
+            }
+            return new Hits(resultDocs, resultScores, n);
+        }
+    }
+}
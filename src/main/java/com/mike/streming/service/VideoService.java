@@ -1,24 +1,49 @@
 package com.mike.streming.service;
 
+import com.mike.streming.cache.DataKeyCache;
+import com.mike.streming.cache.VideoNearCache;
+import com.mike.streming.dto.CursorPage;
+import com.mike.streming.dto.VideoFieldSelection;
 import com.mike.streming.dto.VideoResponse;
 import com.mike.streming.dto.VideoUploadRequest;
 import com.mike.streming.encryption.VideoEncryptionService;
+import com.mike.streming.exception.FileUploadException;
 import com.mike.streming.exception.ResourceNotFoundException;
 import com.mike.streming.exception.ValidationException;
 import com.mike.streming.model.Video;
 import com.mike.streming.repository.VideoRepository;
 import com.mike.streming.util.FileUtils;
+import com.mike.streming.util.MultipartStreamParser;
 import com.mike.streming.util.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +57,18 @@ public class VideoService {
     private final VideoRepository videoRepository;
     private final VideoEncryptionService videoEncryptionService;
     private final GridFsService gridFsService;
+    private final ViewCountService viewCountService;
+    private final VideoNearCache videoNearCache;
+    private final DataKeyCache dataKeyCache;
+    private final MongoTemplate mongoTemplate;
+    private final VideoSearchIndex videoSearchIndex;
+    private final VideoLeaderboard videoLeaderboard;
+    private final VideoProcessingPipeline videoProcessingPipeline;
+    
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final int MAX_FORM_FIELD_LENGTH = 4 * 1024; // Campos de texto de la subida en streaming
+    private static final int MAX_UPLOAD_PARTS = 16; // Partes del cuerpo multipart de la subida en streaming
+    private static final Set<String> UPLOAD_FIELDS = Set.of("title", "description", "tags", "isPublic", "encryptVideo");
     
     /**
      * Subir video
@@ -43,10 +80,107 @@ public class VideoService {
         // Validar archivo
         FileUtils.validateVideoFile(file);
         
+        // Guardar primero el archivo: el documento solo se crea cuando los bytes ya son durables
+        String videoId = new ObjectId().toHexString();
+        String gridfsFileId = gridFsService.storeFile(file, videoId);
+        
+        return registerUpload(videoId, gridfsFileId, file.getOriginalFilename(), file.getContentType(),
+                file.getSize(), request);
+    }
+    
+    /**
+     * Subir video leyendo el cuerpo multipart en streaming: el archivo se escribe en GridFS
+     * según llegan los bytes, sin copia temporal, validando tipo y tamaño y calculando el hash
+     * en la misma pasada. Los campos del formulario pueden ir antes o después del archivo y,
+     * como alternativa, en la query string (queryParams). Solo se aceptan los campos conocidos y un
+     * número limitado de partes; los bytes de las partes que se descartan cuentan para el límite de
+     * tamaño igual que los del archivo.
+     */
+    public VideoResponse uploadVideoStream(InputStream body, String contentType, Map<String, String> queryParams) {
+        String boundary = MultipartStreamParser.boundaryOf(contentType);
+        if (boundary == null) {
+            throw new ValidationException("Request must be multipart/form-data with a boundary");
+        }
+        
+        String videoId = new ObjectId().toHexString();
+        Map<String, String> fields = new HashMap<>();
+        queryParams.forEach((name, value) -> {
+            if (UPLOAD_FIELDS.contains(name)) {
+                fields.put(name, value);
+            }
+        });
+        GridFsService.StoredUpload upload = null;
+        String originalFilename = null;
+        String fileContentType = null;
+        long discardedBytes = 0;
+        int parts = 0;
+        
+        try {
+            MultipartStreamParser parser = new MultipartStreamParser(body, boundary);
+            MultipartStreamParser.Part part;
+            while ((part = parser.nextPart()) != null) {
+                if (++parts > MAX_UPLOAD_PARTS) {
+                    throw new ValidationException("Upload cannot have more than " + MAX_UPLOAD_PARTS + " parts");
+                }
+                long remaining = FileUtils.getMaxFileSize() - discardedBytes - (upload != null ? upload.size() : 0);
+                if (part.isFile() && "file".equals(part.name())) {
+                    if (upload != null) {
+                        throw new ValidationException("Only one file can be uploaded per request");
+                    }
+                    // El tipo se valida antes de escribir nada en GridFS
+                    if (!FileUtils.isAllowedVideoType(part.contentType())) {
+                        throw new ValidationException("Invalid video file type. Allowed types: " + FileUtils.getAllowedVideoTypes());
+                    }
+                    log.info("Streaming video upload: {}", part.filename());
+                    originalFilename = part.filename();
+                    fileContentType = part.contentType();
+                    upload = gridFsService.storeUpload(videoId, originalFilename, fileContentType,
+                            part.content(), remaining);
+                } else if (!part.isFile() && UPLOAD_FIELDS.contains(part.name())) {
+                    fields.put(part.name(), part.readValue(MAX_FORM_FIELD_LENGTH));
+                } else {
+                    // Otras partes (archivos extra o campos desconocidos) se leen y se descartan
+                    discardedBytes += drain(part.content(), remaining);
+                }
+            }
+        } catch (IOException e) {
+            discardUpload(upload);
+            throw new FileUploadException("Failed to read upload: " + e.getMessage());
+        } catch (RuntimeException e) {
+            discardUpload(upload);
+            throw e;
+        }
+        
+        if (upload == null) {
+            throw new ValidationException("File part 'file' is required");
+        }
+        String title = fields.get("title");
+        if (title == null || title.isBlank()) {
+            discardUpload(upload);
+            throw new ValidationException("Title is required");
+        }
+        
+        String tags = fields.get("tags");
+        VideoUploadRequest request = VideoUploadRequest.builder()
+                .title(title)
+                .description(fields.get("description"))
+                .tags(tags != null ? Arrays.asList(tags.split(",")) : null)
+                .isPublic(Boolean.parseBoolean(fields.get("isPublic")))
+                .encryptVideo(Boolean.parseBoolean(fields.get("encryptVideo")))
+                .build();
+        
+        return registerUpload(videoId, upload.fileId(), originalFilename, fileContentType, upload.size(), request);
+    }
+    
+    /**
+     * Crear el documento del video para un archivo ya guardado en GridFS y encolar su procesamiento
+     */
+    private VideoResponse registerUpload(String videoId, String gridfsFileId, String originalFilename,
+                                         String contentType, long size, VideoUploadRequest request) {
         // Obtener usuario actual
         String currentUserId = SecurityUtils.getCurrentUserId();
         
-        // Generar clave de encriptación si es necesario
+        // Generar clave de encriptación si es necesario; el cifrado se hace en el pipeline
         String encryptionKey = null;
         if (request.isEncryptVideo()) {
             encryptionKey = videoEncryptionService.generateVideoEncryptionKey();
@@ -54,74 +188,82 @@ public class VideoService {
         
         // Crear entidad Video
         Video video = Video.builder()
+                .id(videoId)
                 .title(request.getTitle())
                 .description(request.getDescription())
-                .originalFilename(file.getOriginalFilename())
-                .contentType(file.getContentType())
-                .size(file.getSize())
+                .originalFilename(originalFilename)
+                .contentType(contentType)
+                .size(size)
                 .uploadedBy(currentUserId)
                 .isEncrypted(request.isEncryptVideo())
                 .encryptionKey(encryptionKey != null ? videoEncryptionService.encryptVideoKey(encryptionKey) : null)
+                .encryptionKeyId(encryptionKey != null ? videoEncryptionService.getActiveMasterKeyId() : null)
+                .gridfsFileId(gridfsFileId)
                 .tags(request.getTags())
                 .isPublic(request.isPublic())
                 .viewCount(0L)
-                .status(Video.VideoStatus.UPLOADING)
+                .status(Video.VideoStatus.PROCESSING)
                 .processingStatus(Video.ProcessingStatus.PENDING)
                 .uploadProgress(0)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
         
-        video = videoRepository.save(video);
-        
         try {
-            // Guardar archivo en GridFS
-            String gridfsFileId = gridFsService.storeFile(file, video.getId());
-            video.setGridfsFileId(gridfsFileId);
-            
-            // Encriptar si es necesario
-            if (request.isEncryptVideo() && encryptionKey != null) {
-                video.setProcessingStatus(Video.ProcessingStatus.ENCRYPTING);
-                videoRepository.save(video);
-                
-                // TODO: Implementar encriptación asíncrona
-                // videoEncryptionService.encryptVideo(file.getInputStream(), encryptionKey);
-            }
-            
-            // Generar thumbnail
-            video.setProcessingStatus(Video.ProcessingStatus.GENERATING_THUMBNAIL);
-            videoRepository.save(video);
-            
-            // TODO: Implementar generación de thumbnail
-            // String thumbnailId = thumbnailService.generateThumbnail(file);
-            // video.setThumbnailId(thumbnailId);
-            
-            // Completar procesamiento
-            video.setStatus(Video.VideoStatus.READY);
-            video.setProcessingStatus(Video.ProcessingStatus.COMPLETED);
-            video.setUploadProgress(100);
-            video.setUpdatedAt(LocalDateTime.now());
-            
-            video = videoRepository.save(video);
-            
-            log.info("Video uploaded successfully: {}", video.getId());
-            return mapToVideoResponse(video);
-            
+            video = videoRepository.insert(video);
         } catch (Exception e) {
             log.error("Error uploading video: {}", e.getMessage());
-            video.setStatus(Video.VideoStatus.ERROR);
-            video.setProcessingStatus(Video.ProcessingStatus.FAILED);
-            videoRepository.save(video);
+            gridFsService.deleteFile(gridfsFileId);
             throw new ValidationException("Failed to upload video: " + e.getMessage());
         }
+        
+        // Cifrado en segundo plano, en el nodo que tome el trabajo de la cola
+        videoProcessingPipeline.submit(videoId);
+        
+        log.info("Video uploaded, processing in background: {}", videoId);
+        return mapToVideoResponse(video);
+    }
+    
+    /**
+     * Leer y descartar el contenido de una parte, fallando si supera el tamaño restante
+     */
+    private static long drain(InputStream content, long limit) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            total += read;
+            if (total > limit) {
+                throw new FileUploadException("Upload exceeds maximum limit of " + FileUtils.formatFileSize(FileUtils.getMaxFileSize()));
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Eliminar el archivo de una subida que no llegó a registrarse
+     */
+    private void discardUpload(GridFsService.StoredUpload upload) {
+        if (upload != null) {
+            gridFsService.deleteFile(upload.fileId());
+        }
     }
     
     /**
      * Obtener video por ID
      */
-    public VideoResponse getVideoById(String videoId) {
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + videoId));
+    public VideoResponse getVideoById(String videoId, VideoFieldSelection fields) {
+        Video video;
+        if (fields == null) {
+            video = videoRepository.findById(videoId).orElse(null);
+        } else {
+            // isPublic y uploadedBy se proyectan siempre para verificar permisos
+            video = mongoTemplate.findOne(project(Query.query(Criteria.where("id").is(videoId)), fields,
+                    "isPublic", "uploadedBy"), Video.class);
+        }
+        if (video == null) {
+            throw new ResourceNotFoundException("Video not found with id: " + videoId);
+        }
         
         // Verificar permisos
         if (!video.isPublic() && !SecurityUtils.canAccessResource(video.getUploadedBy())) {
@@ -134,26 +276,170 @@ public class VideoService {
     /**
      * Obtener videos del usuario actual
      */
-    public Page<VideoResponse> getUserVideos(Pageable pageable) {
+    public Page<VideoResponse> getUserVideos(Pageable pageable, VideoFieldSelection fields) {
         String currentUserId = SecurityUtils.getCurrentUserId();
-        Page<Video> videos = videoRepository.findByUploadedBy(currentUserId, pageable);
+        Page<Video> videos = fields == null
+                ? videoRepository.findByUploadedBy(currentUserId, pageable)
+                : findPage(Criteria.where("uploadedBy").is(currentUserId), pageable, fields);
         return videos.map(this::mapToVideoResponse);
     }
     
     /**
      * Obtener videos públicos
      */
-    public Page<VideoResponse> getPublicVideos(Pageable pageable) {
-        Page<Video> videos = videoRepository.findByIsPublicTrue(pageable);
+    public Page<VideoResponse> getPublicVideos(Pageable pageable, VideoFieldSelection fields) {
+        Page<Video> videos = fields == null
+                ? videoRepository.findByIsPublicTrue(pageable)
+                : findPage(Criteria.where("isPublic").is(true), pageable, fields);
         return videos.map(this::mapToVideoResponse);
     }
     
     /**
      * Buscar videos por título
      */
-    public Page<VideoResponse> searchVideosByTitle(String title, Pageable pageable) {
-        Page<Video> videos = videoRepository.findPublicVideosByTitleContaining(title, pageable);
-        return videos.map(this::mapToVideoResponse);
+    public Page<VideoResponse> searchVideosByTitle(String title, Pageable pageable, VideoFieldSelection fields) {
+        if (!videoSearchIndex.isReady()) {
+            // El índice aún se está construyendo
+            Page<Video> videos = fields == null
+                    ? videoRepository.findPublicVideosByTitleContaining(Pattern.quote(title), pageable)
+                    : findPage(Criteria.where("isPublic").is(true).and("title").regex(Pattern.quote(title), "i"),
+                            pageable, fields);
+            return videos.map(this::mapToVideoResponse);
+        }
+        
+        // Títulos, descripciones y tags desde el índice en memoria; solo la página se lee de MongoDB
+        int offset = (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE - pageable.getPageSize());
+        VideoSearchIndex.SearchResult result = videoSearchIndex.search(title, offset + pageable.getPageSize());
+        List<String> pageIds = result.videoIds().subList(Math.min(offset, result.videoIds().size()),
+                result.videoIds().size());
+        
+        Query pageQuery = project(Query.query(Criteria.where("id").in(pageIds)), fields);
+        Map<String, Video> videos = mongoTemplate.find(pageQuery, Video.class).stream()
+                .collect(Collectors.toMap(Video::getId, Function.identity()));
+        List<VideoResponse> content = pageIds.stream()
+                .map(videos::get)
+                .filter(Objects::nonNull)
+                .map(this::mapToVideoResponse)
+                .toList();
+        
+        return new PageImpl<>(content, pageable, result.total());
+    }
+    
+    /**
+     * Videos públicos en tendencia (vistas recientes), desde el ranking en memoria
+     */
+    public List<VideoResponse> getTrendingVideos(int limit) {
+        return videoLeaderboard.getTrending(Math.max(1, Math.min(limit, MAX_CURSOR_PAGE_SIZE))).stream()
+                .map(this::mapToVideoResponse)
+                .toList();
+    }
+    
+    /**
+     * Videos públicos más vistos, desde el ranking en memoria
+     */
+    public List<VideoResponse> getTopVideos(int limit) {
+        return videoLeaderboard.getTop(Math.max(1, Math.min(limit, MAX_CURSOR_PAGE_SIZE))).stream()
+                .map(this::mapToVideoResponse)
+                .toList();
+    }
+    
+    /**
+     * Sugerencias de autocompletado para la búsqueda
+     */
+    public List<String> suggestSearchTerms(String prefix, int limit) {
+        return videoSearchIndex.suggest(prefix, Math.max(1, Math.min(limit, 20)));
+    }
+    
+    /**
+     * Obtener videos del usuario actual con paginación por cursor
+     */
+    public CursorPage<VideoResponse> getUserVideos(String cursor, int size, boolean includeTotal,
+                                                   VideoFieldSelection fields) {
+        String currentUserId = SecurityUtils.getCurrentUserId();
+        Long total = includeTotal ? videoRepository.countByUploadedBy(currentUserId) : null;
+        return findByCursor(Criteria.where("uploadedBy").is(currentUserId), cursor, size, total, fields);
+    }
+    
+    /**
+     * Obtener videos públicos con paginación por cursor. El total es un conteo exacto (no
+     * estimatedDocumentCount, que incluiría los privados) y recorre todas las entradas públicas
+     * del índice, así que solo se calcula si se pide.
+     */
+    public CursorPage<VideoResponse> getPublicVideos(String cursor, int size, boolean includeTotal,
+                                                     VideoFieldSelection fields) {
+        // Conteo exacto de los videos públicos resuelto sobre el índice (is_public, created_at, _id)
+        Long total = includeTotal ? videoRepository.countByIsPublicTrue() : null;
+        return findByCursor(Criteria.where("isPublic").is(true), cursor, size, total, fields);
+    }
+    
+    /**
+     * Buscar videos por título con paginación por cursor
+     */
+    public CursorPage<VideoResponse> searchVideosByTitle(String title, String cursor, int size,
+                                                         VideoFieldSelection fields) {
+        Criteria filter = Criteria.where("isPublic").is(true)
+                .and("title").regex(Pattern.quote(title), "i");
+        return findByCursor(filter, cursor, size, null, fields);
+    }
+    
+    /**
+     * Paginación keyset ordenada por (created_at, _id) descendente. El cursor codifica la última
+     * posición devuelta, así cada página es un rango sobre el índice y no un skip.
+     */
+    private CursorPage<VideoResponse> findByCursor(Criteria filter, String cursor, int size, Long total,
+                                                   VideoFieldSelection fields) {
+        int limit = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        // createdAt e id forman el cursor: se proyectan siempre
+        Query query = project(Query.query(filter), fields, "createdAt", "id")
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "id"))
+                .limit(limit + 1);
+        
+        if (cursor != null && !cursor.isBlank()) {
+            VideoCursor position = VideoCursor.decode(cursor);
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("createdAt").lt(position.createdAt()),
+                    Criteria.where("createdAt").is(position.createdAt()).and("id").lt(position.id())));
+        }
+        
+        List<Video> videos = mongoTemplate.find(query, Video.class);
+        boolean hasMore = videos.size() > limit;
+        if (hasMore) {
+            videos = videos.subList(0, limit);
+        }
+        
+        String nextCursor = null;
+        if (hasMore) {
+            Video last = videos.get(videos.size() - 1);
+            nextCursor = new VideoCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        
+        return CursorPage.<VideoResponse>builder()
+                .content(videos.stream().map(this::mapToVideoResponse).toList())
+                .size(limit)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .total(total)
+                .build();
+    }
+    
+    /**
+     * Página de videos leyendo de MongoDB solo los campos seleccionados
+     */
+    private Page<Video> findPage(Criteria filter, Pageable pageable, VideoFieldSelection fields) {
+        Query query = project(Query.query(filter), fields).with(pageable);
+        List<Video> content = mongoTemplate.find(query, Video.class);
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> mongoTemplate.count(Query.query(filter), Video.class));
+    }
+    
+    /**
+     * Añadir la proyección de los campos seleccionados (y los requeridos internamente) a la consulta
+     */
+    private Query project(Query query, VideoFieldSelection fields, String... required) {
+        if (fields != null) {
+            query.fields().include(fields.entityFields(required));
+        }
+        return query;
     }
     
     /**
@@ -183,6 +469,10 @@ public class VideoService {
             // Marcar como eliminado
             video.setStatus(Video.VideoStatus.DELETED);
             videoRepository.save(video);
+            videoNearCache.invalidate(videoId);
+            dataKeyCache.invalidate(videoId);
+            videoSearchIndex.remove(videoId);
+            videoLeaderboard.remove(videoId);
             
             log.info("Video deleted successfully: {}", videoId);
             
@@ -212,6 +502,11 @@ public class VideoService {
         video.setUpdatedAt(LocalDateTime.now());
         
         video = videoRepository.save(video);
+        videoNearCache.invalidate(videoId);
+        videoSearchIndex.index(video);
+        if (!video.isPublic()) {
+            videoLeaderboard.remove(videoId);
+        }
         
         return mapToVideoResponse(video);
     }
@@ -219,13 +514,12 @@ public class VideoService {
     /**
      * Incrementar contador de vistas
      */
-    @Transactional
     public void incrementViewCount(String videoId) {
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + videoId));
+        if (!videoRepository.existsById(videoId)) {
+            throw new ResourceNotFoundException("Video not found with id: " + videoId);
+        }
         
-        video.setViewCount(video.getViewCount() + 1);
-        videoRepository.save(video);
+        viewCountService.recordView(videoId);
     }
     
     
@@ -258,4 +552,28 @@ public class VideoService {
                 .streamUrl("/api/videos/" + video.getId() + "/stream")
                 .build();
     }
+    
+    /**
+     * Posición de la paginación por cursor: última (created_at, _id) devuelta
+     */
+    private record VideoCursor(LocalDateTime createdAt, String id) {
+        
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static VideoCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                if (separator <= 0 || separator == raw.length() - 1) {
+                    throw new ValidationException("Invalid cursor");
+                }
+                return new VideoCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new ValidationException("Invalid cursor");
+            }
+        }
+    }
 }
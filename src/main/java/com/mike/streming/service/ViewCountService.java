@@ -0,0 +1,147 @@
+package com.mike.streming.service;
+
+import com.mike.streming.model.Video;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servicio de conteo de vistas. Las vistas se acumulan en contadores en memoria
+ * (un LongAdder por video) y se vuelcan periódicamente a MongoDB con un único
+ * bulkWrite de operaciones $inc sobre view_count.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ViewCountService {
+
+    private final MongoTemplate mongoTemplate;
+    private final VideoLeaderboard videoLeaderboard;
+
+    private final Map<String, LongAdder> pendingViews = new ConcurrentHashMap<>();
+    private final Map<String, Long> playbackSessions = new ConcurrentHashMap<>();
+
+    @Value("${streaming.view-count.session-window-ms:1800000}")
+    private long sessionWindowMs;
+
+    /**
+     * Registrar una vista explícita
+     */
+    public void recordView(String videoId) {
+        LongAdder adder = pendingViews.computeIfAbsent(videoId, id -> new LongAdder());
+        adder.increment();
+        if (pendingViews.get(videoId) != adder) {
+            // El contador se podó entre obtenerlo e incrementarlo: pasar la vista al vigente
+            rescue(videoId, adder);
+        }
+        videoLeaderboard.recordView(videoId);
+    }
+
+    /**
+     * Registrar una petición de reproducción. Solo cuenta como vista la primera petición
+     * de una sesión (mismo video y mismo espectador sin pausas mayores a la ventana de sesión),
+     * no cada Range request. Devuelve true si se contó una vista.
+     */
+    public boolean recordPlayback(String videoId, String viewerKey) {
+        long now = System.currentTimeMillis();
+        Long lastSeen = playbackSessions.put(videoId + ':' + viewerKey, now);
+
+        if (lastSeen == null || now - lastSeen > sessionWindowMs) {
+            recordView(videoId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Vistas pendientes de volcar para un video
+     */
+    public long getPendingViews(String videoId) {
+        LongAdder adder = pendingViews.get(videoId);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    /**
+     * Volcar los contadores acumulados a MongoDB
+     */
+    @Scheduled(fixedDelayString = "${streaming.view-count.flush-interval-ms:5000}")
+    public void flush() {
+        Map<String, Long> batch = new HashMap<>();
+        pendingViews.forEach((videoId, adder) -> {
+            long views = adder.sumThenReset();
+            if (views > 0) {
+                batch.put(videoId, views);
+            }
+        });
+        pruneIdleCounters(batch);
+        expireSessions();
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Video.class);
+            batch.forEach((videoId, views) -> operations.updateOne(
+                    Query.query(Criteria.where("_id").is(videoId)),
+                    new Update().inc("view_count", views)));
+            operations.execute();
+
+            log.debug("Flushed view counts for {} videos", batch.size());
+        } catch (Exception e) {
+            log.error("Error flushing view counts, retrying on next flush: {}", e.getMessage());
+            batch.forEach((videoId, views) ->
+                    pendingViews.computeIfAbsent(videoId, id -> new LongAdder()).add(views));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Eliminar contadores sin actividad para que el mapa no crezca indefinidamente.
+     * Solo se elimina el mismo contador que se comprobó, y lo que se le sumara entre la
+     * comprobación y la eliminación se rescata.
+     */
+    private void pruneIdleCounters(Map<String, Long> batch) {
+        pendingViews.forEach((videoId, adder) -> {
+            if (!batch.containsKey(videoId) && adder.sum() == 0 && pendingViews.remove(videoId, adder)) {
+                rescue(videoId, adder);
+            }
+        });
+    }
+
+    /**
+     * Pasar las vistas de un contador que ya no está en el mapa al contador vigente.
+     * sumThenReset vacía cada celda de forma atómica, así que ninguna vista se cuenta dos veces.
+     */
+    private void rescue(String videoId, LongAdder orphan) {
+        long views = orphan.sumThenReset();
+        if (views > 0) {
+            pendingViews.computeIfAbsent(videoId, id -> new LongAdder()).add(views);
+        }
+    }
+
+    /**
+     * Eliminar sesiones de reproducción expiradas
+     */
+    private void expireSessions() {
+        long cutoff = System.currentTimeMillis() - sessionWindowMs;
+        playbackSessions.values().removeIf(lastSeen -> lastSeen < cutoff);
+    }
+}
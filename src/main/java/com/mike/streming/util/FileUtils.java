@@ -33,10 +33,30 @@ public class FileUtils {
             return false;
         }
         
-        String contentType = file.getContentType();
+        return isAllowedVideoType(file.getContentType());
+    }
+    
+    /**
+     * Validar tipo de contenido de video
+     */
+    public static boolean isAllowedVideoType(String contentType) {
         return contentType != null && ALLOWED_VIDEO_TYPES.contains(contentType.toLowerCase());
     }
     
+    /**
+     * Tamaño máximo permitido para un archivo de video
+     */
+    public static long getMaxFileSize() {
+        return MAX_FILE_SIZE;
+    }
+    
+    /**
+     * Tipos de video permitidos
+     */
+    public static List<String> getAllowedVideoTypes() {
+        return ALLOWED_VIDEO_TYPES;
+    }
+    
     /**
      * Validar tamaño de archivo
      */
@@ -0,0 +1,285 @@
+package com.mike.streming.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parser incremental de cuerpos multipart/form-data. Recorre las partes en orden y expone el
+ * contenido de cada una como un InputStream que se lee directamente del cuerpo de la petición,
+ * sin copiarlo a disco ni a memoria: solo mantiene un buffer de tamaño fijo.
+ *
+ * Cada parte debe consumirse (o se descarta al pedir la siguiente) antes de avanzar.
+ */
+public class MultipartStreamParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final InputStream body;
+    private final byte[] delimiter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int position;
+    private int limit;
+    private boolean eof;
+    private boolean finished;
+    private PartInputStream current;
+
+    public MultipartStreamParser(InputStream body, String boundary) {
+        this.body = body;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        if (delimiter.length > BUFFER_SIZE / 4) {
+            throw new IllegalArgumentException("Multipart boundary is too long");
+        }
+        // El primer delimitador no va precedido de CRLF: se añade para tratarlos todos igual
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        limit = 2;
+    }
+
+    /**
+     * Extraer el boundary de la cabecera Content-Type, o null si no es multipart/form-data
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("boundary")) {
+                String boundary = unquote(pair[1].trim());
+                return boundary.isEmpty() || boundary.length() > 70 ? null : boundary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Avanzar a la siguiente parte, descartando lo que quede de la actual.
+     * Devuelve null al llegar al delimitador de cierre.
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (current != null) {
+            current.skipRemaining();
+        } else {
+            skipPreamble();
+        }
+
+        // Tras el delimitador: "--" marca el final del cuerpo, CRLF el inicio de otra parte
+        ensure(2);
+        if (limit - position >= 2 && buffer[position] == '-' && buffer[position + 1] == '-') {
+            finished = true;
+            current = null;
+            return null;
+        }
+        skipLinearWhitespace();
+        expect(CRLF);
+
+        Map<String, String> headers = readHeaders();
+        String disposition = headers.getOrDefault("content-disposition", "");
+        current = new PartInputStream();
+        return new Part(
+                parameter(disposition, "name"),
+                parameter(disposition, "filename"),
+                headers.get("content-type"),
+                current
+        );
+    }
+
+    private void skipPreamble() throws IOException {
+        PartInputStream preamble = new PartInputStream();
+        preamble.skipRemaining();
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        int total = 0;
+        while (true) {
+            String line = readLine();
+            total += line.length() + 2;
+            if (total > MAX_HEADER_SIZE) {
+                throw new IOException("Multipart part headers are too large");
+            }
+            if (line.isEmpty()) {
+                return headers;
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    private String readLine() throws IOException {
+        while (true) {
+            int end = indexOf(CRLF, position, limit);
+            if (end >= 0) {
+                String line = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+                position = end + CRLF.length;
+                return line;
+            }
+            if (limit - position >= MAX_HEADER_SIZE) {
+                throw new IOException("Multipart part headers are too large");
+            }
+            if (!fill()) {
+                throw new IOException("Unexpected end of multipart body");
+            }
+        }
+    }
+
+    private void skipLinearWhitespace() throws IOException {
+        while (ensure(1) && (buffer[position] == ' ' || buffer[position] == '\t')) {
+            position++;
+        }
+    }
+
+    private void expect(byte[] bytes) throws IOException {
+        if (!ensure(bytes.length) || indexOf(bytes, position, position + bytes.length) != position) {
+            throw new IOException("Malformed multipart body");
+        }
+        position += bytes.length;
+    }
+
+    /**
+     * Asegurar que hay al menos n bytes en el buffer; false si el cuerpo terminó antes
+     */
+    private boolean ensure(int n) throws IOException {
+        while (limit - position < n) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compactar el buffer y leer más bytes del cuerpo; false si ya no hay más
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        int read = body.read(buffer, limit, buffer.length - limit);
+        if (read == -1) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private int indexOf(byte[] pattern, int from, int to) {
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String parameter(String header, String name) {
+        for (String parameter : header.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase(name)) {
+                return unquote(pair[1].trim());
+            }
+        }
+        return null;
+    }
+
+    private static String unquote(String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                ? value.substring(1, value.length() - 1)
+                : value;
+    }
+
+    /**
+     * Parte del cuerpo: nombre del campo, nombre de archivo (solo en archivos), tipo y contenido
+     */
+    public record Part(String name, String filename, String contentType, InputStream content) {
+
+        public boolean isFile() {
+            return filename != null;
+        }
+
+        /**
+         * Leer el contenido de un campo de texto, con un límite de tamaño
+         */
+        public String readValue(int maxLength) throws IOException {
+            byte[] value = content.readNBytes(maxLength + 1);
+            if (value.length > maxLength) {
+                throw new IOException("Multipart field " + name + " is too large");
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Contenido de la parte actual: entrega bytes del buffer hasta encontrar el siguiente
+     * delimitador. Los últimos delimiter.length - 1 bytes se retienen hasta saber si son
+     * el inicio del delimitador.
+     */
+    private class PartInputStream extends InputStream {
+
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done || current != this && current != null) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                int found = indexOf(delimiter, position, limit);
+                int available = found >= 0 ? found - position : limit - position - (delimiter.length - 1);
+                if (found == position) {
+                    position += delimiter.length;
+                    done = true;
+                    return -1;
+                }
+                if (available > 0) {
+                    int toCopy = Math.min(len, available);
+                    System.arraycopy(buffer, position, b, off, toCopy);
+                    position += toCopy;
+                    return toCopy;
+                }
+                if (!fill()) {
+                    throw new IOException("Unexpected end of multipart body");
+                }
+            }
+        }
+
+        void skipRemaining() throws IOException {
+            byte[] discard = new byte[8192];
+            while (read(discard, 0, discard.length) != -1) {
+                // descartar
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.ChunkCacheConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para la caché off-heap de chunks
+ */
+@DisplayName("ChunkCache Tests")
+class ChunkCacheTest {
+
+    private static final int CHUNK = 256 * 1024;
+
+    private ChunkCache chunkCache;
+
+    @BeforeEach
+    void setUp() {
+        ChunkCacheConfig config = new ChunkCacheConfig();
+        config.setMaxSize(DataSize.ofMegabytes(4));
+        chunkCache = new ChunkCache(config);
+    }
+
+    @Test
+    @DisplayName("Debería devolver el contenido guardado y contar aciertos y fallos")
+    void shouldReturnStoredChunk() {
+        // Given
+        byte[] data = chunk(7);
+
+        // When
+        ByteBuffer miss = chunkCache.get("file", 0);
+        chunkCache.put("file", 0, data);
+        ByteBuffer hit = chunkCache.get("file", 0);
+
+        // Then
+        assertNull(miss, "El primer acceso debe ser un fallo");
+        assertNotNull(hit, "El segundo acceso debe ser un acierto");
+        assertTrue(hit.isDirect(), "Los datos deben estar en memoria directa");
+        byte[] read = new byte[hit.remaining()];
+        hit.get(read);
+        assertArrayEquals(data, read, "El contenido debe ser el mismo");
+        assertEquals(1, chunkCache.getHitCount());
+        assertEquals(1, chunkCache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("No debería superar el presupuesto de bytes")
+    void shouldRespectByteBudget() {
+        // When
+        for (int i = 0; i < 40; i++) {
+            chunkCache.put("file", i, chunk(i));
+        }
+
+        // Then
+        assertTrue(chunkCache.getSizeBytes() <= DataSize.ofMegabytes(4).toBytes(),
+                "La caché no debe superar su presupuesto");
+    }
+
+    @Test
+    @DisplayName("Un recorrido de chunks fríos no debería desplazar a los chunks populares")
+    void shouldProtectHotChunksFromScans() {
+        // Given
+        for (int i = 0; i < 15; i++) {
+            chunkCache.put("hot", i, chunk(i));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 15; i++) {
+                chunkCache.get("hot", i);
+            }
+        }
+
+        // When
+        for (int i = 0; i < 30; i++) {
+            chunkCache.put("scan", i, chunk(i));
+        }
+
+        // Then
+        for (int i = 0; i < 15; i++) {
+            assertTrue(chunkCache.contains("hot", i), "El chunk popular " + i + " debe seguir en caché");
+        }
+    }
+
+    @Test
+    @DisplayName("Un chunk frecuente debería desplazar a uno que nunca se leyó")
+    void shouldAdmitFrequentChunkOverColdOne() {
+        // Given
+        for (int i = 0; i < 15; i++) {
+            chunkCache.put("cold", i, chunk(i));
+        }
+        for (int i = 0; i < 3; i++) {
+            chunkCache.get("popular", 0);
+        }
+
+        // When
+        chunkCache.put("popular", 0, chunk(99));
+
+        // Then
+        assertTrue(chunkCache.contains("popular", 0), "El chunk frecuente debe ser admitido");
+        assertEquals(1, chunkCache.getEvictionCount(), "Debe desalojar un chunk frío");
+    }
+
+    @Test
+    @DisplayName("Solo los chunks admitidos en el segmento principal deberían ocupar memoria directa")
+    void shouldKeepWindowChunksOnHeap() {
+        // Given: ventana de 2MB, donde cabe un chunk
+        ChunkCacheConfig config = new ChunkCacheConfig();
+        config.setMaxSize(DataSize.ofMegabytes(4));
+        config.setWindowPercent(50);
+        ChunkCache cache = new ChunkCache(config);
+        byte[] data = chunk(3);
+
+        // When
+        cache.put("file", 0, data);
+        ByteBuffer cached = cache.get("file", 0);
+
+        // Then
+        assertNotNull(cached);
+        assertFalse(cached.isDirect(), "Un chunk en la ventana no debe reservar memoria directa");
+        byte[] read = new byte[cached.remaining()];
+        cached.get(read);
+        assertArrayEquals(data, read);
+    }
+
+    @Test
+    @DisplayName("Debería invalidar todos los chunks de un archivo")
+    void shouldInvalidateFile() {
+        // Given
+        chunkCache.put("file", 0, chunk(1));
+        chunkCache.put("file", 1, chunk(2));
+        chunkCache.put("other", 0, chunk(3));
+
+        // When
+        chunkCache.invalidateFile("file");
+
+        // Then
+        assertFalse(chunkCache.contains("file", 0));
+        assertFalse(chunkCache.contains("file", 1));
+        assertTrue(chunkCache.contains("other", 0));
+    }
+
+    private byte[] chunk(int seed) {
+        byte[] data = new byte[CHUNK];
+        Arrays.fill(data, (byte) seed);
+        return data;
+    }
+}
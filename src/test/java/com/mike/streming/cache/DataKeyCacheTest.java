@@ -0,0 +1,156 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.KeyCacheConfig;
+import com.mike.streming.encryption.VideoEncryptionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para la caché de claves de datos desenvueltas
+ */
+@DisplayName("DataKeyCache Tests")
+class DataKeyCacheTest {
+
+    private VideoEncryptionService videoEncryptionService;
+    private KeyCacheConfig config;
+    private List<byte[]> unwrapped;
+
+    @BeforeEach
+    void setUp() {
+        videoEncryptionService = mock(VideoEncryptionService.class);
+        config = new KeyCacheConfig();
+        unwrapped = new ArrayList<>();
+
+        // Cada desenvolvimiento devuelve un array nuevo, que se guarda para comprobar su borrado
+        when(videoEncryptionService.decryptVideoKeyMaterial(anyString(), any())).thenAnswer(invocation -> {
+            byte[] material = new byte[32];
+            Arrays.fill(material, (byte) (unwrapped.size() + 1));
+            unwrapped.add(material);
+            return material;
+        });
+    }
+
+    @Test
+    @DisplayName("Debería desenvolver la clave una sola vez por video")
+    void shouldUnwrapOncePerVideo() {
+        // Given
+        DataKeyCache cache = new DataKeyCache(videoEncryptionService, config);
+
+        // When
+        SecretKey first = cache.get("video1", "wrapped1", "v1");
+        SecretKey second = cache.get("video1", "wrapped1", "v1");
+
+        // Then
+        verify(videoEncryptionService, times(1)).decryptVideoKeyMaterial("wrapped1", "v1");
+        assertArrayEquals(first.getEncoded(), second.getEncoded());
+    }
+
+    @Test
+    @DisplayName("Debería sobrescribir con ceros el material de clave al invalidar")
+    void shouldZeroMaterialOnInvalidate() {
+        // Given
+        DataKeyCache cache = new DataKeyCache(videoEncryptionService, config);
+        SecretKey key = cache.get("video1", "wrapped1", "v1");
+
+        // When
+        cache.invalidate("video1");
+
+        // Then
+        assertZeroed(unwrapped.get(0));
+        assertFalse(isZeroed(key.getEncoded()), "La clave ya entregada es una copia y sigue siendo válida");
+        cache.get("video1", "wrapped1", "v1");
+        verify(videoEncryptionService, times(2)).decryptVideoKeyMaterial("wrapped1", "v1");
+    }
+
+    @Test
+    @DisplayName("Debería descartar y borrar la clave anterior cuando la clave envuelta cambia")
+    void shouldReplaceKeyAfterRotation() {
+        // Given
+        DataKeyCache cache = new DataKeyCache(videoEncryptionService, config);
+        cache.get("video1", "wrapped1", "v1");
+
+        // When
+        SecretKey rotated = cache.get("video1", "wrapped2", "v2");
+
+        // Then
+        assertZeroed(unwrapped.get(0));
+        assertEquals(2, rotated.getEncoded()[0]);
+    }
+
+    @Test
+    @DisplayName("Debería borrar el material de las claves expiradas")
+    void shouldZeroMaterialOnExpiry() throws Exception {
+        // Given
+        config.setTtl(Duration.ofMillis(1));
+        DataKeyCache cache = new DataKeyCache(videoEncryptionService, config);
+        cache.get("video1", "wrapped1", "v1");
+
+        // When
+        Thread.sleep(5);
+        cache.expire();
+
+        // Then
+        assertZeroed(unwrapped.get(0));
+    }
+
+    @Test
+    @DisplayName("Debería borrar el material de las claves expulsadas por tamaño")
+    void shouldZeroMaterialOnEviction() {
+        // Given
+        config.setMaxEntries(2);
+        DataKeyCache cache = new DataKeyCache(videoEncryptionService, config);
+        cache.get("video1", "wrapped1", "v1");
+        cache.get("video2", "wrapped2", "v1");
+
+        // When
+        cache.get("video3", "wrapped3", "v1");
+
+        // Then: se expulsa al menos una de las anteriores y su material queda a cero
+        long zeroed = unwrapped.subList(0, 2).stream().filter(DataKeyCacheTest::isZeroed).count();
+        assertTrue(zeroed >= 1);
+        assertFalse(isZeroed(unwrapped.get(2)));
+    }
+
+    @Test
+    @DisplayName("No debería retener el material de clave con la caché deshabilitada")
+    void shouldNotRetainMaterialWhenDisabled() {
+        // Given
+        config.setEnabled(false);
+        DataKeyCache cache = new DataKeyCache(videoEncryptionService, config);
+
+        // When
+        SecretKey key = cache.get("video1", "wrapped1", "v1");
+
+        // Then
+        assertZeroed(unwrapped.get(0));
+        assertFalse(isZeroed(key.getEncoded()));
+    }
+
+    private static void assertZeroed(byte[] material) {
+        assertTrue(isZeroed(material), "El material de clave debe quedar a cero");
+    }
+
+    private static boolean isZeroed(byte[] material) {
+        for (byte b : material) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
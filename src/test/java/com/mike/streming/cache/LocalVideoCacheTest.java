@@ -0,0 +1,126 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.DiskCacheConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para la caché de videos en disco local
+ */
+@DisplayName("LocalVideoCache Tests")
+class LocalVideoCacheTest {
+
+    private static final byte[] CONTENT = "contenido del video".getBytes();
+
+    @TempDir
+    Path directory;
+
+    private LocalVideoCache cache;
+
+    @BeforeEach
+    void setUp() {
+        DiskCacheConfig config = new DiskCacheConfig();
+        config.setDirectory(directory.toString());
+        config.setPromotionThreshold(1);
+        cache = new LocalVideoCache(config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    @DisplayName("Debería copiar a disco un archivo que supera el umbral")
+    void shouldPromoteHotFile() throws Exception {
+        // Given
+        cache.init();
+        GridFsResource resource = resource();
+        when(resource.getInputStream()).thenReturn(new ByteArrayInputStream(CONTENT));
+
+        // When
+        cache.access("file1", "viewer", resource);
+        awaitCopies();
+        Optional<LocalVideoCache.LocalCopy> copy = cache.access("file1", "viewer", resource);
+
+        // Then
+        assertTrue(copy.isPresent(), "El archivo debe estar en disco");
+        try (LocalVideoCache.LocalCopy local = copy.get()) {
+            assertArrayEquals(CONTENT, Files.readAllBytes(local.path()));
+        }
+        assertEquals(CONTENT.length, cache.getUsedBytes());
+    }
+
+    @Test
+    @DisplayName("No debería indexar una copia de un archivo invalidado mientras se copiaba")
+    void shouldDiscardCopyInvalidatedDuringPromotion() throws Exception {
+        // Given: el archivo se invalida mientras se lee de GridFS
+        cache.init();
+        GridFsResource resource = resource();
+        when(resource.getInputStream()).thenAnswer(invocation -> {
+            cache.invalidate("file1");
+            return new ByteArrayInputStream(CONTENT);
+        });
+
+        // When
+        cache.access("file1", "viewer", resource);
+        awaitCopies();
+
+        // Then
+        assertTrue(cache.access("file1", "viewer", resource).isEmpty(), "La copia obsoleta no debe servirse");
+        assertEquals(0, cache.getUsedBytes(), "La copia descartada no debe ocupar cuota");
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count(), "La copia descartada debe borrarse del disco");
+        }
+    }
+
+    @Test
+    @DisplayName("Debería conservar la copia de mayor generación al arrancar")
+    void shouldKeepNewestGenerationOnInit() throws Exception {
+        // Given: dos copias del mismo archivo, listadas en cualquier orden
+        Path older = Files.write(directory.resolve("file1~200.video"), new byte[10]);
+        Path newer = Files.write(directory.resolve("file1~1000.video"), new byte[20]);
+        Files.write(directory.resolve("file1~30.video"), new byte[30]);
+
+        // When
+        cache.init();
+
+        // Then
+        assertTrue(Files.exists(newer), "La copia más reciente debe conservarse");
+        assertFalse(Files.exists(older), "Las copias anteriores deben borrarse");
+        assertEquals(20, cache.getUsedBytes());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private GridFsResource resource() throws Exception {
+        GridFsResource resource = mock(GridFsResource.class);
+        when(resource.contentLength()).thenReturn((long) CONTENT.length);
+        return resource;
+    }
+
+    /**
+     * Esperar a que terminen las copias en segundo plano
+     */
+    private void awaitCopies() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (cache.getPendingCopies() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, cache.getPendingCopies(), "La copia debe terminar");
+    }
+}
@@ -0,0 +1,92 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.TokenCacheConfig;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para la caché de claims de JWT verificados
+ */
+@DisplayName("TokenClaimsCache Tests")
+class TokenClaimsCacheTest {
+
+    private TokenCacheConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new TokenCacheConfig();
+        config.setTtl(Duration.ofMinutes(5));
+    }
+
+    @Test
+    @DisplayName("Debería devolver los claims de un token ya verificado")
+    void shouldReturnCachedClaims() {
+        // Given
+        TokenClaimsCache cache = new TokenClaimsCache(config);
+        Claims claims = expiringIn(60_000);
+
+        // When
+        cache.put("token1", claims);
+
+        // Then
+        assertSame(claims, cache.get("token1"));
+        assertNull(cache.get("token2"), "Otro token no comparte entrada");
+    }
+
+    @Test
+    @DisplayName("No debería servir los claims después del exp del token aunque el TTL no haya vencido")
+    void shouldExpireAtTokenExpiration() throws Exception {
+        // Given: el token expira mucho antes que el TTL de la caché
+        TokenClaimsCache cache = new TokenClaimsCache(config);
+        cache.put("token1", expiringIn(50));
+
+        // When
+        Thread.sleep(100);
+
+        // Then
+        assertNull(cache.get("token1"));
+    }
+
+    @Test
+    @DisplayName("Debería expirar con el TTL configurado si el token dura más")
+    void shouldExpireAtConfiguredTtl() throws Exception {
+        // Given
+        config.setTtl(Duration.ofMillis(50));
+        TokenClaimsCache cache = new TokenClaimsCache(config);
+        cache.put("token1", expiringIn(60_000));
+
+        // When
+        Thread.sleep(100);
+
+        // Then
+        assertNull(cache.get("token1"));
+    }
+
+    @Test
+    @DisplayName("No debería guardar nada con la caché deshabilitada")
+    void shouldBypassWhenDisabled() {
+        // Given
+        config.setEnabled(false);
+        TokenClaimsCache cache = new TokenClaimsCache(config);
+
+        // When
+        cache.put("token1", expiringIn(60_000));
+
+        // Then
+        assertNull(cache.get("token1"));
+    }
+
+    private static Claims expiringIn(long millis) {
+        return Jwts.claims()
+                .setSubject("user1")
+                .setExpiration(new Date(System.currentTimeMillis() + millis));
+    }
+}
@@ -0,0 +1,132 @@
+package com.mike.streming.cache;
+
+import com.mike.streming.config.VideoCacheConfig;
+import com.mike.streming.exception.ResourceNotFoundException;
+import com.mike.streming.model.Video;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para la near-cache de videos y su invalidación entre nodos
+ */
+@DisplayName("VideoNearCache Tests")
+class VideoNearCacheTest {
+
+    private static final String COLLECTION = "cache_invalidations";
+
+    private MongoTemplate mongoTemplate;
+    private VideoCacheConfig config;
+    private VideoNearCache cache;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findOne(any(Query.class), eq(Video.class)))
+                .thenAnswer(invocation -> Video.builder().id("video1").gridfsFileId("file1").build());
+
+        config = new VideoCacheConfig();
+        config.setClusterInvalidation(true);
+        cache = new VideoNearCache(mongoTemplate, config);
+    }
+
+    @Test
+    @DisplayName("Debería servir desde memoria las lecturas repetidas")
+    void shouldServeRepeatedReadsFromMemory() {
+        // When
+        cache.get("video1");
+        cache.get("video1");
+
+        // Then
+        verify(mongoTemplate, times(1)).findOne(any(Query.class), eq(Video.class));
+    }
+
+    @Test
+    @DisplayName("Debería recargar el video tras invalidarlo y publicar la invalidación")
+    void shouldReloadAfterInvalidateAndPublish() {
+        // Given
+        cache.get("video1");
+
+        // When
+        cache.invalidate("video1");
+        cache.get("video1");
+
+        // Then
+        verify(mongoTemplate, times(2)).findOne(any(Query.class), eq(Video.class));
+        ArgumentCaptor<Document> published = ArgumentCaptor.forClass(Document.class);
+        verify(mongoTemplate).insert(published.capture(), eq(COLLECTION));
+        assertEquals("video1", published.getValue().getString("videoId"));
+    }
+
+    @Test
+    @DisplayName("No debería publicar invalidaciones si la invalidación en cluster está deshabilitada")
+    void shouldNotPublishWithoutClusterInvalidation() {
+        // Given
+        config.setClusterInvalidation(false);
+
+        // When
+        cache.invalidate("video1");
+
+        // Then
+        verify(mongoTemplate, never()).insert(any(Document.class), any(String.class));
+    }
+
+    @Test
+    @DisplayName("Debería aplicar las invalidaciones de otros nodos e ignorar las propias")
+    void shouldApplyInvalidationsFromOtherNodes() {
+        // Given
+        String nodeId = (String) ReflectionTestUtils.getField(cache, "nodeId");
+        cache.get("video1");
+        cache.get("video2");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(COLLECTION))).thenReturn(List.of(
+                new Document("videoId", "video1").append("node", "otro-nodo"),
+                new Document("videoId", "video2").append("node", nodeId)));
+
+        // When
+        cache.pollInvalidations();
+        cache.get("video1");
+        cache.get("video2");
+
+        // Then: solo video1 se vuelve a leer
+        verify(mongoTemplate, times(3)).findOne(any(Query.class), eq(Video.class));
+    }
+
+    @Test
+    @DisplayName("Debería leer solo invalidaciones de videos, no las revocaciones de tokens")
+    void shouldPollOnlyVideoInvalidations() {
+        // When
+        cache.pollInvalidations();
+
+        // Then
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Document.class), eq(COLLECTION));
+        Document videoId = query.getValue().getQueryObject().get("videoId", Document.class);
+        assertEquals(true, videoId.get("$exists"));
+    }
+
+    @Test
+    @DisplayName("Debería lanzar ResourceNotFoundException si el video no existe")
+    void shouldThrowWhenVideoDoesNotExist() {
+        // Given
+        when(mongoTemplate.findOne(any(Query.class), eq(Video.class))).thenReturn(null);
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class, () -> cache.get("missing"));
+    }
+}
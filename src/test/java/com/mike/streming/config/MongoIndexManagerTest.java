@@ -0,0 +1,128 @@
+package com.mike.streming.config;
+
+import com.mike.streming.model.Video;
+import com.mike.streming.repository.VideoRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para los índices declarados en MongoIndexManager
+ */
+@DisplayName("MongoIndexManager Tests")
+class MongoIndexManagerTest {
+
+    private static final String REPOSITORY_PREFIX = "VideoRepository.";
+
+    // Consultas que ningún índice puede acotar (regex sin prefijo fijo sobre el título)
+    private static final Set<String> UNINDEXABLE = Set.of(REPOSITORY_PREFIX + "findByTitleContainingIgnoreCase");
+
+    @Test
+    @DisplayName("Cada consulta declarada debería estar cubierta por un índice declarado")
+    void shouldCoverEveryDeclaredQuery() {
+        // Given
+        List<String> uncovered = new ArrayList<>();
+
+        // When
+        for (MongoIndexManager.QueryShape query : MongoIndexManager.QUERIES) {
+            boolean covered = MongoIndexManager.INDEXES.stream()
+                    .filter(index -> index.collection().equals(query.collection()))
+                    .anyMatch(index -> query.isCoveredBy(new ArrayList<>(index.fields().keySet())));
+            if (!covered) {
+                uncovered.add(query.name());
+            }
+        }
+
+        // Then
+        assertTrue(uncovered.isEmpty(), "Queries without index: " + uncovered);
+    }
+
+    @Test
+    @DisplayName("Debería exigir los campos de igualdad como prefijo seguidos del campo de orden")
+    void shouldRequireEqualityPrefixThenSortField() {
+        // Given
+        MongoIndexManager.QueryShape query = MongoIndexManager.QueryShape.of(
+                Object.class, "query", "created_at", "is_public");
+
+        // Then
+        assertTrue(query.isCoveredBy(List.of("is_public", "created_at")));
+        assertFalse(query.isCoveredBy(List.of("is_public", "view_count")));
+        assertFalse(query.isCoveredBy(List.of("created_at", "is_public")));
+        assertFalse(query.isCoveredBy(List.of("is_public")));
+    }
+
+    @Test
+    @DisplayName("Cada consulta de VideoRepository debería tener una forma declarada que coincida con su filtro")
+    void shouldMatchDeclaredShapesWithVideoRepository() {
+        // Given
+        Map<String, MongoIndexManager.QueryShape> shapes = MongoIndexManager.QUERIES.stream()
+                .filter(query -> query.name().startsWith(REPOSITORY_PREFIX))
+                .collect(Collectors.toMap(MongoIndexManager.QueryShape::name, Function.identity()));
+        Set<String> methods = new HashSet<>();
+
+        // When / Then
+        for (Method method : VideoRepository.class.getDeclaredMethods()) {
+            String name = REPOSITORY_PREFIX + method.getName();
+            methods.add(name);
+            if (UNINDEXABLE.contains(name)) {
+                continue;
+            }
+            MongoIndexManager.QueryShape shape = shapes.get(name);
+            assertNotNull(shape, "Missing query shape for " + name);
+
+            Set<String> filtered = filteredFields(method);
+            assertTrue(filtered.containsAll(shape.equalityFields()),
+                    name + " filters on " + filtered + " but its shape declares " + shape.equalityFields());
+        }
+        assertTrue(methods.containsAll(shapes.keySet()),
+                "Query shapes without a VideoRepository method: " + shapes.keySet().stream()
+                        .filter(name -> !methods.contains(name)).toList());
+    }
+
+    /**
+     * Campos de MongoDB filtrados por un método del repositorio: los de su @Query o, si es una
+     * consulta derivada, los de las partes de su nombre
+     */
+    private static Set<String> filteredFields(Method method) {
+        Query query = method.getAnnotation(Query.class);
+        List<String> properties = query != null
+                ? new ArrayList<>(Document.parse(query.value().replaceAll("\\?\\d+", "0")).keySet())
+                : new PartTree(method.getName(), Video.class).getParts().stream()
+                        .map(Part::getProperty)
+                        .map(PropertyPath::getSegment)
+                        .toList();
+        return properties.stream().map(MongoIndexManagerTest::fieldName).collect(Collectors.toSet());
+    }
+
+    private static String fieldName(String property) {
+        try {
+            Field field = Video.class.getDeclaredField(property).getAnnotation(Field.class);
+            return field != null ? field.value() : property;
+        } catch (NoSuchFieldException e) {
+            // Las consultas @Query pueden usar ya el nombre del campo en MongoDB
+            return Arrays.stream(Video.class.getDeclaredFields())
+                    .map(declared -> declared.getAnnotation(Field.class))
+                    .filter(field -> field != null && field.value().equals(property))
+                    .findFirst()
+                    .map(Field::value)
+                    .orElseThrow(() -> new AssertionError("Unknown Video property " + property));
+        }
+    }
+}
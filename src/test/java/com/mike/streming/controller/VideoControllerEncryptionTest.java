@@ -71,7 +71,7 @@ class VideoControllerEncryptionTest {
                         .param("encryptVideo", "true")
                         .with(csrf())
                         .contentType(MediaType.MULTIPART_FORM_DATA))
-                .andExpect(status().isCreated())
+                .andExpect(status().isAccepted())
                 .andExpect(jsonPath("$.id").value("video123"))
                 .andExpect(jsonPath("$.title").value("Video de Prueba"))
                 .andExpect(jsonPath("$.description").value("Video de prueba con encriptación"))
@@ -112,7 +112,7 @@ class VideoControllerEncryptionTest {
                         .param("encryptVideo", "false")
                         .with(csrf())
                         .contentType(MediaType.MULTIPART_FORM_DATA))
-                .andExpect(status().isCreated())
+                .andExpect(status().isAccepted())
                 .andExpect(jsonPath("$.id").value("video456"))
                 .andExpect(jsonPath("$.title").value("Video Sin Encriptación"))
                 .andExpect(jsonPath("$.description").value("Video de prueba sin encriptación"))
@@ -240,7 +240,7 @@ class VideoControllerEncryptionTest {
                             .param("encryptVideo", "false")
                             .with(csrf())
                             .contentType(MediaType.MULTIPART_FORM_DATA))
-                    .andExpect(status().isCreated())
+                    .andExpect(status().isAccepted())
                     .andExpect(jsonPath("$.title").value("Video " + formats[i].toUpperCase()));
         }
     }
@@ -10,7 +10,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Base64;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 /**
@@ -26,12 +29,13 @@ class EncryptionServiceTest {
     @InjectMocks
     private EncryptionService encryptionService;
 
+    // Configuración común: no todos los tests la usan
     @BeforeEach
     void setUp() {
-        when(encryptionConfig.getAlgorithm()).thenReturn("AES");
-        when(encryptionConfig.getKeySize()).thenReturn(256);
-        when(encryptionConfig.getTransformation()).thenReturn("AES/CBC/PKCS5Padding");
-        when(encryptionConfig.getMasterKey()).thenReturn("MyMasterKey123456789012345678901234567890");
+        lenient().when(encryptionConfig.getAlgorithm()).thenReturn("AES");
+        lenient().when(encryptionConfig.getKeySize()).thenReturn(256);
+        lenient().when(encryptionConfig.getTransformation()).thenReturn("AES/CBC/PKCS5Padding");
+        lenient().when(encryptionConfig.getMasterKey()).thenReturn("MyMasterKey123456789012345678901234567890");
     }
 
     @Test
@@ -105,6 +109,21 @@ class EncryptionServiceTest {
         assertNotEquals(keyToEncrypt, encryptedKey, "La clave encriptada debe ser diferente a la original");
     }
 
+    @Test
+    @DisplayName("Debería desenvolver el material de una clave sin pasar por Strings")
+    void shouldUnwrapKeyMaterial() {
+        // Given
+        String dataKey = encryptionService.generateEncryptionKey();
+        String wrappedKey = encryptionService.encryptKey(dataKey);
+
+        // When
+        byte[] material = encryptionService.decryptKeyMaterial(wrappedKey, encryptionService.getActiveMasterKeyId());
+
+        // Then
+        assertArrayEquals(Base64.getDecoder().decode(dataKey), material,
+                "El material debe ser la clave de datos decodificada");
+    }
+
     @Test
     @DisplayName("Debería manejar datos vacíos correctamente")
     void shouldHandleEmptyDataCorrectly() {
@@ -1,6 +1,7 @@
 package com.mike.streming.encryption;
 
 import com.mike.streming.config.EncryptionConfig;
+import com.mike.streming.exception.EncryptionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -11,10 +12,14 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 /**
@@ -33,138 +38,100 @@ class VideoEncryptionServiceTest {
     @InjectMocks
     private VideoEncryptionService videoEncryptionService;
 
+    // Configuración común: no todos los tests la usan
     @BeforeEach
     void setUp() {
-        when(encryptionConfig.getTransformation()).thenReturn("AES/CBC/PKCS5Padding");
+        lenient().when(encryptionConfig.getTransformation()).thenReturn("AES/CBC/PKCS5Padding");
     }
 
     @Test
-    @DisplayName("Debería encriptar un video completo correctamente")
-    void shouldEncryptCompleteVideoCorrectly() throws Exception {
-        // Given
-        String videoContent = "Contenido de video de prueba para encriptación";
-        InputStream videoStream = new ByteArrayInputStream(videoContent.getBytes());
-        String encryptionKey = "clave_de_encriptacion_123";
-        
-        EncryptedData mockEncryptedData = EncryptedData.builder()
-                .data("datos_encriptados".getBytes())
-                .key(encryptionKey)
-                .algorithm("AES/CBC/PKCS5Padding")
-                .build();
+    @DisplayName("Debería cifrar en streaming un video grande y recuperar su contenido")
+    void shouldSealLargeVideoInStreaming() throws Exception {
+        // Given: servicios reales con el tamaño de segmento por defecto
+        EncryptionConfig config = new EncryptionConfig();
+        EncryptionService realEncryptionService = new EncryptionService(config);
+        VideoEncryptionService service = new VideoEncryptionService(realEncryptionService, config);
 
-        when(encryptionService.encrypt(videoContent.getBytes(), encryptionKey))
-                .thenReturn(mockEncryptedData);
+        byte[] largeVideoData = new byte[5 * 1024 * 1024 + 100]; // 5MB y un segmento final parcial
+        for (int i = 0; i < largeVideoData.length; i++) {
+            largeVideoData[i] = (byte) (i % 256);
+        }
+        String key = realEncryptionService.generateEncryptionKey();
 
         // When
-        CompletableFuture<EncryptedData> future = videoEncryptionService.encryptVideo(videoStream, encryptionKey);
-        EncryptedData result = future.get(5, TimeUnit.SECONDS);
+        EncryptedVideoStream sealed = service.sealingStream(
+                new ByteArrayInputStream(largeVideoData), key, largeVideoData.length);
+        byte[] ciphertext = sealed.inputStream().readAllBytes();
+        Map<String, Object> metadata = sealed.toMetadata();
 
         // Then
-        assertNotNull(result, "El resultado no debe ser null");
-        assertEquals(encryptionKey, result.getKey(), "La clave debe ser la misma");
-        assertEquals("AES/CBC/PKCS5Padding", result.getAlgorithm(), "El algoritmo debe ser correcto");
-        assertNotNull(result.getData(), "Los datos encriptados no deben ser null");
+        assertEquals(service.sealedLength(sealed.encryptionHeader()), ciphertext.length,
+                "El texto cifrado debe tener la longitud que anuncia la cabecera");
+        try (InputStream in = service.openDecryptedRange(metadata, key, 0, largeVideoData.length - 1,
+                (start, end) -> new ByteArrayInputStream(ciphertext, (int) start, (int) (end - start + 1)))) {
+            assertArrayEquals(largeVideoData, in.readAllBytes(), "El contenido descifrado debe ser el original");
+        }
     }
 
     @Test
-    @DisplayName("Debería desencriptar un video completo correctamente")
-    void shouldDecryptCompleteVideoCorrectly() throws Exception {
+    @DisplayName("Debería cifrar en streaming un video vacío")
+    void shouldSealEmptyVideo() throws Exception {
         // Given
-        String originalContent = "Contenido original del video";
-        String encryptionKey = "clave_de_encriptacion_123";
-        
-        EncryptedData encryptedData = EncryptedData.builder()
-                .data("datos_encriptados".getBytes())
-                .key(encryptionKey)
-                .algorithm("AES/CBC/PKCS5Padding")
-                .build();
-
-        when(encryptionService.decrypt(encryptedData))
-                .thenReturn(originalContent.getBytes());
+        EncryptionConfig config = new EncryptionConfig();
+        EncryptionService realEncryptionService = new EncryptionService(config);
+        VideoEncryptionService service = new VideoEncryptionService(realEncryptionService, config);
+        String key = realEncryptionService.generateEncryptionKey();
 
         // When
-        CompletableFuture<byte[]> future = videoEncryptionService.decryptVideo(encryptedData);
-        byte[] result = future.get(5, TimeUnit.SECONDS);
+        EncryptedVideoStream sealed = service.sealingStream(new ByteArrayInputStream(new byte[0]), key, 0);
+        byte[] ciphertext = sealed.inputStream().readAllBytes();
 
-        // Then
-        assertNotNull(result, "El resultado no debe ser null");
-        assertEquals(originalContent, new String(result), "El contenido desencriptado debe ser correcto");
+        // Then: un único segmento vacío, que solo contiene la etiqueta de autenticación
+        assertEquals(16, ciphertext.length, "Un video vacío ocupa solo la etiqueta GCM");
+        assertEquals(0, service.plaintextLength(sealed.toMetadata(), ciphertext.length));
     }
 
     @Test
-    @DisplayName("Debería manejar videos grandes correctamente")
-    void shouldHandleLargeVideosCorrectly() throws Exception {
+    @DisplayName("Debería fallar si el video es más corto que el tamaño declarado")
+    void shouldFailWhenVideoIsShorterThanDeclared() {
         // Given
-        byte[] largeVideoData = new byte[5 * 1024 * 1024]; // 5MB
-        for (int i = 0; i < largeVideoData.length; i++) {
-            largeVideoData[i] = (byte) (i % 256);
-        }
-        
-        InputStream videoStream = new ByteArrayInputStream(largeVideoData);
-        String encryptionKey = "clave_de_encriptacion_123";
-        
-        EncryptedData mockEncryptedData = EncryptedData.builder()
-                .data("datos_encriptados_grandes".getBytes())
-                .key(encryptionKey)
-                .algorithm("AES/CBC/PKCS5Padding")
-                .build();
-
-        when(encryptionService.encrypt(largeVideoData, encryptionKey))
-                .thenReturn(mockEncryptedData);
+        EncryptionConfig config = new EncryptionConfig();
+        config.setSegmentSize(64);
+        EncryptionService realEncryptionService = new EncryptionService(config);
+        VideoEncryptionService service = new VideoEncryptionService(realEncryptionService, config);
+        String key = realEncryptionService.generateEncryptionKey();
 
         // When
-        CompletableFuture<EncryptedData> future = videoEncryptionService.encryptVideo(videoStream, encryptionKey);
-        EncryptedData result = future.get(10, TimeUnit.SECONDS);
+        EncryptedVideoStream sealed = service.sealingStream(new ByteArrayInputStream(new byte[100]), key, 200);
 
         // Then
-        assertNotNull(result, "El resultado no debe ser null");
-        assertEquals(encryptionKey, result.getKey(), "La clave debe ser la misma");
-        assertNotNull(result.getData(), "Los datos encriptados no deben ser null");
+        assertThrows(EncryptionException.class, () -> sealed.inputStream().readAllBytes(),
+                "Un video truncado no debe producir un archivo cifrado válido");
     }
 
     @Test
-    @DisplayName("Debería manejar streams vacíos correctamente")
-    void shouldHandleEmptyStreamsCorrectly() throws Exception {
+    @DisplayName("Debería desencriptar un video completo correctamente")
+    void shouldDecryptCompleteVideoCorrectly() throws Exception {
         // Given
-        InputStream emptyStream = new ByteArrayInputStream(new byte[0]);
+        String originalContent = "Contenido original del video";
         String encryptionKey = "clave_de_encriptacion_123";
         
-        EncryptedData mockEncryptedData = EncryptedData.builder()
-                .data(new byte[0])
+        EncryptedData encryptedData = EncryptedData.builder()
+                .data("datos_encriptados".getBytes())
                 .key(encryptionKey)
                 .algorithm("AES/CBC/PKCS5Padding")
                 .build();
 
-        when(encryptionService.encrypt(new byte[0], encryptionKey))
-                .thenReturn(mockEncryptedData);
+        when(encryptionService.decrypt(encryptedData))
+                .thenReturn(originalContent.getBytes());
 
         // When
-        CompletableFuture<EncryptedData> future = videoEncryptionService.encryptVideo(emptyStream, encryptionKey);
-        EncryptedData result = future.get(5, TimeUnit.SECONDS);
+        CompletableFuture<byte[]> future = videoEncryptionService.decryptVideo(encryptedData);
+        byte[] result = future.get(5, TimeUnit.SECONDS);
 
         // Then
         assertNotNull(result, "El resultado no debe ser null");
-        assertEquals(encryptionKey, result.getKey(), "La clave debe ser la misma");
-        assertNotNull(result.getData(), "Los datos encriptados no deben ser null");
-    }
-
-    @Test
-    @DisplayName("Debería manejar errores de encriptación correctamente")
-    void shouldHandleEncryptionErrorsCorrectly() {
-        // Given
-        String videoContent = "Contenido de video de prueba";
-        InputStream videoStream = new ByteArrayInputStream(videoContent.getBytes());
-        String encryptionKey = "clave_invalida";
-
-        when(encryptionService.encrypt(videoContent.getBytes(), encryptionKey))
-                .thenThrow(new RuntimeException("Error de encriptación"));
-
-        // When & Then
-        CompletableFuture<EncryptedData> future = videoEncryptionService.encryptVideo(videoStream, encryptionKey);
-        
-        assertThrows(Exception.class, () -> {
-            future.get(5, TimeUnit.SECONDS);
-        }, "Debería lanzar excepción cuando hay error de encriptación");
+        assertEquals(originalContent, new String(result), "El contenido desencriptado debe ser correcto");
     }
 
     @Test
@@ -187,4 +154,104 @@ class VideoEncryptionServiceTest {
             future.get(5, TimeUnit.SECONDS);
         }, "Debería lanzar excepción cuando hay error de desencriptación");
     }
+
+    @Test
+    @DisplayName("Debería descifrar cualquier rango del formato segmentado y detectar manipulaciones")
+    void shouldDecryptSegmentedRangesAndDetectTampering() throws Exception {
+        // Given: servicios reales con segmentos pequeños para cubrir varios límites
+        EncryptionConfig config = new EncryptionConfig();
+        config.setSegmentSize(64);
+        EncryptionService realEncryptionService = new EncryptionService(config);
+        VideoEncryptionService service = new VideoEncryptionService(realEncryptionService, config);
+
+        byte[] original = new byte[1_000];
+        new Random(7).nextBytes(original);
+        String key = realEncryptionService.generateEncryptionKey();
+
+        EncryptedVideoStream sealed = service.sealingStream(new ByteArrayInputStream(original), key, original.length);
+        byte[] ciphertext = sealed.inputStream().readAllBytes();
+        Map<String, Object> metadata = sealed.toMetadata();
+
+        assertEquals(80, sealed.chunkSize(), "Cada segmento sellado debe ocupar un chunk");
+        assertEquals(original.length, service.plaintextLength(metadata, ciphertext.length));
+
+        // When & Then
+        long[][] ranges = {{0, 999}, {0, 0}, {63, 64}, {100, 100}, {130, 700}, {960, 999}};
+        for (long[] range : ranges) {
+            try (InputStream in = service.openDecryptedRange(metadata, key, range[0], range[1],
+                    (start, end) -> new ByteArrayInputStream(ciphertext, (int) start, (int) (end - start + 1)))) {
+                assertArrayEquals(Arrays.copyOfRange(original, (int) range[0], (int) range[1] + 1),
+                        in.readAllBytes(), "El rango " + range[0] + "-" + range[1] + " debe coincidir");
+            }
+        }
+
+        ciphertext[200] ^= 1;
+        assertThrows(EncryptionException.class, () ->
+                service.openDecryptedRange(metadata, key, 130, 300,
+                        (start, end) -> new ByteArrayInputStream(ciphertext, (int) start, (int) (end - start + 1)))
+                        .readAllBytes(),
+                "Un segmento manipulado debe fallar la autenticación");
+    }
+
+    @Test
+    @DisplayName("Debería retomar el cifrado segmentado desde un segmento con el mismo resultado")
+    void shouldResumeSegmentedEncryptionFromSegment() throws Exception {
+        // Given: servicios reales con segmentos pequeños y una cabecera guardada como en un checkpoint
+        EncryptionConfig config = new EncryptionConfig();
+        config.setSegmentSize(64);
+        EncryptionService realEncryptionService = new EncryptionService(config);
+        VideoEncryptionService service = new VideoEncryptionService(realEncryptionService, config);
+
+        byte[] original = new byte[1_000];
+        new Random(11).nextBytes(original);
+        String key = realEncryptionService.generateEncryptionKey();
+        Map<String, Object> header = service.newSegmentedHeader(original.length);
+
+        byte[] full = service.sealingStream(new ByteArrayInputStream(original), key, header, 0)
+                .inputStream().readAllBytes();
+
+        // When: se continúa desde el segmento 5, con el texto plano posicionado en su offset
+        long firstSegment = 5;
+        int offset = (int) service.segmentOffset(header, firstSegment);
+        byte[] resumed = service.sealingStream(
+                new ByteArrayInputStream(original, offset, original.length - offset), key, header, firstSegment)
+                .inputStream().readAllBytes();
+
+        // Then
+        int sealedOffset = (int) (firstSegment * service.sealedSegmentSize(header));
+        assertEquals(16, service.segmentCount(header));
+        assertEquals(full.length, service.sealedLength(header));
+        assertArrayEquals(Arrays.copyOfRange(full, sealedOffset, full.length), resumed,
+                "Los segmentos retomados deben coincidir con los del cifrado completo");
+    }
+
+    @Test
+    @DisplayName("Debería volver a sellar en el mismo hilo el último segmento ya sellado")
+    void shouldResealLastSegmentOnSameThread() throws Exception {
+        // Given: un cifrado completo que acaba de sellar el último segmento en este hilo
+        EncryptionConfig config = new EncryptionConfig();
+        config.setSegmentSize(64);
+        EncryptionService realEncryptionService = new EncryptionService(config);
+        VideoEncryptionService service = new VideoEncryptionService(realEncryptionService, config);
+
+        byte[] original = new byte[1_000];
+        new Random(12).nextBytes(original);
+        String key = realEncryptionService.generateEncryptionKey();
+        Map<String, Object> header = service.newSegmentedHeader(original.length);
+
+        byte[] full = service.sealingStream(new ByteArrayInputStream(original), key, header, 0)
+                .inputStream().readAllBytes();
+
+        // When: se retoma desde ese mismo segmento (misma clave y mismo nonce)
+        long lastSegment = service.segmentCount(header) - 1;
+        int offset = (int) service.segmentOffset(header, lastSegment);
+        byte[] resealed = service.sealingStream(
+                new ByteArrayInputStream(original, offset, original.length - offset), key, header, lastSegment)
+                .inputStream().readAllBytes();
+
+        // Then
+        int sealedOffset = (int) (lastSegment * service.sealedSegmentSize(header));
+        assertArrayEquals(Arrays.copyOfRange(full, sealedOffset, full.length), resealed,
+                "El segmento vuelto a sellar debe coincidir con el original");
+    }
 }
@@ -0,0 +1,106 @@
+package com.mike.streming.security;
+
+import com.mike.streming.cache.TokenClaimsCache;
+import com.mike.streming.config.JwtConfig;
+import com.mike.streming.config.TokenCacheConfig;
+import com.mike.streming.config.VideoCacheConfig;
+import com.mike.streming.service.JwtService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.HashMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para el filtro de autenticación JWT
+ */
+@DisplayName("JwtAuthenticationFilter Tests")
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "testSecretKey123456789012345678901234567890123456789012345678901234567890";
+
+    private JwtService jwtService;
+    private UserDetailsService userDetailsService;
+    private TokenDenylist tokenDenylist;
+    private JwtAuthenticationFilter filter;
+    private UserPrincipal user;
+
+    @BeforeEach
+    void setUp() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret(SECRET);
+        jwtConfig.setExpiration(60_000L);
+        jwtConfig.setRefreshExpiration(600_000L);
+        jwtService = new JwtService(jwtConfig, new TokenClaimsCache(new TokenCacheConfig()));
+        jwtService.init();
+
+        userDetailsService = mock(UserDetailsService.class);
+        tokenDenylist = new TokenDenylist(jwtConfig, mock(MongoTemplate.class), new VideoCacheConfig());
+        filter = new JwtAuthenticationFilter(jwtService, userDetailsService, tokenDenylist);
+        user = new UserPrincipal("user1", "testuser", "test@example.com", "password", Set.of("USER"),
+                true, true, true, true, null);
+        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Debería autenticar un access token válido")
+    void shouldAuthenticateAccessToken() throws Exception {
+        // When
+        filter(jwtService.generateToken(user));
+
+        // Then
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    @DisplayName("No debería aceptar un refresh token como access token")
+    void shouldRejectRefreshToken() throws Exception {
+        // Given
+        String refreshToken = jwtService.generateRefreshToken(user);
+
+        // When
+        filter(refreshToken);
+
+        // Then
+        assertTrue(jwtService.isRefreshToken(jwtService.verifyToken(refreshToken)));
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar tras el logout un token sin userId resuelto con la base de datos")
+    void shouldRejectRevokedTokenWithoutUserId() throws Exception {
+        // Given: token emitido antes de incluir userId en los claims
+        String legacyToken = jwtService.generateToken(new HashMap<>(), user);
+        Thread.sleep(5);
+
+        // When
+        tokenDenylist.revokeUser(user.getId());
+        filter(legacyToken);
+
+        // Then
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    private void filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+}
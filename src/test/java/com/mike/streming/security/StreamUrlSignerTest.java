@@ -0,0 +1,101 @@
+package com.mike.streming.security;
+
+import com.mike.streming.config.JwtConfig;
+import com.mike.streming.config.StreamUrlConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para la firma de URLs de streaming
+ */
+@DisplayName("StreamUrlSigner Tests")
+class StreamUrlSignerTest {
+
+    // Secreto de application-test.properties: su último carácter Base64 tiene bits sobrantes
+    private static final String JWT_SECRET = "testSecretKey123456789012345678901234567890123456789012345678901234567890";
+
+    private StreamUrlSigner signer;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        signer = new StreamUrlSigner(new StreamUrlConfig(), jwtConfig());
+        request = client("10.0.0.1");
+    }
+
+    @Test
+    @DisplayName("Debería aceptar una URL firmada sin modificar")
+    void shouldVerifyValidSignature() {
+        // Given
+        long expires = signer.expiresAt();
+
+        // When
+        String signature = signer.sign("video1", "user1", expires, request);
+
+        // Then
+        assertTrue(signer.verify("video1", "user1", expires, signature, request));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar una URL con cualquier campo modificado")
+    void shouldRejectTamperedFields() {
+        // Given
+        long expires = signer.expiresAt();
+        String signature = signer.sign("video1", "user1", expires, request);
+
+        // Then
+        assertFalse(signer.verify("video2", "user1", expires, signature, request), "Otro video");
+        assertFalse(signer.verify("video1", "user2", expires, signature, request), "Otro usuario");
+        assertFalse(signer.verify("video1", "user1", expires + 3600, signature, request), "Expiración extendida");
+        assertFalse(signer.verify("video1", "user1", expires, signature, client("10.0.0.2")), "Otro cliente");
+        assertFalse(signer.verify("video1", "user1", expires, "no-es-base64!", request), "Firma inválida");
+        assertFalse(signer.verify("video1", "user1", expires, null, request), "Sin firma");
+    }
+
+    @Test
+    @DisplayName("Debería rechazar una URL expirada aunque la firma sea correcta")
+    void shouldRejectExpiredUrl() {
+        // Given
+        long expired = System.currentTimeMillis() / 1000 - 1;
+
+        // When
+        String signature = signer.sign("video1", "user1", expired, request);
+
+        // Then
+        assertFalse(signer.verify("video1", "user1", expired, signature, request));
+    }
+
+    @Test
+    @DisplayName("Debería aceptar otro cliente si la URL no está ligada a la IP")
+    void shouldIgnoreClientWhenNotBound() {
+        // Given
+        StreamUrlConfig config = new StreamUrlConfig();
+        config.setBindClientIp(false);
+        StreamUrlSigner unbound = new StreamUrlSigner(config, jwtConfig());
+        long expires = unbound.expiresAt();
+
+        // When
+        String signature = unbound.sign("video1", "user1", expires, request);
+
+        // Then
+        assertTrue(unbound.verify("video1", "user1", expires, signature, client("10.0.0.2")));
+        assertFalse(signer.verify("video1", "user1", expires, signature, request),
+                "Una firma sin IP no sirve donde se exige la IP del cliente");
+    }
+
+    private static JwtConfig jwtConfig() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret(JWT_SECRET);
+        return jwtConfig;
+    }
+
+    private static MockHttpServletRequest client(String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
@@ -0,0 +1,142 @@
+package com.mike.streming.security;
+
+import com.mike.streming.config.JwtConfig;
+import com.mike.streming.config.VideoCacheConfig;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para la lista de tokens revocados
+ */
+@DisplayName("TokenDenylist Tests")
+class TokenDenylistTest {
+
+    private MongoTemplate mongoTemplate;
+    private TokenDenylist denylist;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.indexOps(any(String.class))).thenReturn(mock(IndexOperations.class));
+        denylist = denylist(60_000);
+    }
+
+    @Test
+    @DisplayName("Debería rechazar los tokens emitidos antes de la revocación y aceptar los posteriores")
+    void shouldRejectTokensIssuedBeforeRevocation() throws Exception {
+        // Given
+        Claims before = issuedAt(System.currentTimeMillis() - 5_000);
+
+        // When
+        denylist.revokeUser("user1");
+        Thread.sleep(1_100);
+        Claims after = issuedAt(System.currentTimeMillis());
+
+        // Then
+        assertTrue(denylist.isRevoked("user1", before));
+        assertFalse(denylist.isRevoked("user1", after));
+        assertFalse(denylist.isRevoked("user2", before), "Otros usuarios no se ven afectados");
+    }
+
+    @Test
+    @DisplayName("Debería rechazar un token emitido en el mismo segundo que la revocación")
+    void shouldRejectTokenIssuedInSameSecond() {
+        // Given: iat se trunca a segundos, como en un JWT real
+        long now = System.currentTimeMillis();
+        Claims sameSecond = issuedAt(now / 1000 * 1000);
+
+        // When
+        denylist.revokeUser("user1");
+
+        // Then
+        assertTrue(denylist.isRevoked("user1", sameSecond));
+        assertTrue(denylist.isRevoked("user1", Jwts.claims()), "Un token sin iat se considera revocado");
+    }
+
+    @Test
+    @DisplayName("Debería olvidar las revocaciones más antiguas que la duración del access token")
+    void shouldExpireOldRevocations() throws Exception {
+        // Given
+        denylist = denylist(1);
+        Claims before = issuedAt(System.currentTimeMillis() - 5_000);
+        denylist.revokeUser("user1");
+
+        // When
+        Thread.sleep(5);
+        denylist.expire();
+
+        // Then
+        assertFalse(denylist.isRevoked("user1", before));
+    }
+
+    @Test
+    @DisplayName("Debería publicar las revocaciones y aplicar solo las de otros nodos")
+    void shouldPropagateRevocationsAcrossNodes() {
+        // Given
+        ReflectionTestUtils.setField(denylist, "clusterPropagation", true);
+        long revokedAt = System.currentTimeMillis();
+        String nodeId = (String) ReflectionTestUtils.getField(denylist, "nodeId");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("cache_invalidations"))).thenReturn(List.of(
+                new Document("revokedUser", "remote").append("revokedAt", revokedAt).append("node", "other-node"),
+                new Document("revokedUser", "own").append("revokedAt", revokedAt).append("node", nodeId)));
+        Claims before = issuedAt(revokedAt - 5_000);
+
+        // When
+        denylist.revokeUser("local");
+        denylist.pollRevocations();
+
+        // Then
+        ArgumentCaptor<Document> published = ArgumentCaptor.forClass(Document.class);
+        verify(mongoTemplate).insert(published.capture(), eq("cache_invalidations"));
+        assertEquals("local", published.getValue().getString("revokedUser"));
+        assertEquals(nodeId, published.getValue().getString("node"));
+
+        assertTrue(denylist.isRevoked("local", before));
+        assertTrue(denylist.isRevoked("remote", before), "Las revocaciones de otros nodos se aplican");
+        assertFalse(denylist.isRevoked("own", before), "Los documentos propios no se vuelven a aplicar");
+    }
+
+    @Test
+    @DisplayName("Debería seguir funcionando en local si MongoDB no está disponible")
+    void shouldRevokeLocallyWhenPublishFails() {
+        // Given
+        ReflectionTestUtils.setField(denylist, "clusterPropagation", true);
+        when(mongoTemplate.insert(any(Document.class), eq("cache_invalidations")))
+                .thenThrow(new IllegalStateException("MongoDB no disponible"));
+
+        // When
+        denylist.revokeUser("user1");
+
+        // Then
+        assertTrue(denylist.isRevoked("user1", issuedAt(System.currentTimeMillis() - 5_000)));
+    }
+
+    private TokenDenylist denylist(long expirationMillis) {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setExpiration(expirationMillis);
+        return new TokenDenylist(jwtConfig, mongoTemplate, new VideoCacheConfig());
+    }
+
+    private static Claims issuedAt(long millis) {
+        return Jwts.claims().setIssuedAt(new Date(millis));
+    }
+}
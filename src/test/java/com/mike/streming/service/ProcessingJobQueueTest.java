@@ -0,0 +1,194 @@
+package com.mike.streming.service;
+
+import com.mike.streming.config.ProcessingConfig;
+import com.mike.streming.model.ProcessingJob;
+import com.mike.streming.model.ProcessingJob.JobStatus;
+import com.mike.streming.model.ProcessingJob.Stage;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para la cola de trabajos de procesamiento: leases, reintentos y dead-letter
+ */
+@DisplayName("ProcessingJobQueue Tests")
+class ProcessingJobQueueTest {
+
+    private MongoTemplate mongoTemplate;
+    private IndexOperations indexOperations;
+    private ProcessingConfig config;
+    private ProcessingJobQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        indexOperations = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(ProcessingJob.class)).thenReturn(indexOperations);
+
+        config = new ProcessingConfig();
+        config.setMaxAttempts(3);
+        config.setInitialBackoff(Duration.ofSeconds(10));
+        config.setMaxBackoff(Duration.ofSeconds(25));
+        queue = new ProcessingJobQueue(mongoTemplate, config);
+    }
+
+    @Test
+    @DisplayName("Debería crear el índice único antes de encolar y no duplicar trabajos")
+    void shouldEnqueueOnceWithUniqueIndex() {
+        // Given
+        queue.init();
+        when(mongoTemplate.insert(any(ProcessingJob.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0))
+                .thenThrow(new DuplicateKeyException("E11000"));
+
+        // When
+        queue.enqueue("video1", Stage.ENCRYPTION);
+        queue.enqueue("video1", Stage.ENCRYPTION);
+
+        // Then
+        ArgumentCaptor<IndexDefinition> index = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(indexOperations).ensureIndex(index.capture());
+        assertEquals(true, index.getValue().getIndexOptions().get("unique"));
+        assertEquals(new Document("video_id", 1).append("stage", 1), index.getValue().getIndexKeys());
+    }
+
+    @Test
+    @DisplayName("No debería encolar si el índice único no se pudo crear")
+    void shouldRejectEnqueueWithoutUniqueIndex() {
+        // Given
+        when(indexOperations.ensureIndex(any(IndexDefinition.class))).thenThrow(new RuntimeException("Mongo no disponible"));
+        queue.init();
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> queue.enqueue("video1", Stage.ENCRYPTION));
+        verify(mongoTemplate, never()).insert(any(ProcessingJob.class));
+    }
+
+    @Test
+    @DisplayName("Debería detectar la pérdida del lease al renovar y al guardar progreso")
+    void shouldReportLostLease() {
+        // Given: otro worker tomó el trabajo y cambió el token
+        ProcessingJob job = leased(1);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProcessingJob.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // When
+        boolean renewed = queue.renew(job);
+        boolean saved = queue.checkpoint(job, ProcessingJob.Checkpoint.builder().committedChunks(4).build());
+
+        // Then
+        assertFalse(renewed);
+        assertFalse(saved);
+        assertNull(job.getCheckpoint(), "El progreso no confirmado no se guarda en el trabajo");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2))
+                .updateFirst(query.capture(), any(Update.class), eq(ProcessingJob.class));
+        assertEquals("token1", query.getValue().getQueryObject().getString("leaseToken"),
+                "Solo el dueño del lease actual puede modificar el trabajo");
+    }
+
+    @Test
+    @DisplayName("Debería reintentar con backoff exponencial acotado")
+    void shouldRetryWithExponentialBackoff() {
+        // Given
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProcessingJob.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // When: segundo intento, 10s * 2 = 20s más hasta un 20%
+        LocalDateTime before = LocalDateTime.now();
+        boolean dead = queue.fail(leased(2), "error");
+
+        // Then
+        assertFalse(dead);
+        Document set = capturedUpdate().get("$set", Document.class);
+        assertEquals(JobStatus.QUEUED, set.get("status"));
+        LocalDateTime visibleAt = (LocalDateTime) set.get("visibleAt");
+        assertFalse(visibleAt.isBefore(before.plusSeconds(20)));
+        assertFalse(visibleAt.isAfter(LocalDateTime.now().plusSeconds(24)));
+    }
+
+    @Test
+    @DisplayName("No debería superar el backoff máximo")
+    void shouldCapBackoff() {
+        // Given
+        config.setMaxAttempts(10);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProcessingJob.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // When: 10s * 2^4 = 160s, acotado a 25s más hasta un 20%
+        queue.fail(leased(5), "error");
+
+        // Then
+        LocalDateTime visibleAt = (LocalDateTime) capturedUpdate().get("$set", Document.class).get("visibleAt");
+        assertFalse(visibleAt.isAfter(LocalDateTime.now().plusSeconds(30)));
+    }
+
+    @Test
+    @DisplayName("Debería mover el trabajo a dead-letter al agotar los intentos")
+    void shouldDeadLetterAfterMaxAttempts() {
+        // Given
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProcessingJob.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // When
+        boolean dead = queue.fail(leased(3), "x".repeat(5_000));
+
+        // Then
+        assertTrue(dead);
+        Document update = capturedUpdate();
+        Document set = update.get("$set", Document.class);
+        assertEquals(JobStatus.DEAD, set.get("status"));
+        assertEquals(1_000, set.getString("lastError").length(), "El error se trunca");
+        assertTrue(update.get("$unset", Document.class).containsKey("visibleAt"), "Ningún worker vuelve a tomarlo");
+    }
+
+    @Test
+    @DisplayName("No debería contar como dead-letter un trabajo cuyo lease se perdió")
+    void shouldNotDeadLetterWithoutLease() {
+        // Given
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProcessingJob.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // When & Then
+        assertFalse(queue.fail(leased(3), "error"));
+    }
+
+    private Document capturedUpdate() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(ProcessingJob.class));
+        return update.getValue().getUpdateObject();
+    }
+
+    private static ProcessingJob leased(int attempts) {
+        return ProcessingJob.builder()
+                .id("job1")
+                .videoId("video1")
+                .stage(Stage.ENCRYPTION)
+                .status(JobStatus.LEASED)
+                .leaseToken("token1")
+                .attempts(attempts)
+                .build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.mike.streming.service;
+
+import com.mike.streming.config.LeaderboardConfig;
+import com.mike.streming.model.Video;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para los rankings en memoria de videos en tendencia y más vistos
+ */
+@DisplayName("VideoLeaderboard Tests")
+class VideoLeaderboardTest {
+
+    private MongoTemplate mongoTemplate;
+    private LeaderboardConfig config;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        config = new LeaderboardConfig();
+        config.setSize(10);
+        config.setSketchWidth(1024);
+    }
+
+    @Test
+    @DisplayName("Debería ordenar la tendencia por número de vistas")
+    void shouldRankTrendingByViews() {
+        // Given
+        VideoLeaderboard leaderboard = new VideoLeaderboard(mongoTemplate, config);
+        views(leaderboard, "video1", 1);
+        views(leaderboard, "video2", 3);
+        views(leaderboard, "video3", 2);
+        when(mongoTemplate.find(any(Query.class), eq(Video.class)))
+                .thenReturn(List.of(video("video1"), video("video2"), video("video3")));
+
+        // When
+        leaderboard.refreshTrending();
+
+        // Then
+        assertEquals(List.of("video2", "video3", "video1"), ids(leaderboard.getTrending(10)));
+        assertEquals(List.of("video2"), ids(leaderboard.getTrending(1)));
+    }
+
+    @Test
+    @DisplayName("Debería sustituir al candidato más débil cuando el heap está lleno")
+    void shouldReplaceWeakestCandidate() {
+        // Given: K = 1, así que se mantienen 2 candidatos
+        config.setSize(1);
+        VideoLeaderboard leaderboard = new VideoLeaderboard(mongoTemplate, config);
+        views(leaderboard, "video1", 5);
+        views(leaderboard, "video2", 1);
+
+        // When
+        views(leaderboard, "video3", 3);
+        leaderboard.refreshTrending();
+
+        // Then: solo se cargan los candidatos vigentes, de más a menos popular
+        assertEquals(List.of("video1", "video3"), requestedIds());
+    }
+
+    @Test
+    @DisplayName("Debería olvidar los videos cuya popularidad decae a cero")
+    void shouldDropCandidatesAfterDecay() throws Exception {
+        // Given
+        config.setHalfLife(Duration.ofMillis(20));
+        VideoLeaderboard leaderboard = new VideoLeaderboard(mongoTemplate, config);
+        views(leaderboard, "video1", 1);
+
+        // When
+        Thread.sleep(50);
+        leaderboard.refreshTrending();
+
+        // Then
+        assertTrue(leaderboard.getTrending(10).isEmpty());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Video.class));
+    }
+
+    @Test
+    @DisplayName("Debería retirar un video de ambos rankings")
+    void shouldRemoveVideoFromRankings() {
+        // Given
+        VideoLeaderboard leaderboard = new VideoLeaderboard(mongoTemplate, config);
+        views(leaderboard, "video1", 2);
+        views(leaderboard, "video2", 1);
+        when(mongoTemplate.find(any(Query.class), eq(Video.class)))
+                .thenReturn(List.of(video("video1"), video("video2")));
+        leaderboard.refreshTrending();
+        leaderboard.refreshTop();
+
+        // When
+        leaderboard.remove("video1");
+
+        // Then
+        assertEquals(List.of("video2"), ids(leaderboard.getTrending(10)));
+        assertEquals(List.of("video2"), ids(leaderboard.getTop(10)));
+    }
+
+    private static void views(VideoLeaderboard leaderboard, String videoId, int count) {
+        for (int i = 0; i < count; i++) {
+            leaderboard.recordView(videoId);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> requestedIds() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Video.class));
+        Document id = query.getValue().getQueryObject().get("id", Document.class);
+        return (List<Object>) id.get("$in");
+    }
+
+    private static List<String> ids(List<Video> videos) {
+        return videos.stream().map(Video::getId).toList();
+    }
+
+    private static Video video(String id) {
+        return Video.builder().id(id).isPublic(true).status(Video.VideoStatus.READY).build();
+    }
+}
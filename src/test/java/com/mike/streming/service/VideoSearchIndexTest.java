@@ -0,0 +1,142 @@
+package com.mike.streming.service;
+
+import com.mike.streming.model.Video;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para el índice invertido de búsqueda y sus actualizaciones incrementales
+ */
+@DisplayName("VideoSearchIndex Tests")
+class VideoSearchIndexTest {
+
+    private MongoTemplate mongoTemplate;
+    private VideoSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        index = new VideoSearchIndex(mongoTemplate);
+        ReflectionTestUtils.setField(index, "enabled", true);
+    }
+
+    @Test
+    @DisplayName("Debería encontrar un video recién indexado, sin acentos ni mayúsculas")
+    void shouldFindIndexedVideo() {
+        // Given
+        index.index(video("video1", "Canción del Verano", true, 1));
+
+        // When
+        VideoSearchIndex.SearchResult result = index.search("cancion verano", 10);
+
+        // Then
+        assertEquals(List.of("video1"), result.videoIds());
+        assertEquals(1, result.total());
+    }
+
+    @Test
+    @DisplayName("Debería reflejar los cambios de título al reindexar")
+    void shouldReplaceTermsOnUpdate() {
+        // Given
+        index.index(video("video1", "Tutorial de Java", true, 1));
+
+        // When
+        index.index(video("video1", "Tutorial de Kotlin", true, 1));
+
+        // Then
+        assertTrue(index.search("java", 10).videoIds().isEmpty(), "Los términos anteriores se retiran");
+        assertEquals(List.of("video1"), index.search("kotlin", 10).videoIds());
+        assertEquals(List.of(), index.suggest("jav", 10));
+    }
+
+    @Test
+    @DisplayName("Debería retirar los videos eliminados y los que dejan de estar listos")
+    void shouldRemoveDeletedAndNotReadyVideos() {
+        // Given
+        index.index(video("video1", "Partido de fútbol", true, 1));
+        index.index(video("video2", "Resumen de fútbol", true, 2));
+
+        // When
+        index.remove("video1");
+        Video processing = video("video2", "Resumen de fútbol", true, 2);
+        processing.setStatus(Video.VideoStatus.PROCESSING);
+        index.index(processing);
+
+        // Then
+        assertEquals(0, index.search("futbol", 10).total());
+    }
+
+    @Test
+    @DisplayName("No debería devolver videos privados")
+    void shouldExcludePrivateVideos() {
+        // Given
+        index.index(video("video1", "Receta de paella", true, 1));
+        index.index(video("video2", "Receta de tortilla", false, 2));
+
+        // When
+        VideoSearchIndex.SearchResult result = index.search("receta", 10);
+
+        // Then
+        assertEquals(List.of("video1"), result.videoIds());
+        assertEquals(1, result.total());
+    }
+
+    @Test
+    @DisplayName("Debería ordenar por relevancia, autocompletar el último término y desempatar por recencia")
+    void shouldRankByRelevanceAndRecency() {
+        // Given: el título pesa más que la descripción
+        Video inDescription = video("video1", "Vlog", true, 3);
+        inDescription.setDescription("Hablamos de guitarra");
+        index.index(inDescription);
+        index.index(video("video2", "Guitarra para principiantes", true, 1));
+        index.index(video("video3", "Guitarra eléctrica", true, 2));
+
+        // When
+        VideoSearchIndex.SearchResult result = index.search("guit", 2);
+
+        // Then
+        assertEquals(List.of("video3", "video2"), result.videoIds());
+        assertEquals(3, result.total());
+    }
+
+    @Test
+    @DisplayName("Debería conservar los cambios recibidos mientras se reconstruye el índice")
+    void shouldKeepChangesReceivedDuringRebuild() {
+        // Given: mientras se lee de MongoDB llega un video nuevo
+        when(mongoTemplate.stream(any(Query.class), eq(Video.class))).thenAnswer(invocation -> {
+            index.index(video("video2", "Documental de naturaleza", true, 2));
+            return Stream.of(video("video1", "Naturaleza salvaje", true, 1));
+        });
+
+        // When
+        index.rebuild();
+
+        // Then
+        assertTrue(index.isReady());
+        assertEquals(2, index.search("naturaleza", 10).total());
+    }
+
+    private static Video video(String id, String title, boolean isPublic, int day) {
+        return Video.builder()
+                .id(id)
+                .title(title)
+                .isPublic(isPublic)
+                .status(Video.VideoStatus.READY)
+                .createdAt(LocalDateTime.of(2024, 1, day, 0, 0))
+                .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.mike.streming.service;
+
+import com.mike.streming.cache.DataKeyCache;
+import com.mike.streming.cache.VideoNearCache;
+import com.mike.streming.dto.CursorPage;
+import com.mike.streming.dto.VideoResponse;
+import com.mike.streming.encryption.VideoEncryptionService;
+import com.mike.streming.exception.ValidationException;
+import com.mike.streming.model.Video;
+import com.mike.streming.repository.VideoRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para la paginación por cursor de VideoService
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("VideoService Cursor Pagination Tests")
+class VideoServiceCursorTest {
+
+    private static final LocalDateTime SAME_INSTANT = LocalDateTime.of(2025, 1, 10, 12, 0);
+
+    @Mock
+    private VideoRepository videoRepository;
+
+    @Mock
+    private VideoEncryptionService videoEncryptionService;
+
+    @Mock
+    private GridFsService gridFsService;
+
+    @Mock
+    private ViewCountService viewCountService;
+
+    @Mock
+    private VideoNearCache videoNearCache;
+
+    @Mock
+    private DataKeyCache dataKeyCache;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private VideoSearchIndex videoSearchIndex;
+
+    @Mock
+    private VideoLeaderboard videoLeaderboard;
+
+    @Mock
+    private VideoProcessingPipeline videoProcessingPipeline;
+
+    @InjectMocks
+    private VideoService videoService;
+
+    private final List<Video> videos = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Cinco videos creados en el mismo instante y dos anteriores
+        for (String id : List.of("c", "a", "e", "b", "d")) {
+            videos.add(video(id, SAME_INSTANT));
+        }
+        videos.add(video("z", SAME_INSTANT.minusMinutes(1)));
+        videos.add(video("y", SAME_INSTANT.minusMinutes(2)));
+    }
+
+    @Test
+    @DisplayName("Debería recorrer videos con el mismo created_at sin repetir ni saltar ninguno")
+    void shouldBreakTiesOnIdAcrossPages() {
+        // Given
+        when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenAnswer(invocation -> find(invocation.getArgument(0)));
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+
+        // When
+        CursorPage<VideoResponse> page;
+        do {
+            page = videoService.getPublicVideos(cursor, 2, false, null);
+            page.getContent().forEach(video -> seen.add(video.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (page.isHasMore());
+
+        // Then
+        assertEquals(List.of("e", "d", "c", "b", "a", "z", "y"), seen);
+        assertEquals(4, pages);
+        assertNull(page.getNextCursor(), "La última página no tiene cursor");
+    }
+
+    @Test
+    @DisplayName("Debería contar el total solo si se pide")
+    void shouldCountTotalOnlyWhenRequested() {
+        // Given
+        when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenAnswer(invocation -> find(invocation.getArgument(0)));
+        when(videoRepository.countByIsPublicTrue()).thenReturn(7L);
+
+        // When
+        CursorPage<VideoResponse> withTotal = videoService.getPublicVideos(null, 2, true, null);
+
+        // Then
+        assertEquals(7L, withTotal.getTotal());
+        verify(videoRepository).countByIsPublicTrue();
+    }
+
+    @Test
+    @DisplayName("No debería contar el total si no se pide")
+    void shouldNotCountTotalByDefault() {
+        // Given
+        when(mongoTemplate.find(any(Query.class), eq(Video.class))).thenAnswer(invocation -> find(invocation.getArgument(0)));
+
+        // When
+        CursorPage<VideoResponse> page = videoService.getPublicVideos(null, 2, false, null);
+
+        // Then
+        assertNull(page.getTotal());
+        verify(videoRepository, never()).countByIsPublicTrue();
+    }
+
+    @Test
+    @DisplayName("Debería rechazar un cursor manipulado")
+    void shouldRejectInvalidCursor() {
+        assertThrows(ValidationException.class, () -> videoService.getPublicVideos("no-es-un-cursor", 2, false, null));
+    }
+
+    /**
+     * Aplicar en memoria el filtro, el orden (created_at, _id) descendente y el límite de la consulta
+     */
+    private List<Video> find(Query query) {
+        assertEquals(new Document("createdAt", -1).append("id", -1), query.getSortObject());
+        return videos.stream()
+                .filter(video -> matches(video, query.getQueryObject()))
+                .sorted(Comparator.comparing(Video::getCreatedAt).thenComparing(Video::getId).reversed())
+                .limit(query.getLimit())
+                .toList();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static boolean matches(Video video, Document filter) {
+        for (Map.Entry<String, Object> condition : filter.entrySet()) {
+            if (condition.getKey().equals("$or")) {
+                if (((List<Document>) condition.getValue()).stream().noneMatch(or -> matches(video, or))) {
+                    return false;
+                }
+                continue;
+            }
+            Object actual = switch (condition.getKey()) {
+                case "isPublic" -> video.isPublic();
+                case "createdAt" -> video.getCreatedAt();
+                case "id" -> video.getId();
+                default -> throw new AssertionError("Unexpected field " + condition.getKey());
+            };
+            if (condition.getValue() instanceof Document operator) {
+                Comparable bound = (Comparable) operator.get("$lt");
+                if (((Comparable) actual).compareTo(bound) >= 0) {
+                    return false;
+                }
+            } else if (!Objects.equals(actual, condition.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Video video(String id, LocalDateTime createdAt) {
+        return Video.builder()
+                .id(id)
+                .title("Video " + id)
+                .isPublic(true)
+                .status(Video.VideoStatus.READY)
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.mike.streming.service;
+
+import com.mike.streming.model.Video;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para el conteo de vistas en memoria y su volcado a MongoDB
+ */
+@DisplayName("ViewCountService Tests")
+class ViewCountServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private VideoLeaderboard videoLeaderboard;
+    private BulkOperations operations;
+    private ViewCountService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        videoLeaderboard = mock(VideoLeaderboard.class);
+        operations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Video.class)).thenReturn(operations);
+
+        service = new ViewCountService(mongoTemplate, videoLeaderboard);
+        ReflectionTestUtils.setField(service, "sessionWindowMs", 60_000L);
+    }
+
+    @Test
+    @DisplayName("Debería contar una sola vista por sesión de reproducción")
+    void shouldCountOneViewPerPlaybackSession() {
+        // When: varias Range requests del mismo espectador
+        boolean first = service.recordPlayback("video1", "viewer1");
+        boolean second = service.recordPlayback("video1", "viewer1");
+        boolean otherViewer = service.recordPlayback("video1", "viewer2");
+
+        // Then
+        assertTrue(first);
+        assertFalse(second, "Las peticiones dentro de la sesión no cuentan");
+        assertTrue(otherViewer, "Otro espectador abre su propia sesión");
+        assertEquals(2, service.getPendingViews("video1"));
+        verify(videoLeaderboard, times(2)).recordView("video1");
+    }
+
+    @Test
+    @DisplayName("Debería contar una nueva vista cuando la sesión ha expirado")
+    void shouldCountNewViewAfterSessionWindow() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(service, "sessionWindowMs", 1L);
+        service.recordPlayback("video1", "viewer1");
+
+        // When
+        Thread.sleep(5);
+        boolean counted = service.recordPlayback("video1", "viewer1");
+
+        // Then
+        assertTrue(counted);
+        assertEquals(2, service.getPendingViews("video1"));
+    }
+
+    @Test
+    @DisplayName("Debería volcar las vistas acumuladas en un único bulkWrite de $inc")
+    void shouldFlushPendingViewsInOneBulkWrite() {
+        // Given
+        service.recordView("video1");
+        service.recordView("video1");
+        service.recordView("video2");
+
+        // When
+        service.flush();
+
+        // Then
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(operations, times(2)).updateOne(queries.capture(), updates.capture());
+        verify(operations).execute();
+
+        List<Query> capturedQueries = queries.getAllValues();
+        List<Update> capturedUpdates = updates.getAllValues();
+        for (int i = 0; i < capturedQueries.size(); i++) {
+            String videoId = capturedQueries.get(i).getQueryObject().getString("_id");
+            long expected = videoId.equals("video1") ? 2L : 1L;
+            assertEquals(expected, capturedUpdates.get(i).getUpdateObject().get("$inc", Document.class).get("view_count"));
+        }
+        assertEquals(0, service.getPendingViews("video1"));
+        assertEquals(0, service.getPendingViews("video2"));
+    }
+
+    @Test
+    @DisplayName("No debería escribir en MongoDB si no hay vistas pendientes")
+    void shouldSkipFlushWithoutPendingViews() {
+        // Given: un contador ya volcado queda a cero
+        service.recordView("video1");
+        service.flush();
+
+        // When
+        service.flush();
+
+        // Then
+        verify(mongoTemplate, times(1)).bulkOps(any(BulkOperations.BulkMode.class), eq(Video.class));
+    }
+
+    @Test
+    @DisplayName("Debería conservar las vistas para el siguiente volcado si falla la escritura")
+    void shouldKeepViewsWhenFlushFails() {
+        // Given
+        service.recordView("video1");
+        service.recordView("video1");
+        when(operations.execute()).thenThrow(new RuntimeException("Mongo no disponible"));
+
+        // When
+        service.flush();
+
+        // Then
+        assertEquals(2, service.getPendingViews("video1"), "Las vistas no se pierden");
+    }
+}
@@ -0,0 +1,181 @@
+package com.mike.streming.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para el parser multipart en streaming
+ */
+@DisplayName("MultipartStreamParser Tests")
+class MultipartStreamParserTest {
+
+    private static final String BOUNDARY = "----boundary7MA4YWxkTrZu0gW";
+
+    @Test
+    @DisplayName("Debería leer campos y archivo en cualquier orden")
+    void shouldReadFieldsAndFile() throws IOException {
+        // Given
+        byte[] video = randomBytes(300 * 1024);
+        byte[] body = new BodyBuilder()
+                .field("title", "Mi Video")
+                .file("file", "video.mp4", "video/mp4", video)
+                .field("tags", "a,b")
+                .build();
+
+        // When
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+        MultipartStreamParser.Part title = parser.nextPart();
+        String titleValue = title.readValue(100);
+        MultipartStreamParser.Part file = parser.nextPart();
+        byte[] content = file.content().readAllBytes();
+        MultipartStreamParser.Part tags = parser.nextPart();
+        String tagsValue = tags.readValue(100);
+
+        // Then
+        assertEquals("title", title.name());
+        assertFalse(title.isFile());
+        assertEquals("Mi Video", titleValue);
+        assertTrue(file.isFile());
+        assertEquals("video.mp4", file.filename());
+        assertEquals("video/mp4", file.contentType());
+        assertArrayEquals(video, content, "El contenido del archivo debe llegar intacto");
+        assertEquals("a,b", tagsValue);
+        assertNull(parser.nextPart(), "Después del delimitador de cierre no hay más partes");
+    }
+
+    @Test
+    @DisplayName("Debería funcionar cuando el cuerpo llega en lecturas de pocos bytes")
+    void shouldHandleFragmentedReads() throws IOException {
+        // Given: contenido con un falso delimitador dentro
+        byte[] video = ("abc\r\n--" + BOUNDARY.substring(0, 10) + "xyz\r\n-").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = new BodyBuilder().file("file", "v.mp4", "video/mp4", video).build();
+
+        // When
+        MultipartStreamParser parser = new MultipartStreamParser(new TrickleInputStream(body), BOUNDARY);
+        MultipartStreamParser.Part file = parser.nextPart();
+        byte[] content = file.content().readAllBytes();
+
+        // Then
+        assertArrayEquals(video, content);
+        assertNull(parser.nextPart());
+    }
+
+    @Test
+    @DisplayName("Debería descartar la parte actual al pedir la siguiente")
+    void shouldSkipUnreadPart() throws IOException {
+        // Given
+        byte[] body = new BodyBuilder()
+                .file("file", "v.mp4", "video/mp4", randomBytes(200 * 1024))
+                .field("title", "Titulo")
+                .build();
+
+        // When
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+        parser.nextPart();
+        MultipartStreamParser.Part title = parser.nextPart();
+
+        // Then
+        assertEquals("title", title.name());
+        assertEquals("Titulo", title.readValue(100));
+    }
+
+    @Test
+    @DisplayName("Debería fallar si el cuerpo termina antes del delimitador de cierre")
+    void shouldFailOnTruncatedBody() throws IOException {
+        // Given
+        byte[] body = new BodyBuilder().file("file", "v.mp4", "video/mp4", randomBytes(1024)).build();
+        byte[] truncated = Arrays.copyOf(body, body.length - 20);
+
+        // When
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(truncated), BOUNDARY);
+        MultipartStreamParser.Part file = parser.nextPart();
+
+        // Then
+        assertThrows(IOException.class, () -> file.content().readAllBytes());
+    }
+
+    @Test
+    @DisplayName("Debería rechazar campos de texto demasiado largos")
+    void shouldRejectLongField() throws IOException {
+        // Given
+        byte[] body = new BodyBuilder().field("title", "x".repeat(500)).build();
+
+        // When
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+        MultipartStreamParser.Part title = parser.nextPart();
+
+        // Then
+        assertThrows(IOException.class, () -> title.readValue(100));
+    }
+
+    @Test
+    @DisplayName("Debería extraer el boundary del Content-Type")
+    void shouldExtractBoundary() {
+        assertEquals("abc", MultipartStreamParser.boundaryOf("multipart/form-data; boundary=abc"));
+        assertEquals("a b", MultipartStreamParser.boundaryOf("multipart/form-data; charset=UTF-8; boundary=\"a b\""));
+        assertNull(MultipartStreamParser.boundaryOf("application/json"));
+        assertNull(MultipartStreamParser.boundaryOf("multipart/form-data"));
+        assertNull(MultipartStreamParser.boundaryOf(null));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Construye un cuerpo multipart/form-data con el boundary de los tests
+     */
+    private static class BodyBuilder {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BodyBuilder field(String name, String value) {
+            write("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n");
+            return this;
+        }
+
+        BodyBuilder file(String name, String filename, String contentType, byte[] content) {
+            write("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"; filename=\""
+                    + filename + "\"\r\nContent-Type: " + contentType + "\r\n\r\n");
+            out.writeBytes(content);
+            write("\r\n");
+            return this;
+        }
+
+        byte[] build() {
+            write("--" + BOUNDARY + "--\r\n");
+            return out.toByteArray();
+        }
+
+        private void write(String text) {
+            out.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Entrega el cuerpo de pocos bytes en pocos bytes, como una red lenta
+     */
+    private static class TrickleInputStream extends FilterInputStream {
+
+        TrickleInputStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, 3));
+        }
+    }
+}